@@ -1,6 +1,7 @@
 package com.sk89q.craftbook;
 
 import com.sk89q.craftbook.bukkit.BukkitCraftBookPlayer;
+import com.sk89q.craftbook.bukkit.CraftBookPlugin;
 import com.sk89q.craftbook.mechanics.variables.VariableCommands;
 import com.sk89q.craftbook.mechanics.variables.VariableManager;
 import com.sk89q.craftbook.util.ParsingUtil;
@@ -136,6 +137,9 @@ public class ChangedSign {
         }
         System.arraycopy(this.lines, 0, this.oldLines, 0, this.lines.length);
 
+        if(CraftBookPlugin.inst() != null && CraftBookPlugin.inst().getMechanicSignIndex() != null)
+            CraftBookPlugin.inst().getMechanicSignIndex().invalidate(block);
+
         return getSign().update(force, false);
     }
 
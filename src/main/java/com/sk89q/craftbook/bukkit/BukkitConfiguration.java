@@ -18,9 +18,12 @@ public class BukkitConfiguration {
 
     public boolean noOpPermissions;
     public boolean indirectRedstone;
+    public boolean coalesceRedstone;
+    public boolean indexMechanicSigns;
     public boolean useBlockDistance;
     public boolean safeDestruction;
     public int stThinkRate;
+    public double stThinkBudget;
     public boolean obeyWorldguard;
     public boolean advancedBlockChecks;
     public boolean pedanticBlockChecks;
@@ -98,6 +101,9 @@ public class BukkitConfiguration {
         config.setComment("st-think-ticks", "WARNING! Changing this can result in all ST mechanics acting very weirdly, only change this if you know what you are doing!");
         stThinkRate = config.getInt("st-think-ticks", 2);
 
+        config.setComment("st-think-budget", "If above 0, self-triggering mechanics are spread across the st-think-ticks in slices, using at most this many milliseconds per tick. Mechanics that don't fit within the budget think on the following tick.");
+        stThinkBudget = config.getDouble("st-think-budget", 0);
+
         config.setComment("safe-destruction", "Causes many mechanics to require sufficient blocks to function, for example gates, bridges and doors.");
         safeDestruction = config.getBoolean("safe-destruction", true);
 
@@ -107,6 +113,12 @@ public class BukkitConfiguration {
         config.setComment("indirect-redstone", "Allows redstone not directly facing a mechanism to trigger said mechanism.");
         indirectRedstone = config.getBoolean("indirect-redstone", false);
 
+        config.setComment("coalesce-redstone", "Collects redstone changes over a tick and passes them to mechanics once per block at the end of the tick, instead of once per wire update. Mechanics react up to a tick later with this enabled.");
+        coalesceRedstone = config.getBoolean("coalesce-redstone", false);
+
+        config.setComment("index-mechanic-signs", "Remembers which signs have a mechanic tag, so redstone and clicks on other signs are not passed to every mechanic. Signs edited by other plugins without an event may need a chunk reload to be noticed.");
+        indexMechanicSigns = config.getBoolean("index-mechanic-signs", false);
+
         config.setComment("use-block-distance", "Rounds all distance equations to the block grid.");
         useBlockDistance = config.getBoolean("use-block-distance", false);
 
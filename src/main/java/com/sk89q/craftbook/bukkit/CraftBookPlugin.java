@@ -87,6 +87,7 @@ import com.sk89q.craftbook.mechanics.signcopier.SignCopier;
 import com.sk89q.craftbook.mechanics.variables.VariableManager;
 import com.sk89q.craftbook.util.ArrayUtil;
 import com.sk89q.craftbook.util.CompatabilityUtil;
+import com.sk89q.craftbook.util.EntityIndex;
 import com.sk89q.craftbook.util.ItemSyntax;
 import com.sk89q.craftbook.util.RegexUtil;
 import com.sk89q.craftbook.util.UUIDMappings;
@@ -202,6 +203,11 @@ public class CraftBookPlugin extends JavaPlugin {
      */
     private UUIDMappings uuidMappings;
 
+    /**
+     * The per-tick index of entities, shared by everything that searches for entities.
+     */
+    private EntityIndex entityIndex;
+
     /**
      * List of common mechanics.
      */
@@ -358,6 +364,16 @@ public class CraftBookPlugin extends JavaPlugin {
         return uuidMappings;
     }
 
+    /**
+     * Retrieve the per-tick entity index of CraftBook.
+     *
+     * @return The entity index.
+     */
+    public EntityIndex getEntityIndex() {
+
+        return entityIndex;
+    }
+
     /**
      * Retrieve the NMS Adapter.
      *
@@ -529,6 +545,10 @@ public class CraftBookPlugin extends JavaPlugin {
 
         getServer().getScheduler().runTask(this, CompatabilityUtil::init);
 
+        // Registered before any mechanics, so the index moves on before anything searches it in a tick.
+        entityIndex = new EntityIndex();
+        getServer().getScheduler().runTaskTimer(this, entityIndex::nextTick, 0, 1);
+
         mechanics = new ArrayList<>();
 
         logDebugMessage("Initializing Mechanisms!", "startup");
@@ -831,7 +851,7 @@ public class CraftBookPlugin extends JavaPlugin {
     private void setupSelfTriggered() {
 
         mechanicClock = new MechanicClock();
-        selfTriggerManager = new SelfTriggeringManager();
+        selfTriggerManager = new SelfTriggeringManager(config.stThinkBudget, config.stThinkRate);
 
         getLogger().info("Enumerating chunks for self-triggered components...");
 
@@ -855,7 +875,8 @@ public class CraftBookPlugin extends JavaPlugin {
 
         // Set up the clock for self-triggered ICs.
 
-        getServer().getScheduler().runTaskTimer(this, mechanicClock, 0, config.stThinkRate);
+        // A time sliced manager spreads its rounds over the think rate itself, so it needs to run every tick.
+        getServer().getScheduler().runTaskTimer(this, mechanicClock, 0, selfTriggerManager.isTimeSliced() ? 1 : config.stThinkRate);
 
         getServer().getPluginManager().registerEvents(selfTriggerManager, this);
     }
@@ -1061,6 +1082,16 @@ public class CraftBookPlugin extends JavaPlugin {
         return new BukkitCraftBookPlayer(this, player);
     }
 
+    /**
+     * Gets the index of mechanic signs.
+     *
+     * @return The sign index, or null if it is disabled
+     */
+    public MechanicSignIndex getMechanicSignIndex() {
+
+        return managerAdapter == null ? null : managerAdapter.getSignIndex();
+    }
+
     /**
      * Grabs the manager for self triggered components.
      */
@@ -35,6 +35,7 @@ import org.bukkit.Material;
 import org.bukkit.World;
 import org.bukkit.block.Block;
 import org.bukkit.block.BlockFace;
+import org.bukkit.block.Sign;
 import org.bukkit.block.data.AnaloguePowerable;
 import org.bukkit.block.data.Directional;
 import org.bukkit.block.data.Powerable;
@@ -51,6 +52,7 @@ import org.bukkit.event.block.BlockRedstoneEvent;
 import org.bukkit.event.block.SignChangeEvent;
 import org.bukkit.event.player.PlayerInteractEvent;
 import org.bukkit.event.vehicle.VehicleEnterEvent;
+import org.bukkit.event.world.ChunkUnloadEvent;
 import org.bukkit.event.vehicle.VehicleMoveEvent;
 import org.bukkit.inventory.EquipmentSlot;
 
@@ -66,6 +68,32 @@ final class MechanicListenerAdapter implements Listener {
 
     private Set<String> signClickTimer = new HashSet<>();
 
+    /**
+     * The queue redstone changes are coalesced into, or null if they are dispatched immediately.
+     */
+    private final RedstoneChangeQueue redstoneQueue;
+
+    /**
+     * The index of mechanic signs, or null if signs are read every time.
+     */
+    private final MechanicSignIndex signIndex;
+
+    MechanicListenerAdapter() {
+
+        redstoneQueue = CraftBookPlugin.inst().getConfiguration().coalesceRedstone ? new RedstoneChangeQueue(this) : null;
+        signIndex = CraftBookPlugin.inst().getConfiguration().indexMechanicSigns ? new MechanicSignIndex() : null;
+    }
+
+    /**
+     * Gets the index of mechanic signs.
+     *
+     * @return The sign index, or null if it is disabled
+     */
+    public MechanicSignIndex getSignIndex() {
+
+        return signIndex;
+    }
+
     @EventHandler(priority = EventPriority.HIGH)
     public void onPlayerInteract(final PlayerInteractEvent event) {
 
@@ -90,6 +118,10 @@ final class MechanicListenerAdapter implements Listener {
         }
 
         if(block != null && SignUtil.isSign(block) && event.getHand() == EquipmentSlot.HAND) {
+            // Only tools such as the sign copier work on signs without a tag, so empty handed clicks on them are dropped.
+            if(signIndex != null && event.getItem() == null && !signIndex.isMechanicSign(block)
+                    && !EventUtil.hasExternalListeners(SignClickEvent.getHandlerList()))
+                return;
             if(CraftBookPlugin.inst().getConfiguration().signClickTimeout > 0) {
                 if(signClickTimer.contains(event.getPlayer().getName())) {
                     return;
@@ -127,7 +159,7 @@ final class MechanicListenerAdapter implements Listener {
         }
     }
 
-    private static void checkBlockChange(Player player, Block block, boolean build) {
+    private void checkBlockChange(Player player, Block block, boolean build) {
         switch(block.getType()) {
             case REDSTONE_TORCH:
             case REDSTONE_WALL_TORCH:
@@ -184,7 +216,7 @@ final class MechanicListenerAdapter implements Listener {
         handleRedstoneForBlock(event.getBlock(), event.getOldCurrent(), event.getNewCurrent());
     }
 
-    private static void handleRedstoneForBlock(Block block, int oldLevel, int newLevel) {
+    private void handleRedstoneForBlock(Block block, int oldLevel, int newLevel) {
 
         World world = block.getWorld();
 
@@ -335,27 +367,91 @@ final class MechanicListenerAdapter implements Listener {
      * @param oldLevel
      * @param newLevel
      */
-    private static void handleDirectWireInput(int x, int y, int z, Block sourceBlock, int oldLevel, int newLevel) {
+    private void handleDirectWireInput(int x, int y, int z, Block sourceBlock, int oldLevel, int newLevel) {
 
+        if(x == sourceBlock.getX() && y == sourceBlock.getY() && z == sourceBlock.getZ()) //The same block, don't run.
+            return;
         Block block = sourceBlock.getWorld().getBlockAt(x, y, z);
-        if(CraftBookBukkitUtil.equals(sourceBlock.getLocation(), block.getLocation())) //The same block, don't run.
+
+        if(redstoneQueue != null)
+            redstoneQueue.add(sourceBlock, block, oldLevel, newLevel);
+        else
+            dispatchRedstoneChange(sourceBlock, block, oldLevel, newLevel, false);
+    }
+
+    /**
+     * Fires the redstone events for a change to the given block.
+     *
+     * @param sourceBlock The block that caused the change
+     * @param block The block receiving the change
+     * @param oldLevel The old power level
+     * @param newLevel The new power level
+     * @param coalesced If the change was coalesced, and is therefore already running after the change
+     */
+    void dispatchRedstoneChange(Block sourceBlock, Block block, int oldLevel, int newLevel, boolean coalesced) {
+
+        if((coalesced || signIndex != null) && !isPossibleRedstoneMechanic(block))
             return;
+
         final SourcedBlockRedstoneEvent event = new SourcedBlockRedstoneEvent(sourceBlock, block, oldLevel, newLevel);
 
         CraftBookPlugin.inst().getServer().getPluginManager().callEvent(event);
 
         if(CraftBookPlugin.inst().useLegacyCartSystem) {
-            CraftBookPlugin.server().getScheduler().runTask(CraftBookPlugin.inst(), () -> {
+            Runnable cartRunnable = () -> {
                 try {
                     CartMechanismBlocks cmb = CartMechanismBlocks.find(event.getBlock());
                     CartBlockRedstoneEvent ev = new CartBlockRedstoneEvent(event.getBlock(), event.getSource(), event.getOldCurrent(), event.getNewCurrent(), cmb, CartBlockMechanism.getCart(cmb.rail));
                     CraftBookPlugin.inst().getServer().getPluginManager().callEvent(ev);
                 } catch (InvalidMechanismException ignored) {
                 }
-            });
+            };
+            if(coalesced)
+                cartRunnable.run();
+            else
+                CraftBookPlugin.server().getScheduler().runTask(CraftBookPlugin.inst(), cartRunnable);
         }
     }
 
+    /**
+     * Cheaply checks whether a block could be a CraftBook mechanic that responds to redstone, before any event is
+     * created for it.
+     *
+     * @param block The block
+     * @return If the block could be a redstone mechanic
+     */
+    private boolean isPossibleRedstoneMechanic(Block block) {
+
+        // Other plugins may listen for any block.
+        if(EventUtil.hasExternalListeners(SourcedBlockRedstoneEvent.getHandlerList()))
+            return true;
+
+        switch(block.getType()) {
+            case AIR:
+            case CAVE_AIR:
+            case VOID_AIR:
+            case REDSTONE_WIRE:
+            case REPEATER:
+            case COMPARATOR:
+            case REDSTONE_TORCH:
+            case REDSTONE_WALL_TORCH:
+                return false;
+            default:
+                break;
+        }
+
+        if(signIndex != null)
+            return !SignUtil.isSign(block) || signIndex.isMechanicSign(block);
+
+        if(SignUtil.isSign(block)) {
+            // Every redstone sign mechanic is identified by a bracketed tag (or a variable) on the second line.
+            String line = ((Sign) block.getState()).getLine(1);
+            return line.indexOf('[') >= 0 || line.indexOf('%') >= 0;
+        }
+
+        return true;
+    }
+
     @EventHandler(priority = EventPriority.HIGH)
     public void onVehicleMove(VehicleMoveEvent event) {
 
@@ -407,6 +503,34 @@ final class MechanicListenerAdapter implements Listener {
         }
     }
 
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onSignIndexChange(SignChangeEvent event) {
+
+        if(signIndex != null)
+            signIndex.invalidate(event.getBlock());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onSignIndexBreak(BlockBreakEvent event) {
+
+        if(signIndex != null)
+            signIndex.invalidate(event.getBlock());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onSignIndexPlace(BlockPlaceEvent event) {
+
+        if(signIndex != null)
+            signIndex.invalidate(event.getBlock());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onSignIndexUnload(ChunkUnloadEvent event) {
+
+        if(signIndex != null)
+            signIndex.invalidate(event.getChunk());
+    }
+
     @EventHandler(priority = EventPriority.LOWEST)
     public void onSignChange(SignChangeEvent event) {
         for (int i = 0; i < 4; i++) {
@@ -0,0 +1,158 @@
+/*
+ * CraftBook Copyright (C) 2010 sk89q <http://www.sk89q.com>
+ * 
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ * License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with this program. If not,
+ * see <http://www.gnu.org/licenses/>.
+ */
+
+
+package com.sk89q.craftbook.bukkit;
+
+import com.sk89q.craftbook.util.LongHashMap;
+import com.sk89q.craftbook.util.SignUtil;
+import org.bukkit.Chunk;
+import org.bukkit.Material;
+import org.bukkit.block.Block;
+import org.bukkit.block.Sign;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * An index of the signs that could belong to a mechanic, kept per world and chunk.
+ *
+ * Signs are added lazily the first time they are looked up, and are removed again when the sign is changed or broken,
+ * or its chunk unloads. This allows the {@link MechanicListenerAdapter} to tell whether any mechanic could be interested
+ * in a sign without creating a block state for it.
+ */
+public final class MechanicSignIndex {
+
+    private final Map<UUID, LongHashMap<LongHashMap<Entry>>> signs = new HashMap<>();
+
+    private int size;
+
+    /**
+     * Checks whether the given block is a sign that could belong to a mechanic, meaning it has a bracketed tag or a
+     * variable on the second line.
+     *
+     * @param block The block
+     * @return If the block is a sign that could be a mechanic, or false if it isn't a sign
+     */
+    public boolean isMechanicSign(Block block) {
+
+        LongHashMap<Entry> chunk = getChunk(block.getWorld().getUID(), block.getX() >> 4, block.getZ() >> 4, true);
+        long key = LongHashMap.toLong(block.getX(), block.getY(), block.getZ());
+
+        Material type = block.getType();
+        Entry entry = chunk.get(key);
+        if (entry != null && entry.type == type)
+            return entry.mechanic;
+
+        if (!SignUtil.isSign(block)) {
+            if (entry != null) {
+                chunk.remove(key);
+                size--;
+            }
+            return false;
+        }
+
+        String line = ((Sign) block.getState()).getLine(1);
+        boolean mechanic = line.indexOf('[') >= 0 || line.indexOf('%') >= 0;
+
+        if (entry == null) {
+            chunk.put(key, new Entry(type, mechanic));
+            size++;
+        } else {
+            entry.type = type;
+            entry.mechanic = mechanic;
+        }
+        return mechanic;
+    }
+
+    /**
+     * Forgets the given block, so that it is read again the next time it is looked up.
+     *
+     * @param block The block
+     */
+    public void invalidate(Block block) {
+
+        LongHashMap<Entry> chunk = getChunk(block.getWorld().getUID(), block.getX() >> 4, block.getZ() >> 4, false);
+        if (chunk != null && chunk.remove(LongHashMap.toLong(block.getX(), block.getY(), block.getZ())) != null)
+            size--;
+    }
+
+    /**
+     * Forgets every sign within the given chunk.
+     *
+     * @param chunk The chunk
+     */
+    public void invalidate(Chunk chunk) {
+
+        LongHashMap<LongHashMap<Entry>> world = signs.get(chunk.getWorld().getUID());
+        if (world == null) return;
+
+        LongHashMap<Entry> removed = world.remove(LongHashMap.toLong(chunk.getX(), chunk.getZ()));
+        if (removed != null)
+            size -= removed.size();
+        if (world.isEmpty())
+            signs.remove(chunk.getWorld().getUID());
+    }
+
+    public void clear() {
+
+        signs.clear();
+        size = 0;
+    }
+
+    /**
+     * Gets the amount of signs that are currently indexed.
+     *
+     * @return The amount of indexed signs
+     */
+    public int size() {
+
+        return size;
+    }
+
+    private LongHashMap<Entry> getChunk(UUID world, int chunkX, int chunkZ, boolean create) {
+
+        LongHashMap<LongHashMap<Entry>> chunks = signs.get(world);
+        if (chunks == null) {
+            if (!create) return null;
+            chunks = new LongHashMap<>();
+            signs.put(world, chunks);
+        }
+
+        long key = LongHashMap.toLong(chunkX, chunkZ);
+        LongHashMap<Entry> chunk = chunks.get(key);
+        if (chunk == null && create) {
+            chunk = new LongHashMap<>();
+            chunks.put(key, chunk);
+        }
+        return chunk;
+    }
+
+    private static final class Entry {
+
+        /**
+         * The sign type when this entry was made, so a sign replaced by another block is noticed.
+         */
+        Material type;
+        boolean mechanic;
+
+        Entry(Material type, boolean mechanic) {
+
+            this.type = type;
+            this.mechanic = mechanic;
+        }
+    }
+}
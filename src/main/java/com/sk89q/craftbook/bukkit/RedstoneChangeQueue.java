@@ -0,0 +1,115 @@
+/*
+ * CraftBook Copyright (C) 2010 sk89q <http://www.sk89q.com>
+ * 
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ * License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with this program. If not,
+ * see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.craftbook.bukkit;
+
+import com.sk89q.craftbook.util.LongHashMap;
+import org.bukkit.block.Block;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Collects the redstone changes of a tick, so that each target block is only dispatched to once per state change.
+ *
+ * Changes are tracked per target and source, so that changes to different inputs of the same target all reach it. A
+ * change is only dropped if the last change queued from the same source to the same target already left it in the same
+ * state, so a target that turns on and off again within a tick still sees each transition, in order.
+ */
+final class RedstoneChangeQueue implements Runnable {
+
+    /**
+     * The last pending change per world, packed target coordinate and packed source coordinate.
+     */
+    private final Map<UUID, LongHashMap<LongHashMap<PendingChange>>> pending = new HashMap<>();
+
+    /**
+     * The pending changes in the order they were queued.
+     */
+    private List<PendingChange> queue = new ArrayList<>();
+
+    private final MechanicListenerAdapter adapter;
+    private boolean scheduled;
+
+    RedstoneChangeQueue(MechanicListenerAdapter adapter) {
+
+        this.adapter = adapter;
+    }
+
+    /**
+     * Queues a redstone change, unless the last change queued this tick from the same source to the same target already
+     * changes it to the same state.
+     *
+     * @param source The block that caused the change
+     * @param target The block receiving the change
+     * @param oldLevel The old power level
+     * @param newLevel The new power level
+     */
+    void add(Block source, Block target, int oldLevel, int newLevel) {
+
+        LongHashMap<LongHashMap<PendingChange>> world = pending.computeIfAbsent(target.getWorld().getUID(), uuid -> new LongHashMap<>());
+
+        long targetKey = LongHashMap.toLong(target.getX(), target.getY(), target.getZ());
+        LongHashMap<PendingChange> sources = world.get(targetKey);
+        if (sources == null) {
+            sources = new LongHashMap<>();
+            world.put(targetKey, sources);
+        }
+
+        long sourceKey = LongHashMap.toLong(source.getX(), source.getY(), source.getZ());
+        PendingChange last = sources.get(sourceKey);
+        if (last != null && last.newLevel > 0 == newLevel > 0) return;
+
+        PendingChange change = new PendingChange(source, target, oldLevel, newLevel);
+        sources.put(sourceKey, change);
+        queue.add(change);
+
+        if (!scheduled) {
+            scheduled = true;
+            CraftBookPlugin.server().getScheduler().runTask(CraftBookPlugin.inst(), this);
+        }
+    }
+
+    @Override
+    public void run() {
+
+        List<PendingChange> changes = queue;
+        queue = new ArrayList<>();
+        pending.clear();
+        scheduled = false;
+
+        for (PendingChange change : changes)
+            adapter.dispatchRedstoneChange(change.source, change.target, change.oldLevel, change.newLevel, true);
+    }
+
+    private static final class PendingChange {
+
+        final Block source;
+        final Block target;
+        final int oldLevel;
+        final int newLevel;
+
+        PendingChange(Block source, Block target, int oldLevel, int newLevel) {
+
+            this.source = source;
+            this.target = target;
+            this.oldLevel = oldLevel;
+            this.newLevel = newLevel;
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package com.sk89q.craftbook.bukkit;
 
+import com.google.common.cache.CacheStats;
 import com.sk89q.craftbook.CraftBookMechanic;
 import com.sk89q.craftbook.mechanics.crafting.CraftingItemStack;
 import com.sk89q.craftbook.mechanics.crafting.RecipeManager;
@@ -7,9 +8,14 @@ import com.sk89q.craftbook.mechanics.crafting.RecipeManager.Recipe;
 import com.sk89q.craftbook.mechanics.crafting.RecipeManager.RecipeType;
 import com.sk89q.craftbook.mechanics.ic.IC;
 import com.sk89q.craftbook.mechanics.ic.ICManager;
+import com.sk89q.craftbook.mechanics.pipe.PipeMetrics;
+import com.sk89q.craftbook.mechanics.pipe.Pipes;
 import com.sk89q.craftbook.util.LogListBlock;
+import com.sk89q.craftbook.util.jinglenote.JingleEngine;
+import com.sk89q.craftbook.util.jinglenote.JingleTimelineCache;
 import org.bukkit.Location;
 import org.bukkit.Server;
+import org.bukkit.World;
 import org.bukkit.plugin.Plugin;
 
 import java.io.*;
@@ -184,7 +190,58 @@ public class ReportWriter {
 
         int i = CraftBookPlugin.inst().getMechanics().size();
         log.put("Mechanics Loaded", "%d", i);
-        log.put("ST Mechanics Loaded", "%d", plugin.getSelfTriggerManager() == null ? 0 : plugin.getSelfTriggerManager().getSelfTriggeringMechanics().size());
+        log.put("ST Mechanics Loaded", "%d", plugin.getSelfTriggerManager() == null ? 0 : plugin.getSelfTriggerManager().getSelfTriggerCount());
+
+        if(plugin.getSelfTriggerManager() != null) {
+            LogListBlock worldLog = log.putChild("ST Mechanics Per World");
+            for(World world : plugin.getServer().getWorlds())
+                worldLog.put(world.getName(), "%d in %d chunk(s)", plugin.getSelfTriggerManager().getSelfTriggerCount(world),
+                        plugin.getSelfTriggerManager().getSelfTriggerChunkCount(world));
+        }
+
+        if(ICManager.inst() != null) {
+            LogListBlock cacheLog = log.putChild("IC Cache");
+            cacheLog.put("Cached ICs", "%d", ICManager.getCachedICCount());
+            cacheLog.put("Hits", "%d", ICManager.getCacheHits());
+            cacheLog.put("Misses", "%d", ICManager.getCacheMisses());
+            cacheLog.put("Evictions", "%d", ICManager.getCacheEvictions());
+        }
+
+        if(plugin.getUUIDMappings() != null) {
+            LogListBlock mappingLog = log.putChild("UUID Mappings");
+            mappingLog.put("Cached Mappings", "%d", plugin.getUUIDMappings().getCachedCount());
+            mappingLog.put("Hits", "%d", plugin.getUUIDMappings().getCacheHits());
+            mappingLog.put("Misses", "%d", plugin.getUUIDMappings().getCacheMisses());
+        }
+
+        if(ICManager.inst() != null) {
+            CacheStats stats = JingleTimelineCache.getStats();
+            LogListBlock midiLog = log.putChild("MIDI Cache");
+            midiLog.put("Cached Songs", "%d", JingleTimelineCache.getCachedCount());
+            midiLog.put("Cached Size", "%d KB", JingleTimelineCache.getCachedSize() / 1024);
+            midiLog.put("Hits", "%d", stats.hitCount());
+            midiLog.put("Misses", "%d", stats.missCount());
+            midiLog.put("Evictions", "%d", stats.evictionCount());
+            midiLog.put("Playing", "%d", JingleEngine.getPlayingCount());
+        }
+
+        for(CraftBookMechanic mech : plugin.getMechanics()) {
+            if(!(mech instanceof Pipes)) continue;
+            PipeMetrics metrics = ((Pipes) mech).getMetrics();
+            LogListBlock pipeLog = log.putChild("Pipes");
+            pipeLog.put("Pulses", "%d", metrics.getPulses());
+            pipeLog.put("Items Pulled", "%d", metrics.getItemsPulled());
+            pipeLog.put("Items Moved", "%d", metrics.getItemsMoved());
+            pipeLog.put("Outputs Offered", "%d", metrics.getOutputs());
+            pipeLog.put("Average Pulse Time", "%d us", metrics.getPulses() == 0 ? 0 : metrics.getNanos() / metrics.getPulses() / 1000);
+
+            List<PipeMetrics.NetworkMetrics> networks = metrics.getNetworks();
+            networks.sort((a, b) -> Long.compare(b.getItemsMoved(), a.getItemsMoved()));
+            LogListBlock networkLog = pipeLog.putChild("Busiest Networks");
+            for(PipeMetrics.NetworkMetrics network : networks.subList(0, Math.min(10, networks.size())))
+                networkLog.put(network.getWorld() + " " + network.getX() + "," + network.getY() + "," + network.getZ(),
+                        "%d moved of %d pulled in %d pulse(s)", network.getItemsMoved(), network.getItemsPulled(), network.getPulses());
+        }
 
         append(log);
         appendln();
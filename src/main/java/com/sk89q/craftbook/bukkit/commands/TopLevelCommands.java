@@ -6,11 +6,13 @@ import com.sk89q.craftbook.mechanics.headdrops.HeadDropsCommands;
 import com.sk89q.craftbook.util.ItemSyntax;
 import com.sk89q.minecraft.util.commands.CommandException;
 import org.bukkit.ChatColor;
+import org.bukkit.World;
 import org.bukkit.command.CommandSender;
 
 import com.sk89q.craftbook.bukkit.CraftBookPlugin;
 import com.sk89q.craftbook.bukkit.ReportWriter;
 import com.sk89q.craftbook.bukkit.util.CraftBookBukkitUtil;
+import com.sk89q.craftbook.core.st.SelfTriggeringManager;
 import com.sk89q.craftbook.mechanics.area.AreaCommands;
 import com.sk89q.craftbook.mechanics.cauldron.CauldronCommands;
 import com.sk89q.craftbook.mechanics.crafting.RecipeCommands;
@@ -177,6 +179,23 @@ public class TopLevelCommands {
             }
         }
 
+        @Command(aliases = {"st", "selftriggers"}, desc = "Shows how many self-triggering mechanics are loaded.", max = 0)
+        @CommandPermissions({"craftbook.st.info"})
+        public void selfTriggers(CommandContext args, final CommandSender sender) throws CommandException {
+
+            SelfTriggeringManager manager = CraftBookPlugin.inst().getSelfTriggerManager();
+            if(manager == null)
+                throw new CommandException("No self-triggering mechanics are enabled!");
+
+            sender.sendMessage(ChatColor.YELLOW + "Self-triggering mechanics loaded: " + manager.getSelfTriggerCount());
+            for(World world : CraftBookPlugin.server().getWorlds()) {
+                if(manager.getSelfTriggerChunkCount(world) == 0) continue;
+                sender.sendMessage(ChatColor.YELLOW + world.getName() + ": " + manager.getSelfTriggerCount(world) + " in " + manager.getSelfTriggerChunkCount(world) + " chunk(s)");
+            }
+            if(sender instanceof Player)
+                sender.sendMessage(ChatColor.YELLOW + "Current chunk: " + manager.getSelfTriggerCount(((Player) sender).getLocation().getChunk()));
+        }
+
         @Command(aliases = {"dev"}, desc = "Advanced developer commands")
         @CommandPermissions({"craftbook.developer"})
         public void dev(CommandContext args, final CommandSender sender) throws CommandPermissionsException {
@@ -0,0 +1,21 @@
+package com.sk89q.craftbook.core.st;
+
+/**
+ * A resolved self-triggering mechanic, that the {@link SelfTriggeringManager} can make think directly instead of
+ * firing a {@link com.sk89q.craftbook.util.events.SelfTriggerThinkEvent} for it.
+ */
+public interface SelfTriggerHandle {
+
+    /**
+     * Checks whether this handle still represents the mechanic at its location. Once a handle is invalid, the manager
+     * falls back to firing think events until a new handle is registered.
+     *
+     * @return If the handle is valid
+     */
+    boolean isValid();
+
+    /**
+     * Causes the mechanic to think.
+     */
+    void think();
+}
@@ -3,6 +3,7 @@ package com.sk89q.craftbook.core.st;
 import com.sk89q.craftbook.bukkit.CraftBookPlugin;
 import com.sk89q.craftbook.bukkit.util.CraftBookBukkitUtil;
 import com.sk89q.craftbook.util.EventUtil;
+import com.sk89q.craftbook.util.LongHashMap;
 import com.sk89q.craftbook.util.events.SelfTriggerPingEvent;
 import com.sk89q.craftbook.util.events.SelfTriggerThinkEvent;
 import com.sk89q.craftbook.util.events.SelfTriggerUnregisterEvent;
@@ -10,6 +11,7 @@ import com.sk89q.craftbook.util.events.SelfTriggerUnregisterEvent.UnregisterReas
 import org.bukkit.Bukkit;
 import org.bukkit.Chunk;
 import org.bukkit.Location;
+import org.bukkit.World;
 import org.bukkit.block.BlockState;
 import org.bukkit.block.Sign;
 import org.bukkit.event.EventHandler;
@@ -19,16 +21,63 @@ import org.bukkit.event.world.ChunkLoadEvent;
 import org.bukkit.event.world.ChunkUnloadEvent;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
-import java.util.HashSet;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
 import java.util.logging.Level;
 
 public class SelfTriggeringManager implements Listener {
 
     /**
-     * List of mechanics that think on a routine basis.
+     * The mechanics that think on a routine basis, bucketed per world and then per packed chunk coordinate.
      */
-    private final Collection<Location> thinkingMechanics = new HashSet<>();
+    private final Map<UUID, LongHashMap<ChunkBucket>> thinkingMechanics = new HashMap<>();
+
+    /**
+     * The total amount of registered mechanics, across all buckets.
+     */
+    private int registeredCount = 0;
+
+    /**
+     * The per-tick think budget in nanoseconds, or 0 if every mechanic thinks in a single pass.
+     */
+    private final long thinkBudget;
+
+    /**
+     * The amount of ticks over which a full round of thinking is spread.
+     */
+    private final int thinkRate;
+
+    public SelfTriggeringManager() {
+
+        this(0, 1);
+    }
+
+    /**
+     * Creates a manager that optionally spreads thinking across ticks.
+     *
+     * @param thinkBudget The maximum time in milliseconds spent thinking per tick, or 0 to think all mechanics at once.
+     * @param thinkRate The amount of ticks a full round of thinking is spread over.
+     */
+    public SelfTriggeringManager(double thinkBudget, int thinkRate) {
+
+        this.thinkBudget = thinkBudget > 0 ? (long) (thinkBudget * 1000000) : 0;
+        this.thinkRate = Math.max(1, thinkRate);
+    }
+
+    /**
+     * Gets whether this manager spreads thinking across ticks, in which case the clock should run every tick.
+     *
+     * @return If thinking is time sliced
+     */
+    public boolean isTimeSliced() {
+
+        return thinkBudget > 0;
+    }
 
     public void registerSelfTrigger(Chunk chunk) {
         if (!chunk.getWorld().isChunkLoaded(chunk))
@@ -36,7 +85,7 @@ public class SelfTriggeringManager implements Listener {
         try {
             for(BlockState state : chunk.getTileEntities()) {
                 if(!(state instanceof Sign)) continue;
-                if(thinkingMechanics.contains(state.getLocation())) continue;
+                if(isSelfTriggering(state.getLocation())) continue;
                 SelfTriggerPingEvent event = new SelfTriggerPingEvent(state.getBlock());
                 Bukkit.getServer().getPluginManager().callEvent(event);
             }
@@ -49,74 +98,300 @@ public class SelfTriggeringManager implements Listener {
 
     public void registerSelfTrigger(Location location) {
 
-        if(thinkingMechanics.contains(location)) return;
-        hasChanged = true;
-        thinkingMechanics.add(location);
+        registerSelfTrigger(location, 1);
+    }
+
+    /**
+     * Registers a self-triggering mechanic that only thinks once every {@code interval} rounds.
+     *
+     * @param location The location of the mechanic
+     * @param interval The amount of think rounds between each think
+     */
+    public void registerSelfTrigger(Location location, int interval) {
+
+        registerSelfTrigger(location, interval, null);
+    }
+
+    /**
+     * Registers a self-triggering mechanic with a handle, that is made to think directly rather than through a
+     * {@link SelfTriggerThinkEvent}. The event is then only fired if other plugins listen to it.
+     *
+     * @param location The location of the mechanic
+     * @param interval The amount of think rounds between each think
+     * @param handle The handle of the mechanic, or null to use events
+     */
+    public void registerSelfTrigger(Location location, int interval, SelfTriggerHandle handle) {
+
+        LongHashMap<ChunkBucket> worldBuckets = thinkingMechanics.computeIfAbsent(location.getWorld().getUID(), uuid -> new LongHashMap<>());
+        long key = getChunkKey(location);
+        ChunkBucket bucket = worldBuckets.get(key);
+        if(bucket == null) {
+            bucket = new ChunkBucket();
+            worldBuckets.put(key, bucket);
+            bucketsChanged = true;
+        }
+
+        if(!bucket.add(location, Math.max(1, interval), handle)) return;
+        registeredCount++;
+        entriesChanged = true;
     }
 
     public void unregisterSelfTrigger(Location location, UnregisterReason reason) {
 
-        if(thinkingMechanics.isEmpty()) return; //Skip the checks this round. Save a little CPU with the array creation.
+        if(registeredCount == 0) return; //Skip the checks this round.
 
-        if(!thinkingMechanics.contains(location)) return;
+        ChunkBucket bucket = getBucket(location);
+        if(bucket == null || !bucket.contains(location)) return;
         SelfTriggerUnregisterEvent event = new SelfTriggerUnregisterEvent(location.getBlock(), reason);
         Bukkit.getServer().getPluginManager().callEvent(event);
         if(!event.isCancelled()) {
-            hasChanged = true;
-            thinkingMechanics.remove(location);
+            if(bucket.remove(location)) {
+                registeredCount--;
+                entriesChanged = true;
+                if(bucket.isEmpty()) {
+                    LongHashMap<ChunkBucket> worldBuckets = thinkingMechanics.get(location.getWorld().getUID());
+                    worldBuckets.remove(getChunkKey(location));
+                    if(worldBuckets.isEmpty())
+                        thinkingMechanics.remove(location.getWorld().getUID());
+                    bucketsChanged = true;
+                }
+            }
             CraftBookPlugin.logDebugMessage("Unregistered ST at: " + location.toString() + " for reason: " + reason.name(), "st.unregister");
         }
     }
 
     public void unregisterSelfTrigger(Chunk chunk) {
 
-        if(thinkingMechanics.isEmpty()) return; //Skip the checks this round. Save a little CPU with the array creation.
+        if(registeredCount == 0) return; //Skip the checks this round.
 
-        if(hasChanged || registeredLocations == null) {
-            registeredLocations = thinkingMechanics.toArray(new Location[thinkingMechanics.size()]);
-        }
+        LongHashMap<ChunkBucket> worldBuckets = thinkingMechanics.get(chunk.getWorld().getUID());
+        if(worldBuckets == null) return;
 
-        for (Location location : registeredLocations) {
-            if(location.getChunk().equals(chunk))
-                unregisterSelfTrigger(location, UnregisterReason.UNLOAD);
-        }
+        ChunkBucket bucket = worldBuckets.get(LongHashMap.toLong(chunk.getX(), chunk.getZ()));
+        if(bucket == null) return;
+
+        for (ThinkEntry entry : bucket.getEntries())
+            unregisterSelfTrigger(entry.location, UnregisterReason.UNLOAD);
+    }
+
+    /**
+     * Checks whether a mechanic is registered as self-triggering at the given location.
+     *
+     * @param location The location
+     * @return If it is registered
+     */
+    public boolean isSelfTriggering(Location location) {
+
+        ChunkBucket bucket = getBucket(location);
+        return bucket != null && bucket.contains(location);
     }
 
     public Collection<Location> getSelfTriggeringMechanics() {
 
-        return new ArrayList<>(thinkingMechanics);
+        List<Location> locations = new ArrayList<>(registeredCount);
+        for(LongHashMap<ChunkBucket> worldBuckets : thinkingMechanics.values())
+            for(ChunkBucket bucket : worldBuckets.values())
+                for(ThinkEntry entry : bucket.getEntries())
+                    locations.add(entry.location);
+        return locations;
+    }
+
+    /**
+     * Gets the amount of self-triggering mechanics registered across all worlds.
+     *
+     * @return The amount of mechanics
+     */
+    public int getSelfTriggerCount() {
+
+        return registeredCount;
     }
 
-    private Location[] registeredLocations;
-    private boolean hasChanged = false;
+    /**
+     * Gets the amount of self-triggering mechanics registered in the given world.
+     *
+     * @param world The world
+     * @return The amount of mechanics
+     */
+    public int getSelfTriggerCount(World world) {
+
+        LongHashMap<ChunkBucket> worldBuckets = thinkingMechanics.get(world.getUID());
+        if(worldBuckets == null) return 0;
+
+        int count = 0;
+        for(ChunkBucket bucket : worldBuckets.values())
+            count += bucket.size();
+        return count;
+    }
 
     /**
-     * Causes all thinking mechanics to think.
+     * Gets the amount of self-triggering mechanics registered in the given chunk.
+     *
+     * @param chunk The chunk
+     * @return The amount of mechanics
+     */
+    public int getSelfTriggerCount(Chunk chunk) {
+
+        LongHashMap<ChunkBucket> worldBuckets = thinkingMechanics.get(chunk.getWorld().getUID());
+        if(worldBuckets == null) return 0;
+
+        ChunkBucket bucket = worldBuckets.get(LongHashMap.toLong(chunk.getX(), chunk.getZ()));
+        return bucket == null ? 0 : bucket.size();
+    }
+
+    /**
+     * Gets the amount of chunks in the given world that contain self-triggering mechanics.
+     *
+     * @param world The world
+     * @return The amount of chunks
+     */
+    public int getSelfTriggerChunkCount(World world) {
+
+        LongHashMap<ChunkBucket> worldBuckets = thinkingMechanics.get(world.getUID());
+        return worldBuckets == null ? 0 : worldBuckets.size();
+    }
+
+    private ChunkBucket getBucket(Location location) {
+
+        LongHashMap<ChunkBucket> worldBuckets = thinkingMechanics.get(location.getWorld().getUID());
+        if(worldBuckets == null) return null;
+        return worldBuckets.get(getChunkKey(location));
+    }
+
+    private static long getChunkKey(Location location) {
+
+        return LongHashMap.toLong(location.getBlockX() >> 4, location.getBlockZ() >> 4);
+    }
+
+    private ChunkBucket[] registeredBuckets;
+    private boolean bucketsChanged = false;
+
+    private ThinkEntry[] registeredEntries;
+    private boolean entriesChanged = false;
+
+    /**
+     * The entries of the round currently being spread across ticks.
+     */
+    private ThinkEntry[] round;
+    private int roundCursor;
+    private int roundSlice;
+    private int ticksSinceRound;
+
+    /**
+     * Time spent over budget in the previous tick, which is taken from the budget of the next.
+     */
+    private long budgetDebt;
+
+    /**
+     * Causes all thinking mechanics to think. If this manager is time sliced, only the next slice of mechanics thinks.
      */
     public void think() {
 
-        if(thinkingMechanics.isEmpty()) return; //Skip the checks this round. Save a little CPU with the array creation.
+        if(registeredCount == 0) return; //Skip the checks this round.
+
+        externalThinkListeners = EventUtil.hasExternalListeners(SelfTriggerThinkEvent.getHandlerList());
+
+        if(isTimeSliced())
+            thinkSlice();
+        else
+            for(ThinkEntry entry : collectEntries())
+                think(entry);
+    }
+
+    /**
+     * Continues the current round of thinking, stopping once this tick's slice or budget is used up. A new round is
+     * started once the previous one is complete and the think rate has passed.
+     */
+    private void thinkSlice() {
+
+        ticksSinceRound++;
+
+        if(round == null || roundCursor >= round.length) {
+            if(round != null && ticksSinceRound < thinkRate)
+                return;
+            round = collectEntries();
+            roundCursor = 0;
+            roundSlice = (round.length + thinkRate - 1) / thinkRate;
+            ticksSinceRound = 0;
+        }
+
+        long start = System.nanoTime();
+        long deadline = start + thinkBudget - budgetDebt;
+        int end = Math.min(round.length, roundCursor + roundSlice);
 
-        if(hasChanged || registeredLocations == null) {
-            registeredLocations = thinkingMechanics.toArray(new Location[thinkingMechanics.size()]);
+        long now = start;
+        while(roundCursor < end && now < deadline) {
+            think(round[roundCursor++]);
+            now = System.nanoTime();
         }
 
-        for (Location location : registeredLocations) {
-            if(!location.getWorld().isChunkLoaded(location.getBlockX() >> 4, location.getBlockZ() >> 4)) {
-                unregisterSelfTrigger(location, UnregisterReason.UNLOAD);
-                continue;
+        budgetDebt = Math.min(thinkBudget, Math.max(0, now - deadline));
+    }
+
+    private ThinkEntry[] collectEntries() {
+
+        if(!entriesChanged && registeredEntries != null)
+            return registeredEntries;
+
+        if(bucketsChanged || registeredBuckets == null) {
+            List<ChunkBucket> buckets = new ArrayList<>();
+            for(LongHashMap<ChunkBucket> worldBuckets : thinkingMechanics.values())
+                buckets.addAll(worldBuckets.values());
+            registeredBuckets = buckets.toArray(new ChunkBucket[buckets.size()]);
+            bucketsChanged = false;
+        }
+
+        ThinkEntry[] entries = new ThinkEntry[registeredCount];
+        int i = 0;
+        for(ChunkBucket bucket : registeredBuckets) {
+            for(ThinkEntry entry : bucket.getEntries()) {
+                if(i == entries.length) break;
+                entries[i++] = entry;
             }
-            try {
-                SelfTriggerThinkEvent event = new SelfTriggerThinkEvent(location.getBlock());
-                Bukkit.getServer().getPluginManager().callEvent(event);
-                if(!event.isHandled()) {
-                    unregisterSelfTrigger(location, UnregisterReason.NOT_HANDLED);
+        }
+        registeredEntries = i == entries.length ? entries : Arrays.copyOf(entries, i);
+        entriesChanged = false;
+        return registeredEntries;
+    }
+
+    /**
+     * Whether plugins other than CraftBook listen to think events, as of the start of this think.
+     */
+    private boolean externalThinkListeners;
+
+    private void think(ThinkEntry entry) {
+
+        if(!entry.registered) return; // Unregistered since this round started.
+        if(entry.interval > 1 && --entry.countdown > 0) return;
+        entry.countdown = entry.interval;
+
+        Location location = entry.location;
+        if(!location.getWorld().isChunkLoaded(location.getBlockX() >> 4, location.getBlockZ() >> 4)) {
+            unregisterSelfTrigger(location, UnregisterReason.UNLOAD);
+            return;
+        }
+        try {
+            if(entry.handle != null) {
+                if(entry.handle.isValid()) {
+                    entry.handle.think();
+                    if(externalThinkListeners) {
+                        SelfTriggerThinkEvent event = new SelfTriggerThinkEvent(location.getBlock());
+                        event.setHandled(true);
+                        Bukkit.getServer().getPluginManager().callEvent(event);
+                    }
+                    return;
                 }
-            } catch (Throwable t) { // Mechanic failed to think for some reason
-                CraftBookPlugin.logger().log(Level.WARNING, "CraftBook mechanic: Failed to think for " + location.toString());
-                CraftBookBukkitUtil.printStacktrace(t);
-                unregisterSelfTrigger(location, UnregisterReason.ERROR);
+                entry.handle = null;
+            }
+
+            SelfTriggerThinkEvent event = new SelfTriggerThinkEvent(location.getBlock());
+            Bukkit.getServer().getPluginManager().callEvent(event);
+            if(!event.isHandled()) {
+                unregisterSelfTrigger(location, UnregisterReason.NOT_HANDLED);
             }
+        } catch (Throwable t) { // Mechanic failed to think for some reason
+            CraftBookPlugin.logger().log(Level.WARNING, "CraftBook mechanic: Failed to think for " + location.toString());
+            CraftBookBukkitUtil.printStacktrace(t);
+            unregisterSelfTrigger(location, UnregisterReason.ERROR);
         }
     }
 
@@ -137,4 +412,84 @@ public class SelfTriggeringManager implements Listener {
 
         unregisterSelfTrigger(event.getChunk());
     }
-}
\ No newline at end of file
+
+    /**
+     * A registered self-triggering mechanic.
+     */
+    private static final class ThinkEntry {
+
+        final Location location;
+        int interval;
+        int countdown;
+        boolean registered = true;
+        SelfTriggerHandle handle;
+
+        ThinkEntry(Location location, int interval) {
+
+            this.location = location;
+            this.interval = interval;
+            this.countdown = interval;
+        }
+    }
+
+    /**
+     * The self-triggering mechanics of a single chunk.
+     */
+    private static final class ChunkBucket {
+
+        private final Map<Location, ThinkEntry> entries = new LinkedHashMap<>();
+        private ThinkEntry[] snapshot;
+
+        boolean add(Location location, int interval, SelfTriggerHandle handle) {
+
+            ThinkEntry existing = entries.get(location);
+            if(existing != null) {
+                existing.interval = interval;
+                if(handle != null && (existing.handle == null || !existing.handle.isValid()))
+                    existing.handle = handle;
+                return false;
+            }
+            ThinkEntry entry = new ThinkEntry(location, interval);
+            entry.handle = handle;
+            entries.put(location, entry);
+            snapshot = null;
+            return true;
+        }
+
+        boolean remove(Location location) {
+
+            ThinkEntry entry = entries.remove(location);
+            if(entry == null) return false;
+            entry.registered = false;
+            snapshot = null;
+            return true;
+        }
+
+        boolean contains(Location location) {
+
+            return entries.containsKey(location);
+        }
+
+        boolean isEmpty() {
+
+            return entries.isEmpty();
+        }
+
+        int size() {
+
+            return entries.size();
+        }
+
+        /**
+         * Gets a snapshot of this bucket, which is only rebuilt after the bucket changes.
+         *
+         * @return The entries in this chunk
+         */
+        ThinkEntry[] getEntries() {
+
+            if(snapshot == null)
+                snapshot = entries.values().toArray(new ThinkEntry[entries.size()]);
+            return snapshot;
+        }
+    }
+}
@@ -20,14 +20,20 @@ import com.sk89q.worldedit.bukkit.BukkitAdapter;
 import com.sk89q.worldedit.extent.clipboard.BlockArrayClipboard;
 import org.apache.commons.lang.StringUtils;
 import org.bukkit.Bukkit;
+import org.bukkit.Location;
 import org.bukkit.OfflinePlayer;
+import org.bukkit.block.Block;
 import org.bukkit.event.EventHandler;
 import org.bukkit.event.EventPriority;
 import org.bukkit.event.block.Action;
 import org.bukkit.event.block.SignChangeEvent;
 
 import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashSet;
 import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 import java.util.logging.Level;
 import java.util.regex.Pattern;
 
@@ -44,9 +50,20 @@ public class Area extends AbstractCraftBookMechanic {
     public boolean enable() {
 
         instance = this;
+        CopyManager.getInstance().setMaxCacheSize(cacheSize * 1024L);
+        CopyManager.getInstance().setFormat(compactFormat);
+        AreaPaster.setBlocksPerTick(blocksPerTick);
         return true;
     }
 
+    @Override
+    public void disable() {
+
+        AreaPaster.finishAll();
+        toggling.clear();
+        CopyManager.getInstance().shutdown();
+    }
+
     @EventHandler(priority = EventPriority.HIGH)
     public void onSignChange(SignChangeEvent event) {
 
@@ -200,58 +217,92 @@ public class Area extends AbstractCraftBookMechanic {
         toggle(sign, save);
     }
 
+    /**
+     * Signs whose areas are still being loaded or pasted, so that they aren't toggled again before they are finished.
+     */
+    private static final Set<Location> toggling = new HashSet<>();
+
     private static boolean toggle(ChangedSign sign, boolean save) {
 
         if (!checkSign(sign)) return false;
 
-        try {
-            String namespace = sign.getLine(0);
-            String id = StringUtils.replace(sign.getLine(2), "-", "").toLowerCase(Locale.ENGLISH);
-            String inactiveID = StringUtils.replace(sign.getLine(3), "-", "").toLowerCase(Locale.ENGLISH);
+        Block block = sign.getBlock();
+        Location location = block.getLocation();
+        if (toggling.contains(location)) return false;
 
-            BlockArrayClipboard copy;
+        String namespace = sign.getLine(0);
+        String id = StringUtils.replace(sign.getLine(2), "-", "").toLowerCase(Locale.ENGLISH);
+        String inactiveID = StringUtils.replace(sign.getLine(3), "-", "").toLowerCase(Locale.ENGLISH);
+        boolean hasInactive = !inactiveID.isEmpty() && !inactiveID.equals("--");
+        boolean toggleOff = checkToggleState(sign);
+
+        // Both states are needed to work out which blocks change, which also means the state for the next toggle is
+        // already loaded by then.
+        CompletableFuture<BlockArrayClipboard> active = CopyManager.getInstance().loadAsync(namespace, id);
+        CompletableFuture<BlockArrayClipboard> inactive = hasInactive ? CopyManager.getInstance().loadAsync(namespace, inactiveID)
+                : CompletableFuture.completedFuture(null);
+        CompletableFuture<Void> needed = CompletableFuture.allOf(active, inactive);
+
+        toggling.add(location);
+        if (needed.isDone()) {
+            return applyToggle(sign, save, toggleOff, namespace, id, inactiveID, active, inactive);
+        }
 
-            if (checkToggleState(sign)) {
-                copy = CopyManager.getInstance().load(namespace, id);
-                copy.getRegion().setWorld(BukkitAdapter.adapt(sign.getBlock().getWorld()));
+        String[] lines = sign.getLines().clone();
+        needed.whenCompleteAsync((result, error) -> {
+            // The sign may have been changed or broken while the areas were loading.
+            if (!SignUtil.isSign(block) || !Arrays.equals(CraftBookBukkitUtil.toChangedSign(block).getLines(), lines)) {
+                toggling.remove(location);
+                return;
+            }
 
-                // if this is a save area save it before toggling off
-                if (save) {
-                    copy = CopyManager.getInstance().copy(copy.getRegion());
-                    CopyManager.getInstance().save(namespace, id, copy);
-                }
-                // if we are toggling to the second area we dont clear the old area
-                if (!inactiveID.isEmpty() && !inactiveID.equals("--")) {
-                    copy = CopyManager.getInstance().load(namespace, inactiveID);
-                    copy.getRegion().setWorld(BukkitAdapter.adapt(sign.getBlock().getWorld()));
-                    CopyManager.getInstance().paste(copy);
-                } else {
-                    CopyManager.getInstance().clear(copy);
-                }
-                setToggledState(sign, false);
-            } else {
+            applyToggle(CraftBookBukkitUtil.toChangedSign(block), save, toggleOff, namespace, id, inactiveID, active, inactive);
+        }, CopyManager.MAIN_THREAD);
+        return true;
+    }
 
-                // toggle the area on
-                // if this is a save area save it before toggling off
-                if (save && !inactiveID.isEmpty() && !inactiveID.equals("--")) {
-                    copy = CopyManager.getInstance().load(namespace, inactiveID);
-                    copy.getRegion().setWorld(BukkitAdapter.adapt(sign.getBlock().getWorld()));
-                    copy = CopyManager.getInstance().copy(copy.getRegion());
-                    CopyManager.getInstance().save(namespace, inactiveID, copy);
-                }
+    private static boolean applyToggle(ChangedSign sign, boolean save, boolean toggleOff, String namespace, String id, String inactiveID,
+            CompletableFuture<BlockArrayClipboard> active, CompletableFuture<BlockArrayClipboard> inactive) {
 
-                copy = CopyManager.getInstance().load(namespace, id);
-                copy.getRegion().setWorld(BukkitAdapter.adapt(sign.getBlock().getWorld()));
-                CopyManager.getInstance().paste(copy);
-                setToggledState(sign, true);
+        Block block = sign.getBlock();
+        try {
+            BlockArrayClipboard activeCopy = CopyManager.getLoaded(active);
+            BlockArrayClipboard inactiveCopy = CopyManager.getLoaded(inactive);
+            activeCopy.getRegion().setWorld(BukkitAdapter.adapt(block.getWorld()));
+            if (inactiveCopy != null)
+                inactiveCopy.getRegion().setWorld(BukkitAdapter.adapt(block.getWorld()));
+
+            // if this is a save area save the current state before toggling, which is then what the world is changed from
+            if (save && toggleOff) {
+                activeCopy = CopyManager.getInstance().copy(activeCopy.getRegion());
+                saveInBackground(namespace, id, activeCopy);
+            } else if (save && inactiveCopy != null) {
+                inactiveCopy = CopyManager.getInstance().copy(inactiveCopy.getRegion());
+                saveInBackground(namespace, inactiveID, inactiveCopy);
             }
+
+            // if we are toggling to the second area we dont clear the old area
+            CopyManager.getInstance().pasteChanges(activeCopy, inactiveCopy, !toggleOff, () -> {
+                toggling.remove(block.getLocation());
+                if (SignUtil.isSign(block))
+                    setToggledState(CraftBookBukkitUtil.toChangedSign(block), !toggleOff);
+            });
             return true;
         } catch (IOException | WorldEditException e) {
+            toggling.remove(block.getLocation());
             CraftBookPlugin.logger().log(Level.SEVERE, "Failed to toggle Area: " + e.getMessage());
         }
         return false;
     }
 
+    private static void saveInBackground(String namespace, String id, BlockArrayClipboard copy) {
+
+        CopyManager.getInstance().saveAsync(namespace, id, copy).exceptionally(e -> {
+            CraftBookPlugin.logger().log(Level.SEVERE, "Failed to save Area: " + e.getMessage());
+            return null;
+        });
+    }
+
     public static boolean toggleCold(ChangedSign sign) {
 
         if (!checkSign(sign)) return false;
@@ -343,6 +394,9 @@ public class Area extends AbstractCraftBookMechanic {
     boolean shortenNames;
     int maxAreaSize;
     int maxAreasPerUser;
+    private int cacheSize;
+    private int blocksPerTick;
+    private boolean compactFormat;
 
     @Override
     public void loadConfiguration (YAMLProcessor config, String path) {
@@ -361,5 +415,14 @@ public class Area extends AbstractCraftBookMechanic {
 
         config.setComment(path + "max-per-user", "Sets the max amount of ToggleAreas that can be within one namespace.");
         maxAreasPerUser = config.getInt(path + "max-per-user", 30);
+
+        config.setComment(path + "cache-size", "The most memory, in kilobytes, that ToggleAreas kept in memory can take up.");
+        cacheSize = config.getInt(path + "cache-size", 65536);
+
+        config.setComment(path + "blocks-per-tick", "The most blocks that toggling ToggleAreas can change each tick. Only changed blocks are counted. Set to -1 to change whole areas at once.");
+        blocksPerTick = config.getInt(path + "blocks-per-tick", 10000);
+
+        config.setComment(path + "compact-format", "Save ToggleAreas in CraftBook's own area format, which loads much faster than schematics but can't be opened by WorldEdit. Saving an area in this format replaces its schematic. Areas with entities or biomes are always saved as schematics. Existing areas can be converted with /area migrate.");
+        compactFormat = config.getBoolean(path + "compact-format", false);
     }
 }
\ No newline at end of file
@@ -26,7 +26,6 @@ import org.bukkit.entity.Player;
 
 import java.io.File;
 import java.io.FilenameFilter;
-import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Locale;
@@ -114,12 +113,13 @@ public class AreaCommands {
                     "' and ID '" + id + "'.");
 
             // Save
-            try {
-                CopyManager.getInstance().save(namespace, id.toLowerCase(Locale.ENGLISH), copy);
-                player.print("Area saved as '" + id + "' under the '" + namespace + "' namespace.");
-            } catch (IOException e) {
-                player.printError("Could not save area: " + e.getMessage());
-            }
+            String savedNamespace = namespace;
+            CopyManager.getInstance().saveAsync(namespace, id.toLowerCase(Locale.ENGLISH), copy, !copyBiomes).whenCompleteAsync((result, error) -> {
+                if (error == null)
+                    player.print("Area saved as '" + id + "' under the '" + savedNamespace + "' namespace.");
+                else
+                    player.printError("Could not save area: " + (error.getCause() != null ? error.getCause() : error).getMessage());
+            }, CopyManager.MAIN_THREAD);
         } catch (NoClassDefFoundError e) {
             throw new CommandException("WorldEdit.jar does not exist in plugins/, or is outdated. (Or you are using an outdated version of CraftBook)");
         } catch (IncompleteRegionException e) {
@@ -174,7 +174,7 @@ public class AreaCommands {
         List<String> areaList = new ArrayList<>();
 
         FilenameFilter fnf = (dir, name) -> Area.instance.useSchematics
-                ? name.endsWith(".schematic") || name.endsWith(".schem")
+                ? name.endsWith(".schematic") || name.endsWith(".schem") || name.endsWith(".cbarea")
                 : name.endsWith(".cbcopy");
 
         if (folder != null && folder.exists()) {
@@ -182,6 +182,7 @@ public class AreaCommands {
                 String areaName = area.getName();
                 areaName = areaName.replace(".schematic", "");
                 areaName = areaName.replace(".schem", "");
+                areaName = areaName.replace(".cbarea", "");
                 areaName = areaName.replace(".cbcopy", "");
                 areaList.add(ChatColor.AQUA + folder.getName() + "   :   " + ChatColor.YELLOW + areaName);
             }
@@ -192,6 +193,7 @@ public class AreaCommands {
                         String areaName = area.getName();
                         areaName = areaName.replace(".schematic", "");
                         areaName = areaName.replace(".schem", "");
+                        areaName = areaName.replace(".cbarea", "");
                         areaName = areaName.replace(".cbcopy", "");
                         areaList.add(ChatColor.AQUA + folder.getName() + "   :   " + ChatColor.YELLOW + areaName);
                     }
@@ -304,7 +306,7 @@ public class AreaCommands {
             }
         } else {
             // add the area suffix
-            String[] possibleFilenames = {areaId + ".schematic", areaId + ".schem", areaId + ".cbcopy"};
+            String[] possibleFilenames = {areaId + ".cbarea", areaId + ".schematic", areaId + ".schem", areaId + ".cbcopy"};
 
             for (String filename : possibleFilenames) {
                 File file = new File(areas, filename);
@@ -318,13 +320,40 @@ public class AreaCommands {
         }
     }
 
+    @Command(aliases = {"migrate"}, desc = "Converts saved areas to CraftBook's compact area format, or back to schematics.",
+            usage = "[-n namespace] [-s]",
+            flags = "sn:")
+    @CommandPermissions("craftbook.mech.area.command.migrate")
+    public void migrate(CommandContext context, CommandSender sender) throws CommandException {
+
+        String namespace = context.hasFlag('n') ? context.getFlag('n') : null;
+        boolean toCompact = !context.hasFlag('s');
+
+        if (namespace != null && !new File(new File(plugin.getDataFolder(), "areas"), namespace).isDirectory())
+            throw new CommandException("The namespace '" + namespace + "' does not exist.");
+
+        sender.sendMessage(ChatColor.YELLOW + "Converting areas" + (namespace == null ? "" : " in the '" + namespace + "' namespace")
+                + (toCompact ? " to the compact format..." : " to schematics..."));
+
+        CopyManager.getInstance().migrateAsync(namespace, toCompact).whenCompleteAsync((migration, error) -> {
+            if (error != null) {
+                sender.sendMessage(ChatColor.RED + "Failed to convert areas: " + error.getMessage());
+                return;
+            }
+            sender.sendMessage(ChatColor.YELLOW + "Converted " + migration.getConverted().size() + " area(s).");
+            if (!migration.getSkipped().isEmpty())
+                sender.sendMessage(ChatColor.RED + "Left " + migration.getSkipped().size() + " area(s) unchanged, as they have entities or biomes or"
+                        + " couldn't be read: " + String.join(", ", migration.getSkipped()));
+        }, CopyManager.MAIN_THREAD);
+    }
+
     // Deletes all files and subdirectories under dir.
     // Returns true if all deletions were successful.
     // If a deletion fails, the method stops attempting to delete and returns false.
     private boolean deleteDir(File dir) {
 
         FilenameFilter fnf = (dir1, name) -> Area.instance.useSchematics
-                ? name.endsWith(".schematic") || name.endsWith(".schem")
+                ? name.endsWith(".schematic") || name.endsWith(".schem") || name.endsWith(".cbarea")
                 : name.endsWith(".cbcopy");
 
         if (dir.isDirectory()) {
@@ -0,0 +1,171 @@
+package com.sk89q.craftbook.mechanics.area;
+
+import com.sk89q.worldedit.extent.clipboard.BlockArrayClipboard;
+import com.sk89q.worldedit.math.BlockVector3;
+import com.sk89q.worldedit.world.block.BaseBlock;
+import com.sk89q.worldedit.world.block.BlockTypes;
+
+import java.lang.ref.WeakReference;
+import java.util.Arrays;
+
+/**
+ * The blocks that differ between the active and inactive states of an area.
+ *
+ * A diff can be applied in either direction, so one diff serves both toggles of an area. Blocks are kept in order from
+ * the bottom of the area up. When a diff is applied, blocks that become air are removed from the top down first, and the
+ * other blocks are then placed from the bottom up, so that no block is ever left without the blocks it rests on. An area
+ * without an inactive state is treated as being cleared to air.
+ */
+final class AreaDiff {
+
+    private static final BaseBlock AIR = BlockTypes.AIR.getDefaultState().toBaseBlock();
+
+    private final WeakReference<BlockArrayClipboard> inactive;
+    private final boolean hasInactive;
+
+    private final BlockVector3 min;
+    private final int sizeX;
+    private final int sizeZ;
+
+    private final int[] indices;
+    private final BaseBlock[] activeBlocks;
+    private final BaseBlock[] inactiveBlocks;
+
+    private AreaDiff(BlockArrayClipboard inactive, BlockVector3 min, int sizeX, int sizeZ, int[] indices,
+            BaseBlock[] activeBlocks, BaseBlock[] inactiveBlocks) {
+
+        this.inactive = new WeakReference<>(inactive);
+        this.hasInactive = inactive != null;
+        this.min = min;
+        this.sizeX = sizeX;
+        this.sizeZ = sizeZ;
+        this.indices = indices;
+        this.activeBlocks = activeBlocks;
+        this.inactiveBlocks = inactiveBlocks;
+    }
+
+    /**
+     * Checks whether two states of an area cover the same region, so that a diff can be made between them.
+     *
+     * @param active The active state
+     * @param inactive The inactive state, or null if the area is cleared instead
+     * @return If they can be diffed
+     */
+    static boolean canDiff(BlockArrayClipboard active, BlockArrayClipboard inactive) {
+
+        return inactive == null || active.getRegion().getMinimumPoint().equals(inactive.getRegion().getMinimumPoint())
+                && active.getDimensions().equals(inactive.getDimensions());
+    }
+
+    /**
+     * Finds the blocks that differ between two states of an area.
+     *
+     * @param active The active state
+     * @param inactive The inactive state, or null if the area is cleared instead
+     * @return The diff
+     */
+    static AreaDiff between(BlockArrayClipboard active, BlockArrayClipboard inactive) {
+
+        BlockVector3 min = active.getRegion().getMinimumPoint();
+        BlockVector3 size = active.getDimensions();
+        int sizeX = size.getBlockX();
+        int sizeY = size.getBlockY();
+        int sizeZ = size.getBlockZ();
+
+        int count = 0;
+        int[] indices = new int[64];
+        BaseBlock[] activeBlocks = new BaseBlock[64];
+        BaseBlock[] inactiveBlocks = new BaseBlock[64];
+
+        int index = 0;
+        for (int y = 0; y < sizeY; y++) {
+            for (int z = 0; z < sizeZ; z++) {
+                for (int x = 0; x < sizeX; x++, index++) {
+                    BlockVector3 position = min.add(x, y, z);
+                    BaseBlock activeBlock = active.getFullBlock(position);
+                    BaseBlock inactiveBlock = inactive == null ? AIR : inactive.getFullBlock(position);
+                    if (activeBlock.equals(inactiveBlock)) {
+                        continue;
+                    }
+
+                    if (count == indices.length) {
+                        indices = Arrays.copyOf(indices, count * 2);
+                        activeBlocks = Arrays.copyOf(activeBlocks, count * 2);
+                        inactiveBlocks = Arrays.copyOf(inactiveBlocks, count * 2);
+                    }
+                    indices[count] = index;
+                    activeBlocks[count] = activeBlock;
+                    inactiveBlocks[count] = inactiveBlock;
+                    count++;
+                }
+            }
+        }
+
+        return new AreaDiff(inactive, min, sizeX, sizeZ, Arrays.copyOf(indices, count), Arrays.copyOf(activeBlocks, count),
+                Arrays.copyOf(inactiveBlocks, count));
+    }
+
+    /**
+     * Checks whether this diff was made against the given inactive state.
+     *
+     * @param inactive The inactive state, or null if the area is cleared instead
+     * @return If this diff is for that state
+     */
+    boolean isFor(BlockArrayClipboard inactive) {
+
+        return inactive == null ? !hasInactive : this.inactive.get() == inactive;
+    }
+
+    /**
+     * Gets the amount of blocks that differ.
+     *
+     * @return The amount of blocks
+     */
+    int size() {
+
+        return indices.length;
+    }
+
+    BlockVector3 getPosition(int i) {
+
+        int index = indices[i];
+        return min.add(index % sizeX, index / (sizeX * sizeZ), index / sizeX % sizeZ);
+    }
+
+    BaseBlock getBlock(int i, boolean toActive) {
+
+        return toActive ? activeBlocks[i] : inactiveBlocks[i];
+    }
+
+    /**
+     * Gets the order to change blocks in. Blocks that become air come first, from the top of the area down, followed by
+     * every other block from the bottom up.
+     *
+     * @param toActive Whether the diff is applied to the active state, rather than the inactive state
+     * @return The indices of the blocks, in the order they should be changed
+     */
+    int[] getApplyOrder(boolean toActive) {
+
+        BaseBlock[] blocks = toActive ? activeBlocks : inactiveBlocks;
+        int[] order = new int[blocks.length];
+        int next = 0;
+        for (int i = blocks.length - 1; i >= 0; i--)
+            if (blocks[i].getBlockType().getMaterial().isAir())
+                order[next++] = i;
+        for (int i = 0; i < blocks.length; i++)
+            if (!blocks[i].getBlockType().getMaterial().isAir())
+                order[next++] = i;
+        return order;
+    }
+
+    /**
+     * Gets roughly how much memory this diff takes up.
+     *
+     * @return The size, in bytes
+     */
+    int getMemorySize() {
+
+        // An index and two block references per block.
+        return 96 + indices.length * 20;
+    }
+}
@@ -0,0 +1,275 @@
+package com.sk89q.craftbook.mechanics.area;
+
+import com.sk89q.jnbt.CompoundTag;
+import com.sk89q.jnbt.NBTInputStream;
+import com.sk89q.jnbt.NBTOutputStream;
+import com.sk89q.jnbt.Tag;
+import com.sk89q.worldedit.WorldEdit;
+import com.sk89q.worldedit.WorldEditException;
+import com.sk89q.worldedit.extension.input.InputParseException;
+import com.sk89q.worldedit.extension.input.ParserContext;
+import com.sk89q.worldedit.extent.clipboard.BlockArrayClipboard;
+import com.sk89q.worldedit.math.BlockVector3;
+import com.sk89q.worldedit.regions.CuboidRegion;
+import com.sk89q.worldedit.world.block.BaseBlock;
+import com.sk89q.worldedit.world.block.BlockState;
+import com.sk89q.worldedit.world.block.BlockTypes;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * CraftBook's own area format, which is much quicker to read than a schematic.
+ *
+ * A file holds a palette of the block states in the area, and the palette index of every block bit-packed into longs,
+ * without compression. Blocks are stored from the bottom of the area up, in x then z order, and block entities follow as
+ * NBT. Reading a file only has to parse each block state in the palette once, and can skip air altogether.
+ *
+ * Only blocks and block entities are stored. Areas with entities or biomes must be saved as schematics.
+ */
+final class AreaFormat {
+
+    static final String EXTENSION = "cbarea";
+
+    private static final int MAGIC = 0x43424152; // CBAR
+    private static final byte VERSION = 1;
+
+    private AreaFormat() {
+    }
+
+    /**
+     * Checks whether a clipboard can be saved in this format without losing anything, other than its biomes.
+     *
+     * @param clipboard The clipboard
+     * @return If it can be saved
+     */
+    static boolean canWrite(BlockArrayClipboard clipboard) {
+
+        return clipboard.getEntities().isEmpty();
+    }
+
+    /**
+     * Writes a clipboard to a file.
+     *
+     * @param clipboard The clipboard
+     * @param file The file
+     * @throws IOException If the file couldn't be written
+     */
+    static void write(BlockArrayClipboard clipboard, File file) throws IOException {
+
+        BlockVector3 origin = clipboard.getOrigin();
+        BlockVector3 min = clipboard.getRegion().getMinimumPoint();
+        BlockVector3 size = clipboard.getDimensions();
+        int volume = size.getBlockX() * size.getBlockY() * size.getBlockZ();
+
+        Map<BlockState, Integer> paletteIndices = new HashMap<>();
+        List<BlockState> palette = new ArrayList<>();
+        List<BaseBlock> blockEntities = new ArrayList<>();
+        List<Integer> blockEntityIndices = new ArrayList<>();
+        int[] blocks = new int[volume];
+
+        int index = 0;
+        for (int y = 0; y < size.getBlockY(); y++) {
+            for (int z = 0; z < size.getBlockZ(); z++) {
+                for (int x = 0; x < size.getBlockX(); x++, index++) {
+                    BaseBlock block = clipboard.getFullBlock(min.add(x, y, z));
+                    BlockState state = block.toImmutableState();
+                    Integer paletteIndex = paletteIndices.get(state);
+                    if (paletteIndex == null) {
+                        paletteIndex = palette.size();
+                        paletteIndices.put(state, paletteIndex);
+                        palette.add(state);
+                    }
+                    blocks[index] = paletteIndex;
+                    if (block.hasNbtData()) {
+                        blockEntities.add(block);
+                        blockEntityIndices.add(index);
+                    }
+                }
+            }
+        }
+
+        int bits = getBitsPerEntry(palette.size());
+        long[] packed = pack(blocks, bits);
+
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+            out.writeInt(MAGIC);
+            out.writeByte(VERSION);
+            writeVector(out, origin);
+            writeVector(out, min);
+            writeVector(out, size);
+
+            out.writeInt(palette.size());
+            for (BlockState state : palette) {
+                byte[] name = state.getAsString().getBytes(StandardCharsets.UTF_8);
+                out.writeShort(name.length);
+                out.write(name);
+            }
+
+            out.writeByte(bits);
+            out.writeInt(packed.length);
+            for (long value : packed) {
+                out.writeLong(value);
+            }
+
+            out.writeInt(blockEntities.size());
+            NBTOutputStream nbt = new NBTOutputStream(out);
+            for (int i = 0; i < blockEntities.size(); i++) {
+                out.writeInt(blockEntityIndices.get(i));
+                nbt.writeNamedTag("", blockEntities.get(i).getNbtData());
+            }
+        }
+    }
+
+    /**
+     * Reads a clipboard from a file.
+     *
+     * The file is read into memory rather than mapped, as a mapping would keep the file open until it is garbage
+     * collected, which stops it being replaced or deleted on Windows.
+     *
+     * @param file The file
+     * @return The clipboard
+     * @throws IOException If the file couldn't be read, or isn't a valid area
+     */
+    static BlockArrayClipboard read(File file) throws IOException {
+
+        ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(file.toPath()));
+
+        try {
+            return read(buffer);
+        } catch (BufferUnderflowException | IndexOutOfBoundsException e) {
+            throw new IOException("Area file is truncated: " + file.getName(), e);
+        }
+    }
+
+    private static BlockArrayClipboard read(ByteBuffer buffer) throws IOException {
+
+        if (buffer.getInt() != MAGIC) {
+            throw new IOException("Not a CraftBook area file");
+        }
+        byte version = buffer.get();
+        if (version != VERSION) {
+            throw new IOException("Unsupported area file version: " + version);
+        }
+
+        BlockVector3 origin = readVector(buffer);
+        BlockVector3 min = readVector(buffer);
+        BlockVector3 size = readVector(buffer);
+        int sizeX = size.getBlockX();
+        int sizeY = size.getBlockY();
+        int sizeZ = size.getBlockZ();
+        if (sizeX <= 0 || sizeY <= 0 || sizeZ <= 0) {
+            throw new IOException("Invalid area size: " + size);
+        }
+
+        ParserContext parserContext = new ParserContext();
+        parserContext.setRestricted(false);
+        parserContext.setTryLegacy(false);
+        parserContext.setPreferringWildcard(false);
+
+        BlockState[] palette = new BlockState[buffer.getInt()];
+        for (int i = 0; i < palette.length; i++) {
+            byte[] name = new byte[buffer.getShort() & 0xFFFF];
+            buffer.get(name);
+            String state = new String(name, StandardCharsets.UTF_8);
+            try {
+                palette[i] = WorldEdit.getInstance().getBlockFactory().parseFromInput(state, parserContext).toImmutableState();
+            } catch (InputParseException e) {
+                throw new IOException("Invalid block state in area: " + state, e);
+            }
+            // Air is what the clipboard starts with, so it never needs to be set.
+            if (palette[i].getBlockType() == BlockTypes.AIR) {
+                palette[i] = null;
+            }
+        }
+
+        int bits = buffer.get();
+        if (bits != getBitsPerEntry(palette.length)) {
+            throw new IOException("Invalid area block data");
+        }
+        int entriesPerLong = 64 / bits;
+        long mask = (1L << bits) - 1;
+        long[] packed = new long[buffer.getInt()];
+        buffer.asLongBuffer().get(packed);
+        buffer.position(buffer.position() + packed.length * Long.BYTES);
+
+        BlockArrayClipboard clipboard = new BlockArrayClipboard(new CuboidRegion(min, min.add(sizeX - 1, sizeY - 1, sizeZ - 1)));
+        clipboard.setOrigin(origin);
+
+        try {
+            int index = 0;
+            for (int y = 0; y < sizeY; y++) {
+                for (int z = 0; z < sizeZ; z++) {
+                    for (int x = 0; x < sizeX; x++, index++) {
+                        int paletteIndex = (int) (packed[index / entriesPerLong] >>> (index % entriesPerLong * bits) & mask);
+                        BlockState state = palette[paletteIndex];
+                        if (state != null) {
+                            clipboard.setBlock(min.add(x, y, z), state);
+                        }
+                    }
+                }
+            }
+
+            int blockEntities = buffer.getInt();
+            if (blockEntities > 0) {
+                byte[] rest = new byte[buffer.remaining()];
+                buffer.get(rest);
+                DataInputStream in = new DataInputStream(new ByteArrayInputStream(rest));
+                NBTInputStream nbt = new NBTInputStream(in);
+                for (int i = 0; i < blockEntities; i++) {
+                    int blockIndex = in.readInt();
+                    Tag tag = nbt.readNamedTag().getTag();
+                    if (!(tag instanceof CompoundTag)) {
+                        throw new IOException("Invalid block entity in area");
+                    }
+                    BlockVector3 position = min.add(blockIndex % sizeX, blockIndex / (sizeX * sizeZ), blockIndex / sizeX % sizeZ);
+                    clipboard.setBlock(position, clipboard.getBlock(position).toBaseBlock((CompoundTag) tag));
+                }
+            }
+        } catch (WorldEditException e) {
+            throw new IOException("Failed to read area", e);
+        }
+
+        return clipboard;
+    }
+
+    private static int getBitsPerEntry(int paletteSize) {
+
+        return Math.max(1, 32 - Integer.numberOfLeadingZeros(paletteSize - 1));
+    }
+
+    private static long[] pack(int[] values, int bits) {
+
+        int entriesPerLong = 64 / bits;
+        long[] packed = new long[(values.length + entriesPerLong - 1) / entriesPerLong];
+        for (int i = 0; i < values.length; i++) {
+            packed[i / entriesPerLong] |= (long) values[i] << (i % entriesPerLong * bits);
+        }
+        return packed;
+    }
+
+    private static void writeVector(DataOutputStream out, BlockVector3 vector) throws IOException {
+
+        out.writeInt(vector.getBlockX());
+        out.writeInt(vector.getBlockY());
+        out.writeInt(vector.getBlockZ());
+    }
+
+    private static BlockVector3 readVector(ByteBuffer buffer) {
+
+        return BlockVector3.at(buffer.getInt(), buffer.getInt(), buffer.getInt());
+    }
+}
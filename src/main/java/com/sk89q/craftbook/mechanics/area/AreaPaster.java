@@ -0,0 +1,178 @@
+package com.sk89q.craftbook.mechanics.area;
+
+import com.sk89q.craftbook.bukkit.CraftBookPlugin;
+import com.sk89q.craftbook.bukkit.util.CraftBookBukkitUtil;
+import com.sk89q.worldedit.EditSession;
+import com.sk89q.worldedit.MaxChangedBlocksException;
+import com.sk89q.worldedit.WorldEdit;
+import com.sk89q.worldedit.world.World;
+import org.bukkit.Bukkit;
+import org.bukkit.scheduler.BukkitTask;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * Applies {@link AreaDiff}s to the world from a single scheduler task, with a budget of blocks per tick shared by every
+ * area being pasted.
+ *
+ * Pastes are applied in the order they were started. As much of a paste as the budget allows is applied straight away,
+ * so small areas still toggle within the same tick. The task only runs while there is something left to paste.
+ */
+final class AreaPaster {
+
+    private static final Deque<Paste> pastes = new ArrayDeque<>();
+
+    private static BukkitTask task;
+
+    private static int blocksPerTick = 10000;
+    private static int budget = blocksPerTick;
+
+    private AreaPaster() {
+    }
+
+    /**
+     * Sets how many blocks can be changed each tick.
+     *
+     * @param blocksPerTick The amount of blocks, or a negative number to paste whole areas at once
+     */
+    static void setBlocksPerTick(int blocksPerTick) {
+
+        AreaPaster.blocksPerTick = blocksPerTick;
+        budget = blocksPerTick;
+    }
+
+    /**
+     * Checks whether pastes are spread across ticks.
+     *
+     * @return If pastes are spread
+     */
+    static boolean isEnabled() {
+
+        return blocksPerTick > 0;
+    }
+
+    /**
+     * Starts applying a diff to the world.
+     *
+     * @param world The world
+     * @param diff The diff
+     * @param toActive Whether to change to the active state, rather than the inactive state
+     * @param callback Run on the main thread once every block is changed
+     */
+    static void schedule(World world, AreaDiff diff, boolean toActive, Runnable callback) {
+
+        pastes.add(new Paste(world, diff, toActive, callback));
+        process();
+
+        if (task == null && (!pastes.isEmpty() || budget < blocksPerTick)) {
+            task = Bukkit.getScheduler().runTaskTimer(CraftBookPlugin.inst(), AreaPaster::tick, 1L, 1L);
+        }
+    }
+
+    private static void tick() {
+
+        budget = blocksPerTick;
+        process();
+
+        if (pastes.isEmpty() && task != null) {
+            task.cancel();
+            task = null;
+        }
+    }
+
+    private static void process() {
+
+        while (budget > 0 && !pastes.isEmpty()) {
+            Paste paste = pastes.peek();
+            budget -= paste.apply(budget);
+            if (paste.isDone()) {
+                pastes.poll();
+                paste.complete();
+            }
+        }
+    }
+
+    /**
+     * Gets the amount of areas that are still being pasted.
+     *
+     * @return The amount of areas
+     */
+    static int getPastingCount() {
+
+        return pastes.size();
+    }
+
+    /**
+     * Applies the rest of every paste straight away, and stops the paste task.
+     */
+    static void finishAll() {
+
+        while (!pastes.isEmpty()) {
+            Paste paste = pastes.poll();
+            paste.apply(Integer.MAX_VALUE);
+            paste.complete();
+        }
+        if (task != null) {
+            task.cancel();
+            task = null;
+        }
+        budget = blocksPerTick;
+    }
+
+    private static final class Paste {
+
+        private final World world;
+        private final AreaDiff diff;
+        private final boolean toActive;
+        private final Runnable callback;
+        private final int[] order;
+        private int next;
+
+        private Paste(World world, AreaDiff diff, boolean toActive, Runnable callback) {
+
+            this.world = world;
+            this.diff = diff;
+            this.toActive = toActive;
+            this.callback = callback;
+            this.order = diff.getApplyOrder(toActive);
+        }
+
+        /**
+         * Changes up to the given amount of blocks.
+         *
+         * @param max The most blocks to change
+         * @return The amount of blocks changed
+         */
+        private int apply(int max) {
+
+            int end = (int) Math.min(diff.size(), (long) next + max);
+            int start = next;
+            try (EditSession editSession = WorldEdit.getInstance().getEditSessionFactory().getEditSession(world, -1)) {
+                for (; next < end; next++) {
+                    editSession.setBlock(diff.getPosition(order[next]), diff.getBlock(order[next], toActive));
+                }
+            } catch (MaxChangedBlocksException e) {
+                // is never thrown
+            }
+            return end - start;
+        }
+
+        private boolean isDone() {
+
+            return next >= diff.size();
+        }
+
+        private void complete() {
+
+            if (callback == null) {
+                return;
+            }
+            try {
+                callback.run();
+            } catch (Throwable t) {
+                CraftBookBukkitUtil.printStacktrace(t);
+            }
+        }
+    }
+}
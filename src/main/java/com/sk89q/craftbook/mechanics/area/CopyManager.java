@@ -16,8 +16,13 @@ package com.sk89q.craftbook.mechanics.area;
  * see <http://www.gnu.org/licenses/>.
  */
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.sk89q.craftbook.bukkit.CraftBookPlugin;
 import com.sk89q.craftbook.util.HistoryHashMap;
+import com.sk89q.jnbt.CompoundTag;
+import com.sk89q.jnbt.NBTInputStream;
+import com.sk89q.jnbt.Tag;
 import com.sk89q.worldedit.EditSession;
 import com.sk89q.worldedit.MaxChangedBlocksException;
 import com.sk89q.worldedit.WorldEdit;
@@ -31,21 +36,42 @@ import com.sk89q.worldedit.extent.clipboard.io.ClipboardWriter;
 import com.sk89q.worldedit.function.operation.ForwardExtentCopy;
 import com.sk89q.worldedit.function.operation.Operation;
 import com.sk89q.worldedit.function.operation.Operations;
+import com.sk89q.worldedit.math.BlockVector3;
 import com.sk89q.worldedit.regions.Region;
 import com.sk89q.worldedit.session.ClipboardHolder;
 import com.sk89q.worldedit.world.block.BlockTypes;
 import org.apache.commons.lang.StringUtils;
+import org.bukkit.Bukkit;
 
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 import java.util.regex.Pattern;
+import java.util.zip.GZIPInputStream;
 
 /**
  * Used to load, save, and cache cuboid copies.
+ *
+ * Copies are read and written on a background thread, one at a time, so a copy that is still being saved is always
+ * written before it is read back. The cache is bounded by an estimate of the memory the copies take up.
  */
 public class CopyManager {
 
@@ -54,14 +80,52 @@ public class CopyManager {
     private static final Pattern NAME_PATTERN = Pattern.compile("^[a-z0-9_]+$", Pattern.CASE_INSENSITIVE);
 
     /**
-     * Cache.
+     * Runs tasks on the main thread, for applying copies once they are loaded.
      */
-    private final HistoryHashMap<String, BlockArrayClipboard> cache = new HistoryHashMap<>(10);
+    static final Executor MAIN_THREAD = task -> Bukkit.getScheduler().runTask(plugin, task);
+
+    /**
+     * Rough sizes used to weigh cached copies. Each block is a reference to a shared block state, plus the occasional
+     * block entity.
+     */
+    private static final long BYTES_PER_BLOCK = 8;
+    private static final long BYTES_PER_BIOME = 8;
+    private static final long BYTES_PER_ENTITY = 512;
+
+    private static final long DEFAULT_CACHE_SIZE = 64 * 1024 * 1024L;
+    private static final long DEFAULT_DIFF_CACHE_SIZE = 16 * 1024 * 1024L;
+
+    /**
+     * Cache, bounded by the memory the copies take up.
+     */
+    private volatile Cache<String, BlockArrayClipboard> cache = createCache(DEFAULT_CACHE_SIZE);
+
+    /**
+     * The diffs between the active and inactive states of areas, keyed by the active state. A diff is dropped once its
+     * active state is no longer used.
+     */
+    private final Cache<BlockArrayClipboard, AreaDiff> diffs = CacheBuilder.newBuilder()
+            .weakKeys()
+            .maximumWeight(DEFAULT_DIFF_CACHE_SIZE)
+            .weigher((BlockArrayClipboard key, AreaDiff diff) -> diff.getMemorySize())
+            .build();
 
     /**
      * Remembers missing copies so as to not look for them on disk.
      */
-    private final HistoryHashMap<String, Long> missing = new HistoryHashMap<>(10);
+    private final Map<String, Long> missing = Collections.synchronizedMap(new HistoryHashMap<>(10));
+
+    /**
+     * Loads that are in progress, so that a copy is only read once however many areas need it.
+     */
+    private final Map<String, CompletableFuture<BlockArrayClipboard>> loading = new ConcurrentHashMap<>();
+
+    private volatile boolean compactFormat = false;
+
+    /**
+     * Reads and writes copies in order, off the main thread.
+     */
+    private ExecutorService executor;
 
     /**
      * Gets the copy manager instance
@@ -125,7 +189,9 @@ public class CopyManager {
     public static boolean isExistingArea(File dataFolder, String namespace, String area) {
         area = StringUtils.replace(area, "-", "");
         File file = new File(dataFolder, "areas/" + namespace);
-        if (!new File(file, area + getFileSuffix()).exists()) {
+        if (new File(file, area + getCompactFileSuffix()).exists()) {
+            return true;
+        } else if (!new File(file, area + getFileSuffix()).exists()) {
             return new File(file, area + '.' + BuiltInClipboardFormat.MCEDIT_SCHEMATIC.getPrimaryFileExtension()).exists();
         } else {
             return true;
@@ -138,6 +204,8 @@ public class CopyManager {
      * does not exist, an exception will be raised. An exception may be raised if the file exists but cannot be read
      * for whatever reason.
      *
+     * This waits for the copy to be loaded, so {@link #loadAsync(String, String)} should be used from the main thread.
+     *
      * @param namespace The clipboard namespace
      * @param id The clipboard ID
      *
@@ -147,46 +215,108 @@ public class CopyManager {
      */
     public BlockArrayClipboard load(String namespace, String id) throws IOException {
 
+        return getLoaded(loadAsync(namespace, id));
+    }
+
+    /**
+     * Load a copy from disk in the background. If the copy is cached, the returned future is already complete.
+     * Otherwise the file is read and decoded on the area I/O thread, after any saves that are still being written.
+     *
+     * The future is completed on the I/O thread, so anything that changes the world should be run with
+     * {@link #MAIN_THREAD}.
+     *
+     * @param namespace The clipboard namespace
+     * @param id The clipboard ID
+     *
+     * @return The future clipboard
+     */
+    public CompletableFuture<BlockArrayClipboard> loadAsync(String namespace, String id) {
+
         id = id.toLowerCase(Locale.ENGLISH);
         String cacheKey = namespace + '/' + id;
 
-        if (missing.containsKey(cacheKey)) {
-            long lastCheck = missing.get(cacheKey);
-            if (lastCheck > System.currentTimeMillis()) throw new FileNotFoundException(id);
+        BlockArrayClipboard copy = cache.getIfPresent(cacheKey);
+        if (copy != null) {
+            return CompletableFuture.completedFuture(copy);
         }
 
-        BlockArrayClipboard copy = cache.get(cacheKey);
+        Long lastCheck = missing.get(cacheKey);
+        if (lastCheck != null && lastCheck > System.currentTimeMillis()) {
+            CompletableFuture<BlockArrayClipboard> failed = new CompletableFuture<>();
+            failed.completeExceptionally(new FileNotFoundException(id));
+            return failed;
+        }
+
+        CompletableFuture<BlockArrayClipboard> future = new CompletableFuture<>();
+        CompletableFuture<BlockArrayClipboard> existing = loading.putIfAbsent(cacheKey, future);
+        if (existing != null) {
+            return existing;
+        }
 
-        if (copy == null) {
-            File file = new File(new File(new File(plugin.getDataFolder(), "areas"), namespace), id + getFileSuffix());
-            if (!file.exists()) {
-                file = new File(new File(new File(plugin.getDataFolder(), "areas"), namespace),
-                        id + '.' + BuiltInClipboardFormat.MCEDIT_SCHEMATIC.getPrimaryFileExtension());
+        String fileId = id;
+        getExecutor().execute(() -> {
+            try {
+                future.complete(read(namespace, fileId, cacheKey));
+            } catch (Throwable t) {
+                future.completeExceptionally(t);
+            } finally {
+                loading.remove(cacheKey, future);
             }
-            if (file.exists()) {
-                ClipboardFormat format = ClipboardFormats.findByFile(file);
-                if (format == null) {
-                    missing.put(cacheKey, System.currentTimeMillis());
-                    throw new IOException("Unknown clipboard format!");
-                }
-                try (ClipboardReader reader = format.getReader(new FileInputStream(file))) {
-                    copy = (BlockArrayClipboard) reader.read();
-                    missing.remove(cacheKey);
-                    cache.put(cacheKey, copy);
-                    return copy;
-                }
-            } else {
+        });
+        return future;
+    }
+
+    /**
+     * Starts loading a copy in the background if it isn't cached, so that it is ready when it is next needed.
+     *
+     * @param namespace The clipboard namespace
+     * @param id The clipboard ID
+     */
+    public void prefetch(String namespace, String id) {
+
+        loadAsync(namespace, id).exceptionally(e -> null);
+    }
+
+    private BlockArrayClipboard read(String namespace, String id, String cacheKey) throws IOException {
+
+        File compactFile = new File(new File(new File(plugin.getDataFolder(), "areas"), namespace), id + getCompactFileSuffix());
+        if (compactFile.exists()) {
+            BlockArrayClipboard copy = AreaFormat.read(compactFile);
+            missing.remove(cacheKey);
+            BlockArrayClipboard saved = cache.asMap().putIfAbsent(cacheKey, copy);
+            return saved == null ? copy : saved;
+        }
+
+        File file = new File(new File(new File(plugin.getDataFolder(), "areas"), namespace), id + getFileSuffix());
+        if (!file.exists()) {
+            file = new File(new File(new File(plugin.getDataFolder(), "areas"), namespace),
+                    id + '.' + BuiltInClipboardFormat.MCEDIT_SCHEMATIC.getPrimaryFileExtension());
+        }
+        if (file.exists()) {
+            ClipboardFormat format = ClipboardFormats.findByFile(file);
+            if (format == null) {
                 missing.put(cacheKey, System.currentTimeMillis());
-                throw new FileNotFoundException(id);
+                throw new IOException("Unknown clipboard format!");
+            }
+            try (ClipboardReader reader = format.getReader(new FileInputStream(file))) {
+                BlockArrayClipboard copy = (BlockArrayClipboard) reader.read();
+                missing.remove(cacheKey);
+                // A copy saved while this one was being read is newer, so keep that one.
+                BlockArrayClipboard saved = cache.asMap().putIfAbsent(cacheKey, copy);
+                return saved == null ? copy : saved;
             }
+        } else {
+            missing.put(cacheKey, System.currentTimeMillis());
+            throw new FileNotFoundException(id);
         }
-
-        return copy;
     }
 
     /**
      * Save a copy to disk. The copy will be cached.
      *
+     * This waits for the copy to be written, so {@link #saveAsync(String, String, BlockArrayClipboard)} should be used
+     * from the main thread.
+     *
      * @param namespace The save namespace
      * @param id The save id
      * @param clipboard The clipboard containing the save
@@ -194,22 +324,320 @@ public class CopyManager {
      * @throws IOException If the file failed to save
      */
     public void save(String namespace, String id, BlockArrayClipboard clipboard) throws IOException {
+
+        try {
+            saveAsync(namespace, id, clipboard).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while saving " + id);
+        } catch (ExecutionException e) {
+            throw toIOException(e.getCause());
+        }
+    }
+
+    /**
+     * Save a copy to disk in the background. The copy is cached straight away, so loads see it before it is written.
+     * The clipboard must not be changed after it is saved.
+     *
+     * @param namespace The save namespace
+     * @param id The save id
+     * @param clipboard The clipboard containing the save
+     *
+     * @return A future that completes once the file is written
+     */
+    public CompletableFuture<Void> saveAsync(String namespace, String id, BlockArrayClipboard clipboard) {
+
+        return saveAsync(namespace, id, clipboard, true);
+    }
+
+    /**
+     * Save a copy to disk in the background. The copy is cached straight away, so loads see it before it is written.
+     * The clipboard must not be changed after it is saved.
+     *
+     * @param namespace The save namespace
+     * @param id The save id
+     * @param clipboard The clipboard containing the save
+     * @param allowCompact Whether the copy may be saved in the compact area format, which doesn't keep biomes
+     *
+     * @return A future that completes once the file is written
+     */
+    public CompletableFuture<Void> saveAsync(String namespace, String id, BlockArrayClipboard clipboard, boolean allowCompact) {
+
+        boolean compact = allowCompact && compactFormat && AreaFormat.canWrite(clipboard);
         File folder = new File(new File(plugin.getDataFolder(), "areas"), namespace);
 
+        id = id.toLowerCase(Locale.ENGLISH);
+
+        String cacheKey = namespace + '/' + id;
+        missing.remove(cacheKey);
+        cache.put(cacheKey, clipboard);
+
+        File file = new File(folder, id + (compact ? getCompactFileSuffix() : getFileSuffix()));
+        // The other format is looked for first or second, so it must not be left behind with an older copy.
+        File other = new File(folder, id + (compact ? getFileSuffix() : getCompactFileSuffix()));
+        return CompletableFuture.runAsync(() -> {
+            try {
+                write(folder, file, clipboard, compact);
+                Files.deleteIfExists(other.toPath());
+            } catch (IOException e) {
+                throw new CompletionException(e);
+            }
+        }, getExecutor());
+    }
+
+    private static void write(File folder, File file, BlockArrayClipboard clipboard, boolean compact) throws IOException {
+
         if (!folder.exists()) {
             folder.mkdirs();
         }
 
-        id = id.toLowerCase(Locale.ENGLISH);
+        // Write to a temporary file first, so that a failed save never leaves half a schematic behind.
+        File temp = new File(folder, file.getName() + ".tmp");
+        if (compact) {
+            AreaFormat.write(clipboard, temp);
+        } else {
+            try (ClipboardWriter writer = getDefaultClipboardFormat().getWriter(new FileOutputStream(temp))) {
+                writer.write(clipboard);
+            }
+        }
+        Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
 
-        String cacheKey = namespace + '/' + id;
+    /**
+     * Converts the saved areas of a namespace between schematics and the compact area format, in the background.
+     *
+     * Schematics with entities or biomes are left as they are, since the compact format can't hold them. Areas that are
+     * already in the requested format are skipped.
+     *
+     * @param namespace The namespace, or null for every namespace
+     * @param toCompact Whether to convert schematics to the compact format, rather than back
+     *
+     * @return A future of the names of the areas that were converted, and the names of the areas that couldn't be
+     */
+    public CompletableFuture<Migration> migrateAsync(String namespace, boolean toCompact) {
+
+        File areas = new File(plugin.getDataFolder(), "areas");
+        return CompletableFuture.supplyAsync(() -> {
+            Migration migration = new Migration();
+            File[] folders = namespace == null ? areas.listFiles(File::isDirectory) : new File[] {new File(areas, namespace)};
+            if (folders == null) {
+                return migration;
+            }
+            for (File folder : folders) {
+                File[] files = folder.listFiles();
+                if (files == null) {
+                    continue;
+                }
+                for (File file : files) {
+                    migrate(folder, file, toCompact, migration);
+                }
+            }
+            return migration;
+        }, getExecutor());
+    }
+
+    private void migrate(File folder, File file, boolean toCompact, Migration migration) {
 
-        File file = new File(folder, id + getFileSuffix());
-        try (ClipboardWriter writer = getDefaultClipboardFormat().getWriter(new FileOutputStream(file))) {
-            writer.write(clipboard);
+        String name = file.getName();
+        int dot = name.lastIndexOf('.');
+        if (dot <= 0) {
+            return;
         }
-        missing.remove(cacheKey);
-        cache.put(cacheKey, clipboard);
+        String id = name.substring(0, dot);
+        String extension = name.substring(dot + 1);
+        String areaName = folder.getName() + '/' + id;
+
+        try {
+            if (toCompact) {
+                if (extension.equals(AreaFormat.EXTENSION) || ClipboardFormats.findByFile(file) == null) {
+                    return;
+                }
+                File target = new File(folder, id + getCompactFileSuffix());
+                if (target.exists()) {
+                    return;
+                }
+                BlockArrayClipboard clipboard;
+                try (ClipboardReader reader = ClipboardFormats.findByFile(file).getReader(new FileInputStream(file))) {
+                    clipboard = (BlockArrayClipboard) reader.read();
+                }
+                if (!AreaFormat.canWrite(clipboard) || hasBiomes(file)) {
+                    migration.skipped.add(areaName);
+                    return;
+                }
+                write(folder, target, clipboard, true);
+            } else {
+                if (!extension.equals(AreaFormat.EXTENSION)) {
+                    return;
+                }
+                write(folder, new File(folder, id + getFileSuffix()), AreaFormat.read(file), false);
+            }
+            Files.delete(file.toPath());
+            migration.converted.add(areaName);
+        } catch (IOException | RuntimeException e) {
+            plugin.getLogger().warning("Failed to convert area " + areaName + ": " + e.getMessage());
+            migration.skipped.add(areaName);
+        }
+    }
+
+    /**
+     * Checks whether a schematic file holds biomes, which both the Sponge and MCEdit formats store in the root tag.
+     */
+    private static boolean hasBiomes(File file) throws IOException {
+
+        try (NBTInputStream nbt = new NBTInputStream(new GZIPInputStream(new FileInputStream(file)))) {
+            Tag root = nbt.readNamedTag().getTag();
+            return root instanceof CompoundTag
+                    && (((CompoundTag) root).containsKey("BiomeData") || ((CompoundTag) root).containsKey("Biomes"));
+        }
+    }
+
+    /**
+     * The result of converting areas between formats.
+     */
+    public static final class Migration {
+
+        private final List<String> converted = new ArrayList<>();
+        private final List<String> skipped = new ArrayList<>();
+
+        /**
+         * Gets the areas that were converted, as namespace/id.
+         *
+         * @return The areas
+         */
+        public List<String> getConverted() {
+
+            return converted;
+        }
+
+        /**
+         * Gets the areas that couldn't be converted, as namespace/id.
+         *
+         * @return The areas
+         */
+        public List<String> getSkipped() {
+
+            return skipped;
+        }
+    }
+
+    /**
+     * Gets the result of a load, waiting for it if needed.
+     *
+     * @param future The load
+     * @return The clipboard
+     * @throws IOException If it failed to load
+     */
+    static BlockArrayClipboard getLoaded(CompletableFuture<BlockArrayClipboard> future) throws IOException {
+
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while loading area");
+        } catch (ExecutionException e) {
+            throw toIOException(e.getCause());
+        }
+    }
+
+    private static IOException toIOException(Throwable t) {
+
+        if (t instanceof CompletionException && t.getCause() != null) {
+            t = t.getCause();
+        }
+        return t instanceof IOException ? (IOException) t : new IOException(t);
+    }
+
+    /**
+     * Sets how copies are stored on disk.
+     *
+     * @param compactFormat Whether to save copies in the compact area format when they can be
+     */
+    public void setFormat(boolean compactFormat) {
+
+        this.compactFormat = compactFormat;
+    }
+
+    /**
+     * Sets the most memory the cached copies can take up, and empties the cache.
+     *
+     * @param maxSize The maximum size, in bytes
+     */
+    public void setMaxCacheSize(long maxSize) {
+
+        cache = createCache(Math.max(0, maxSize));
+    }
+
+    /**
+     * Gets roughly how much memory the cached copies take up.
+     *
+     * @return The size, in bytes
+     */
+    public long getCachedSize() {
+
+        long size = 0;
+        for (BlockArrayClipboard clipboard : cache.asMap().values()) {
+            size += getEstimatedSize(clipboard);
+        }
+        return size;
+    }
+
+    /**
+     * Gets roughly how much memory a copy takes up.
+     *
+     * @param clipboard The copy
+     * @return The size, in bytes
+     */
+    public static long getEstimatedSize(BlockArrayClipboard clipboard) {
+
+        BlockVector3 size = clipboard.getDimensions();
+        long columns = (long) size.getBlockX() * size.getBlockZ();
+        return 256 + columns * size.getBlockY() * BYTES_PER_BLOCK + columns * BYTES_PER_BIOME
+                + clipboard.getEntities().size() * BYTES_PER_ENTITY;
+    }
+
+    private static Cache<String, BlockArrayClipboard> createCache(long maxSize) {
+
+        return CacheBuilder.newBuilder()
+                .maximumWeight(maxSize)
+                .weigher((String key, BlockArrayClipboard clipboard) -> (int) Math.min(Integer.MAX_VALUE, getEstimatedSize(clipboard)))
+                .build();
+    }
+
+    private synchronized ExecutorService getExecutor() {
+
+        if (executor == null) {
+            executor = Executors.newSingleThreadExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "CraftBook Area IO");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return executor;
+    }
+
+    /**
+     * Finishes writing any saves that are still pending, and empties the cache.
+     */
+    public void shutdown() {
+
+        ExecutorService executor;
+        synchronized (this) {
+            executor = this.executor;
+            this.executor = null;
+        }
+        if (executor != null) {
+            executor.shutdown();
+            try {
+                if (!executor.awaitTermination(30, TimeUnit.SECONDS)) {
+                    plugin.getLogger().warning("Timed out while saving areas.");
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        cache.invalidateAll();
+        diffs.invalidateAll();
+        missing.clear();
     }
 
     /**
@@ -265,6 +693,44 @@ public class CopyManager {
         }
     }
 
+    /**
+     * Changes an area from one of its states to the other, only changing the blocks that differ between them.
+     *
+     * The diff between the two states is cached, so it is only worked out the first time an area is toggled. The
+     * blocks are changed across as many ticks as the paste budget needs, and the callback is run once they all are. If
+     * the states can't be diffed, or pastes aren't spread across ticks, the whole state is pasted straight away instead.
+     *
+     * The world is assumed to currently hold the other state. Biomes aren't changed, and a state with entities is always
+     * pasted whole so that they are copied.
+     *
+     * @param active The active state
+     * @param inactive The inactive state, or null if the area is cleared instead
+     * @param toActive Whether to change to the active state, rather than the inactive state
+     * @param callback Run on the main thread once the area is changed
+     * @throws WorldEditException If it fails
+     */
+    public void pasteChanges(BlockArrayClipboard active, BlockArrayClipboard inactive, boolean toActive, Runnable callback)
+            throws WorldEditException {
+
+        BlockArrayClipboard target = toActive ? active : inactive;
+        if (!AreaPaster.isEnabled() || !AreaDiff.canDiff(active, inactive) || target != null && !target.getEntities().isEmpty()) {
+            if (target != null) {
+                paste(target);
+            } else {
+                clear(active);
+            }
+            callback.run();
+            return;
+        }
+
+        AreaDiff diff = diffs.getIfPresent(active);
+        if (diff == null || !diff.isFor(inactive)) {
+            diff = AreaDiff.between(active, inactive);
+            diffs.put(active, diff);
+        }
+        AreaPaster.schedule(active.getRegion().getWorld(), diff, toActive, callback);
+    }
+
     /**
      * Clears the area a clipboard can inhabit
      *
@@ -290,6 +756,7 @@ public class CopyManager {
     public static int meetsQuota(String namespace, String ignore, int quota) {
 
         String ignoreFilename = ignore + getFileSuffix();
+        String ignoreCompactFilename = ignore + getCompactFileSuffix();
 
         String[] files = new File(new File(plugin.getDataFolder(), "areas"), namespace).list();
 
@@ -299,7 +766,7 @@ public class CopyManager {
             int count = 0;
 
             for (String f : files) {
-                if (f.equals(ignoreFilename)) return -1;
+                if (f.equals(ignoreFilename) || f.equals(ignoreCompactFilename)) return -1;
 
                 count++;
             }
@@ -315,4 +782,8 @@ public class CopyManager {
     private static String getFileSuffix() {
         return '.' + getDefaultClipboardFormat().getPrimaryFileExtension();
     }
+
+    private static String getCompactFileSuffix() {
+        return '.' + AreaFormat.EXTENSION;
+    }
 }
\ No newline at end of file
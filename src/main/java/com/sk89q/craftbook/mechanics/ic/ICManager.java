@@ -32,16 +32,21 @@ import com.sk89q.craftbook.mechanics.ic.gates.world.weather.*;
 import com.sk89q.craftbook.mechanics.ic.plc.PlcFactory;
 import com.sk89q.craftbook.mechanics.ic.plc.lang.Perlstone;
 import com.sk89q.craftbook.mechanics.variables.VariableManager;
+import com.sk89q.craftbook.util.LongHashMap;
 import com.sk89q.craftbook.util.RegexUtil;
+import com.sk89q.craftbook.util.jinglenote.JingleEngine;
+import com.sk89q.craftbook.util.jinglenote.JingleTimelineCache;
 import com.sk89q.util.yaml.YAMLFormat;
 import com.sk89q.util.yaml.YAMLProcessor;
 import org.bukkit.ChatColor;
+import org.bukkit.Chunk;
 import org.bukkit.Location;
 import org.bukkit.Server;
 import org.bukkit.entity.Player;
 
 import java.io.File;
 import java.util.*;
+import java.util.function.Predicate;
 import java.util.regex.Matcher;
 
 /**
@@ -101,6 +106,8 @@ public class ICManager {
         for(RegisteredICFactory factory : registered.values()) {
             factory.getFactory().unload();
         }
+        JingleEngine.stopAll();
+        JingleTimelineCache.clear();
         icConfiguration = null;
         emptyCache();
         INSTANCE = null;
@@ -135,7 +142,15 @@ public class ICManager {
      */
     public final Map<String, String> longRegistered = new HashMap<>();
 
-    private static final Map<Location, IC> cachedICs = new HashMap<>();
+    /**
+     * The cached ICs, per world, then per packed chunk coordinate, then per packed block coordinate.
+     */
+    private static final Map<UUID, LongHashMap<LongHashMap<IC>>> cachedICs = new HashMap<>();
+
+    private static int cachedCount;
+    private static long cacheHits;
+    private static long cacheMisses;
+    private static long cacheEvictions;
 
     private static final Set<String> customPrefix = new HashSet<>();
 
@@ -235,19 +250,38 @@ public class ICManager {
      */
     public static boolean isCachedIC(Location pt) {
 
-        return cachedICs.containsKey(pt);
+        LongHashMap<IC> chunk = getCachedChunk(pt, false);
+        return chunk != null && chunk.containsKey(toBlockKey(pt));
     }
 
     /**
-     * Gets the cached IC based on its location in the world. isCached should be checked before calling this method.
+     * Gets the cached IC based on its location in the world.
      *
      * @param pt of the ic
      *
-     * @return cached ic.
+     * @return cached ic, or null if there is none.
      */
     public static IC getCachedIC(Location pt) {
 
-        return cachedICs.get(pt);
+        IC ic = peekCachedIC(pt);
+        if (ic == null)
+            cacheMisses++;
+        else
+            cacheHits++;
+        return ic;
+    }
+
+    /**
+     * Gets the cached IC based on its location in the world, without counting towards the cache statistics.
+     *
+     * @param pt of the ic
+     *
+     * @return cached ic, or null if there is none.
+     */
+    public static IC peekCachedIC(Location pt) {
+
+        LongHashMap<IC> chunk = getCachedChunk(pt, false);
+        return chunk == null ? null : chunk.get(toBlockKey(pt));
     }
 
     /**
@@ -259,9 +293,12 @@ public class ICManager {
     public static void addCachedIC(Location pt, IC ic) {
 
         if (!ICMechanic.instance.cache) return;
-        if(cachedICs.containsKey(pt)) return;
+        LongHashMap<IC> chunk = getCachedChunk(pt, true);
+        long key = toBlockKey(pt);
+        if(chunk.containsKey(key)) return;
         CraftBookPlugin.logDebugMessage("Caching IC at: " + pt.toString(), "ic-cache");
-        cachedICs.put(pt, ic);
+        chunk.put(key, ic);
+        cachedCount++;
     }
 
     /**
@@ -273,11 +310,85 @@ public class ICManager {
      */
     public static IC removeCachedIC(Location pt) {
 
-        if (cachedICs.containsKey(pt)) {
+        LongHashMap<IC> chunk = getCachedChunk(pt, false);
+        if (chunk == null) return null;
+
+        IC ic = chunk.remove(toBlockKey(pt));
+        if (ic != null) {
             CraftBookPlugin.logDebugMessage("Removing cached IC at: " + pt.toString(), "ic-cache");
-            return cachedICs.remove(pt);
+            cachedCount--;
+            if (chunk.isEmpty())
+                cachedICs.get(pt.getWorld().getUID()).remove(toChunkKey(pt));
         }
-        return null;
+        return ic;
+    }
+
+    /**
+     * Unloads and removes the cached IC at the given location, if there is one, so that it is rebuilt from its sign the
+     * next time it is used. This should be called whenever the sign of an IC is rewritten.
+     *
+     * @param pt of the ic
+     */
+    public static void invalidateIC(Location pt) {
+
+        IC ic = removeCachedIC(pt);
+        if (ic != null)
+            ic.unload();
+    }
+
+    /**
+     * Removes all cached ICs matching the given filter.
+     *
+     * @param filter The filter
+     */
+    public static void removeCachedICs(Predicate<IC> filter) {
+
+        for (LongHashMap<LongHashMap<IC>> world : cachedICs.values()) {
+            for (long chunkKey : world.keys()) {
+                LongHashMap<IC> chunk = world.get(chunkKey);
+                for (long key : chunk.keys()) {
+                    if (filter.test(chunk.get(key))) {
+                        chunk.remove(key);
+                        cachedCount--;
+                    }
+                }
+                if (chunk.isEmpty())
+                    world.remove(chunkKey);
+            }
+        }
+    }
+
+    /**
+     * Evicts all cached ICs within the given chunk, unloading them. Self-triggered ICs that are still registered, such as
+     * those kept loaded, are left in the cache.
+     *
+     * @param chunk The chunk
+     */
+    public static void evictChunk(Chunk chunk) {
+
+        LongHashMap<LongHashMap<IC>> world = cachedICs.get(chunk.getWorld().getUID());
+        if (world == null) return;
+
+        long chunkKey = LongHashMap.toLong(chunk.getX(), chunk.getZ());
+        LongHashMap<IC> cached = world.get(chunkKey);
+        if (cached == null) return;
+
+        int evicted = 0;
+        for (long key : cached.keys()) {
+            IC ic = cached.get(key);
+            if (CraftBookPlugin.inst().getSelfTriggerManager() != null
+                    && CraftBookPlugin.inst().getSelfTriggerManager().isSelfTriggering(ic.getSign().getBlock().getLocation()))
+                continue;
+            cached.remove(key);
+            ic.unload();
+            evicted++;
+        }
+        if (cached.isEmpty())
+            world.remove(chunkKey);
+
+        CraftBookPlugin.logDebugMessage("Evicting " + evicted + " cached IC(s) in chunk: " + chunk.toString(), "ic-cache");
+        cachedCount -= evicted;
+        cacheEvictions += evicted;
     }
 
     /**
@@ -298,14 +409,80 @@ public class ICManager {
 
         CraftBookPlugin.logDebugMessage("Culling cached IC list.", "ic-cache");
         cachedICs.clear();
+        cachedCount = 0;
     }
 
     /**
-     * Gets the IC Cache map.
+     * Gets a snapshot of the IC Cache. Changes to the returned map do not affect the cache.
      */
     public static Map<Location, IC> getCachedICs() {
 
-        return cachedICs;
+        Map<Location, IC> snapshot = new LinkedHashMap<>();
+        for (LongHashMap<LongHashMap<IC>> world : cachedICs.values())
+            for (LongHashMap<IC> chunk : world.values())
+                for (IC ic : chunk.values())
+                    snapshot.put(ic.getSign().getBlock().getLocation(), ic);
+        return snapshot;
+    }
+
+    public static int getCachedICCount() {
+
+        return cachedCount;
+    }
+
+    public static long getCacheHits() {
+
+        return cacheHits;
+    }
+
+    public static long getCacheMisses() {
+
+        return cacheMisses;
+    }
+
+    public static long getCacheEvictions() {
+
+        return cacheEvictions;
+    }
+
+    /**
+     * Checks whether the given raw (unparsed) second line of a sign could be an IC, without parsing it.
+     *
+     * @param line The raw line
+     * @return If the line could be an IC
+     */
+    public static boolean isPossibleICLine(String line) {
+
+        // Either the start of an IC ID, or a variable that could resolve to one.
+        return line != null && (line.indexOf('[') >= 0 || line.indexOf('%') >= 0);
+    }
+
+    private static LongHashMap<IC> getCachedChunk(Location pt, boolean create) {
+
+        LongHashMap<LongHashMap<IC>> world = cachedICs.get(pt.getWorld().getUID());
+        if (world == null) {
+            if (!create) return null;
+            world = new LongHashMap<>();
+            cachedICs.put(pt.getWorld().getUID(), world);
+        }
+
+        long chunkKey = toChunkKey(pt);
+        LongHashMap<IC> chunk = world.get(chunkKey);
+        if (chunk == null && create) {
+            chunk = new LongHashMap<>();
+            world.put(chunkKey, chunk);
+        }
+        return chunk;
+    }
+
+    private static long toChunkKey(Location pt) {
+
+        return LongHashMap.toLong(pt.getBlockX() >> 4, pt.getBlockZ() >> 4);
+    }
+
+    private static long toBlockKey(Location pt) {
+
+        return LongHashMap.toLong(pt.getBlockX(), pt.getBlockY(), pt.getBlockZ());
     }
 
     public static boolean hasCustomPrefix(String prefix) {
@@ -21,6 +21,7 @@ import com.sk89q.craftbook.ChangedSign;
 import com.sk89q.craftbook.CraftBookPlayer;
 import com.sk89q.craftbook.bukkit.CraftBookPlugin;
 import com.sk89q.craftbook.bukkit.util.CraftBookBukkitUtil;
+import com.sk89q.craftbook.mechanics.ic.plc.PlcStateStore;
 import com.sk89q.craftbook.mechanics.pipe.PipePutEvent;
 import com.sk89q.craftbook.util.EventUtil;
 import com.sk89q.craftbook.util.ICUtil;
@@ -33,6 +34,7 @@ import com.sk89q.craftbook.util.events.SelfTriggerUnregisterEvent;
 import com.sk89q.craftbook.util.events.SelfTriggerUnregisterEvent.UnregisterReason;
 import com.sk89q.craftbook.util.events.SignClickEvent;
 import com.sk89q.craftbook.util.events.SourcedBlockRedstoneEvent;
+import com.sk89q.craftbook.util.jinglenote.JingleTimelineCache;
 import com.sk89q.util.yaml.YAMLProcessor;
 import com.sk89q.worldedit.bukkit.BukkitAdapter;
 import org.apache.commons.lang.StringUtils;
@@ -44,10 +46,14 @@ import org.bukkit.event.EventPriority;
 import org.bukkit.event.block.Action;
 import org.bukkit.event.block.BlockBreakEvent;
 import org.bukkit.event.block.SignChangeEvent;
+import org.bukkit.event.world.ChunkUnloadEvent;
+import org.bukkit.event.world.WorldUnloadEvent;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
 import java.util.regex.Matcher;
 
 /**
@@ -78,6 +84,7 @@ public class ICMechanic extends AbstractCraftBookMechanic {
     @Override
     public boolean enable() {
 
+        JingleTimelineCache.setMaxSize(midiCacheSize * 1024L);
         ICManager.inst().enable();
         return true;
     }
@@ -94,6 +101,9 @@ public class ICMechanic extends AbstractCraftBookMechanic {
         if (!SignUtil.isWallSign(block)) return null;
         ChangedSign sign = CraftBookBukkitUtil.toChangedSign(block);
 
+        // skip parsing the line entirely if it can't possibly be an IC.
+        if (!ICManager.isPossibleICLine(sign.getRawLine(1))) return null;
+
         // detect the text on the sign to see if it's any kind of IC at all.
         Matcher matcher = RegexUtil.IC_PATTERN.matcher(sign.getLine(1));
         if (!matcher.matches()) return null;
@@ -142,10 +152,9 @@ public class ICMechanic extends AbstractCraftBookMechanic {
             return null;
         }
 
-        IC ic;
         // check if the ic is cached and get that single instance instead of creating a new one
-        if (ICManager.isCachedIC(block.getLocation())) {
-            ic = ICManager.getCachedIC(block.getLocation());
+        IC ic = ICManager.getCachedIC(block.getLocation());
+        if (ic != null) {
             if(ic.getSign().updateSign(sign)) {
 
                 ICManager.removeCachedIC(block.getLocation());
@@ -190,7 +199,9 @@ public class ICMechanic extends AbstractCraftBookMechanic {
         if (ic instanceof SelfTriggeredIC && (sign.getLine(1).trim().toUpperCase(Locale.ENGLISH).endsWith("S") || ((SelfTriggeredIC) ic).isAlwaysST())) {
             if (disableSelfTriggered)
                 return null;
-            CraftBookPlugin.inst().getSelfTriggerManager().registerSelfTrigger(block.getLocation());
+            // Cached ICs can think directly through a handle, uncached ICs are looked up again through think events.
+            CraftBookPlugin.inst().getSelfTriggerManager().registerSelfTrigger(block.getLocation(), getThinkInterval(id),
+                    cache ? new SelfTriggeredICHandle(block.getLocation(), family, ic) : null);
         }
 
         Object[] rets = new Object[3];
@@ -283,6 +294,7 @@ public class ICMechanic extends AbstractCraftBookMechanic {
             if(event.getReason() == UnregisterReason.ERROR) {
                 if(breakOnError) {
                     ((IC) icData[2]).unload();
+                    ICManager.removeCachedIC(event.getBlock().getLocation());
                     event.getBlock().breakNaturally();
                     return;
                 }
@@ -292,6 +304,8 @@ public class ICMechanic extends AbstractCraftBookMechanic {
                 return;
             }
             ((IC) icData[2]).unload();
+            // It is unloaded now, so it mustn't be unloaded again when its chunk is evicted.
+            ICManager.removeCachedIC(event.getBlock().getLocation());
         }
     }
 
@@ -300,6 +314,9 @@ public class ICMechanic extends AbstractCraftBookMechanic {
 
         if(!EventUtil.passesFilter(event)) return;
 
+        // Already thought through its handle, this event is only for other listeners.
+        if(event.isHandled()) return;
+
         final Object[] icData = setupIC(event.getBlock(), true);
 
         if(icData != null && icData[2] instanceof SelfTriggeredIC) {
@@ -326,6 +343,23 @@ public class ICMechanic extends AbstractCraftBookMechanic {
             ((IC) icData[2]).unload();
     }
 
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onChunkUnload(ChunkUnloadEvent event) {
+
+        if(!EventUtil.passesFilter(event)) return;
+
+        // Runs after self-triggered ICs are unregistered, as they need the cache to unload.
+        ICManager.evictChunk(event.getChunk());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onWorldUnload(WorldUnloadEvent event) {
+
+        if(!EventUtil.passesFilter(event)) return;
+
+        PlcStateStore.unload(event.getWorld());
+    }
+
     @EventHandler(priority = EventPriority.HIGH)
     public void onPipePut(PipePutEvent event) {
 
@@ -339,6 +373,13 @@ public class ICMechanic extends AbstractCraftBookMechanic {
             ((PipeInputIC) icData[2]).onPipeTransfer(event);
     }
 
+    @EventHandler(priority = EventPriority.LOWEST, ignoreCancelled = true)
+    public void onSignRewrite(SignChangeEvent event) {
+
+        // Whatever the sign becomes, the IC built from its old lines is stale.
+        ICManager.invalidateIC(event.getBlock().getLocation());
+    }
+
     @EventHandler(priority = EventPriority.HIGH)
     public void onSignChange(SignChangeEvent event) {
 
@@ -465,7 +506,7 @@ public class ICMechanic extends AbstractCraftBookMechanic {
                         player.printError("Self-triggered ICs are disabled!");
                         return;
                     }
-                    CraftBookPlugin.inst().getSelfTriggerManager().registerSelfTrigger(block.getLocation());
+                    CraftBookPlugin.inst().getSelfTriggerManager().registerSelfTrigger(block.getLocation(), getThinkInterval(registration.getId()));
                 }
 
                 player.print("You've created " + registration.getId() + ": " + ic.getTitle() + ".");
@@ -497,6 +538,18 @@ public class ICMechanic extends AbstractCraftBookMechanic {
         }
     }
 
+    /**
+     * Gets the amount of think rounds between each think of the given IC type.
+     *
+     * @param id The IC ID
+     * @return The think interval
+     */
+    public int getThinkInterval(String id) {
+
+        Integer interval = thinkIntervals.get(id.toLowerCase(Locale.ENGLISH));
+        return interval == null ? 1 : interval;
+    }
+
     public static boolean checkPermissionsBoolean(CraftBookPlayer player, ICFactory factory, String id) {
 
         try {
@@ -542,8 +595,10 @@ public class ICMechanic extends AbstractCraftBookMechanic {
     public LocationCheckType defaultCoordinates;
     public boolean savePersistentData;
     public boolean usePercussionMidi;
+    public int midiCacheSize;
     public boolean breakOnError;
     public boolean disableSelfTriggered;
+    public Map<String, Integer> thinkIntervals;
 
     @Override
     public void loadConfiguration (YAMLProcessor config, String path) {
@@ -572,10 +627,21 @@ public class ICMechanic extends AbstractCraftBookMechanic {
         config.setComment(path + "midi-use-percussion", "Plays the MIDI percussion channel when using a MIDI playing IC. Note: This may sound horrible on some songs.");
         usePercussionMidi = config.getBoolean(path + "midi-use-percussion", false);
 
+        config.setComment(path + "midi-cache-size", "The amount of memory in kilobytes that is used to keep songs ready to play, so MIDI files don't have to be read again each time they are played.");
+        midiCacheSize = config.getInt(path + "midi-cache-size", 4096);
+
         config.setComment(path + "break-on-error", "Break the IC sign when an error occurs from that specific IC.");
         breakOnError = config.getBoolean(path + "break-on-error", false);
         
         config.setComment(path + "disable-self-triggered", "Disable creation and checking of self-triggered ICs.");
         disableSelfTriggered = config.getBoolean(path + "disable-self-triggered", false);
+
+        if(config.getKeys(path + "think-intervals") == null)
+            config.addNode(path + "think-intervals");
+
+        config.setComment(path + "think-intervals", "A map of IC IDs to the amount of self-trigger rounds between each think, for ICs that don't need to think every round. (Eg, MC0111: 4)");
+        thinkIntervals = new HashMap<>();
+        for(String key : config.getKeys(path + "think-intervals"))
+            thinkIntervals.put(key.toLowerCase(Locale.ENGLISH), Math.max(1, config.getInt(path + "think-intervals." + key, 1)));
     }
 }
\ No newline at end of file
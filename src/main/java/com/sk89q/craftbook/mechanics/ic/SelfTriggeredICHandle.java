@@ -0,0 +1,60 @@
+// $Id$
+/*
+ * Copyright (C) 2010, 2011 sk89q <http://www.sk89q.com>
+ * 
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ * License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with this program. If not,
+ * see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.craftbook.mechanics.ic;
+
+import com.sk89q.craftbook.core.st.SelfTriggerHandle;
+import com.sk89q.craftbook.util.SignUtil;
+import com.sk89q.worldedit.bukkit.BukkitAdapter;
+import org.bukkit.Location;
+
+/**
+ * A handle to a cached {@link SelfTriggeredIC}, so that it can think without having to be looked up from its sign
+ * every time.
+ */
+class SelfTriggeredICHandle implements SelfTriggerHandle {
+
+    private final Location location;
+    private final ICFamily family;
+    private final IC ic;
+
+    private ChipState chipState;
+
+    SelfTriggeredICHandle(Location location, ICFamily family, IC ic) {
+
+        this.location = location;
+        this.family = family;
+        this.ic = ic;
+    }
+
+    /**
+     * The handle stays valid for as long as its IC is cached. The IC is removed from the cache whenever its sign is
+     * broken, rewritten or unloaded, at which point it is rebuilt from the sign.
+     */
+    @Override
+    public boolean isValid() {
+
+        return ICManager.peekCachedIC(location) == ic && SignUtil.isWallSign(location.getBlock());
+    }
+
+    @Override
+    public void think() {
+
+        if(chipState == null)
+            chipState = family.detectSelfTriggered(BukkitAdapter.adapt(location), ic.getSign());
+        ((SelfTriggeredIC) ic).think(chipState);
+    }
+}
@@ -21,6 +21,7 @@ import com.sk89q.craftbook.mechanics.ic.IC;
 import com.sk89q.craftbook.mechanics.ic.ICFactory;
 import com.sk89q.craftbook.mechanics.pipe.PipeRequestEvent;
 import com.sk89q.craftbook.util.InventoryUtil;
+import com.sk89q.craftbook.util.ItemFilter;
 import com.sk89q.craftbook.util.ItemSyntax;
 import com.sk89q.craftbook.util.ItemUtil;
 import com.sk89q.craftbook.util.SignUtil;
@@ -60,15 +61,17 @@ public class ContainerCollector extends AbstractSelfTriggeredIC {
         chip.setOutput(0, scanForItems());
     }
 
-    ItemStack doWant, doNotWant;
+    ItemFilter filter;
 
     Block chest;
 
     @Override
     public void load() {
 
-        doWant = ItemSyntax.getItem(getLine(2));
-        doNotWant = ItemSyntax.getItem(getLine(3));
+        ItemStack doWant = ItemSyntax.getItem(getLine(2));
+        ItemStack doNotWant = ItemSyntax.getItem(getLine(3));
+        filter = ItemFilter.compile(doWant == null ? null : Collections.singleton(doWant),
+                doNotWant == null ? null : Collections.singleton(doNotWant));
         chest = getBackBlock().getRelative(0, 1, 0);
     }
 
@@ -91,10 +94,7 @@ public class ContainerCollector extends AbstractSelfTriggeredIC {
             return false;
 
         // Check to see if it matches either test stack, if not stop
-        if (doWant != null && !ItemUtil.areItemsIdentical(doWant, stack))
-            return false;
-
-        if (doNotWant != null && ItemUtil.areItemsIdentical(doNotWant, stack))
+        if (!filter.passes(stack))
             return false;
 
         BlockFace back = SignUtil.getBack(CraftBookBukkitUtil.toSign(getSign()).getBlock());
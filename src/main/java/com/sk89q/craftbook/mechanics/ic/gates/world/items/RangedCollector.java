@@ -11,6 +11,7 @@ import com.sk89q.craftbook.mechanics.ic.ICFactory;
 import com.sk89q.craftbook.mechanics.ranged.RangedCollectEvent;
 import com.sk89q.craftbook.util.ICUtil;
 import com.sk89q.craftbook.util.InventoryUtil;
+import com.sk89q.craftbook.util.ItemFilter;
 import com.sk89q.craftbook.util.ItemSyntax;
 import com.sk89q.craftbook.util.ItemUtil;
 import com.sk89q.craftbook.util.LocationUtil;
@@ -66,11 +67,9 @@ public class RangedCollector extends AbstractSelfTriggeredIC {
     private Vector3 radius;
     private Location centre;
 
-    private boolean include = false;
-
     private Block chest;
 
-    private List<ItemStack> filters = new ArrayList<>();
+    private ItemFilter filter;
 
     @Override
     public void load() {
@@ -87,16 +86,18 @@ public class RangedCollector extends AbstractSelfTriggeredIC {
             centre = getBackBlock().getLocation();
         }
 
-        include = !getLine(3).startsWith("-");
+        boolean include = !getLine(3).startsWith("-");
 
+        List<ItemStack> filters = new ArrayList<>();
         for(String bit : getLine(3).replace("-","").split(",")) {
             if (bit.trim().length() > 0) {
                 ItemStack item = ItemSyntax.getItem(bit);
                 if (ItemUtil.isStackValid(item)) {
-                    filters.add(ItemSyntax.getItem(bit));
+                    filters.add(item);
                 }
             }
         }
+        filter = include ? ItemFilter.compile(filters, null) : ItemFilter.compile(null, filters);
 
         chest = getBackBlock().getRelative(0, 1, 0);
     }
@@ -114,22 +115,7 @@ public class RangedCollector extends AbstractSelfTriggeredIC {
                 if(!ItemUtil.isStackValid(stack))
                     return false;
 
-                boolean passed = filters.isEmpty() || !include;
-
-                for(ItemStack filter : filters) {
-                    if(!ItemUtil.isStackValid(filter))
-                        continue;
-
-                    if(include && ItemUtil.areItemsIdentical(filter, stack)) {
-                        passed = true;
-                        break;
-                    } else if(!include && ItemUtil.areItemsIdentical(filter, stack)) {
-                        passed = false;
-                        break;
-                    }
-                }
-
-                if (!passed) {
+                if (!filter.passes(stack)) {
                     continue;
                 }
 
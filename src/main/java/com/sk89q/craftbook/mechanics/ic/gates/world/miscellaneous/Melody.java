@@ -2,12 +2,9 @@ package com.sk89q.craftbook.mechanics.ic.gates.world.miscellaneous;
 
 import java.io.File;
 import java.io.IOException;
-import java.util.HashSet;
 import java.util.Locale;
-import java.util.Set;
 
 import javax.sound.midi.InvalidMidiDataException;
-import javax.sound.midi.MidiUnavailableException;
 
 import com.sk89q.craftbook.CraftBookPlayer;
 import com.sk89q.craftbook.mechanics.ic.*;
@@ -22,6 +19,7 @@ import com.sk89q.craftbook.bukkit.CraftBookPlugin;
 import com.sk89q.craftbook.util.RegexUtil;
 import com.sk89q.craftbook.util.SearchArea;
 import com.sk89q.craftbook.util.jinglenote.JingleNoteManager;
+import com.sk89q.craftbook.util.jinglenote.JingleTimelineCache;
 import com.sk89q.craftbook.util.jinglenote.MidiJingleSequencer;
 
 /**
@@ -105,9 +103,18 @@ public class Melody extends AbstractSelfTriggeredIC {
             }
         }
 
-        if(file != null && file.exists())
+        if(file != null && file.exists()) {
             foundFile = true;
-        else
+            // Render the song ahead of time, so the first trigger doesn't have to.
+            final File midiFile = file;
+            Bukkit.getScheduler().runTaskAsynchronously(getPlugin(), () -> {
+                try {
+                    JingleTimelineCache.getMidi(midiFile);
+                } catch (IOException | InvalidMidiDataException e) {
+                    CraftBookPlugin.logDebugMessage("Failed to prepare midi file: " + midiFile.getName(), "midi");
+                }
+            });
+        } else
             CraftBookPlugin.logDebugMessage("Midi file not found in melody IC: " + midiName, "midi");
     }
 
@@ -121,7 +128,7 @@ public class Melody extends AbstractSelfTriggeredIC {
             try {
                 player = new MelodyPlayer(new MidiJingleSequencer(file, loop));
                 hasRun = false;
-            } catch (MidiUnavailableException | IOException | InvalidMidiDataException e) {
+            } catch (IOException | InvalidMidiDataException e) {
                 CraftBookPlugin.logger().warning("Found invalid MIDI file: " + file);
                 e.printStackTrace();
                 foundFile = false;
@@ -140,10 +147,7 @@ public class Melody extends AbstractSelfTriggeredIC {
                         if (((Factory) getFactory()).showPlayingMessage) {
                             pp.sendMessage(ChatColor.YELLOW + "Playing " + midiName + "...");
                         }
-                        if(!hasRun) {
-                            Bukkit.getScheduler().runTaskAsynchronously(getPlugin(), player);
-                            hasRun = true;
-                        }
+                        hasRun = true;
                     }
                 }
             }
@@ -154,81 +158,47 @@ public class Melody extends AbstractSelfTriggeredIC {
         chip.setOutput(0, player.isPlaying());
     }
 
-    private class MelodyPlayer implements Runnable {
+    private class MelodyPlayer {
 
         private JingleNoteManager jNote;
         private MidiJingleSequencer sequencer;
         private boolean isPlaying;
 
-        private final Set<String> toStop, toPlay;
-
         public MelodyPlayer(MidiJingleSequencer sequencer) {
             this.sequencer = sequencer;
             jNote = new JingleNoteManager();
-            toStop = new HashSet<>();
-            toPlay = new HashSet<>();
             isPlaying = false;
             CraftBookPlugin.logDebugMessage("Constructing new player instance.", "ic-mc1270");
         }
 
         public boolean isPlaying(String player) {
-            return isPlaying() && (toPlay.contains(player) || jNote.isPlaying(player));
+            return isPlaying() && jNote.isPlaying(player);
         }
 
         public void stop(String player) {
 
-            toStop.add(player);
-            toPlay.remove(player);
+            jNote.stop(player);
             CraftBookPlugin.logDebugMessage("Removing " + player + " from melody IC.", "ic-mc1270");
         }
 
         public void play(String player) {
 
-            if(jNote.isPlaying(player) || toPlay.contains(player)) return;
-            toPlay.add(player);
-            toStop.remove(player);
+            if(sequencer == null || jNote.isPlaying(player)) return;
+            isPlaying = true;
+            jNote.play(player, sequencer, area);
             CraftBookPlugin.logDebugMessage("Adding " + player + " to melody IC.", "ic-mc1270");
         }
 
         public boolean isPlaying() {
-            return isPlaying && /*(!toPlay.isEmpty() || jNote.isPlaying() ||*/ sequencer != null && (sequencer.isPlaying() || !sequencer.hasPlayedBefore())/*)*/;
+            return isPlaying && isValid();
         }
 
         public void setPlaying(boolean playing) {
             isPlaying = playing;
-        }
-
-        @Override
-        public void run () {
-            try {
-                isPlaying = true;
-                CraftBookPlugin.logDebugMessage("Starting run of player instance.", "ic-mc1270");
-
-                while(isPlaying) {
-                    for(String player : toStop)
-                        jNote.stop(player);
-                    toStop.clear();
-                    for(String player : toPlay) {
-                        jNote.play(player, sequencer, area);
-                    }
-                    toPlay.clear();
-
-                    if(!isValid() || !isPlaying() && sequencer.hasPlayedBefore()) {
-                        isPlaying = false;
-                        break;
-                    }
-                }
-
-            } catch(Throwable t) {
-                t.printStackTrace();
-            } finally {
-                if(sequencer != null)
-                    sequencer.stop();
+            if(!playing && sequencer != null) {
+                sequencer.stop();
                 jNote.stopAll();
                 sequencer = null;
-                toPlay.clear();
-                toStop.clear();
-                isPlaying = false;
             }
         }
 
@@ -125,6 +125,8 @@ public class PlcFactory<StateT, CodeT, Lang extends PlcLanguage<StateT, CodeT>>
 
     @Override
     public void unload () {
+
+        PlcStateStore.unload();
     }
 
     @Override
@@ -38,11 +38,11 @@ import org.bukkit.inventory.ItemStack;
 import org.bukkit.inventory.meta.BookMeta;
 import org.bukkit.util.Vector;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.UnsupportedEncodingException;
 import java.security.MessageDigest;
@@ -60,6 +60,7 @@ class PlcIC<StateT, CodeT, Lang extends PlcLanguage<StateT, CodeT>> implements I
     private Lang lang;
     private StateT state;
     private String codeString;
+    private String codeHash;
     private CodeT code;
 
     private ChangedSign sign;
@@ -67,6 +68,11 @@ class PlcIC<StateT, CodeT, Lang extends PlcLanguage<StateT, CodeT>> implements I
     private boolean error = false;
     private String errorString = "no error";
 
+    /**
+     * The storage name of the shared state this PLC has joined, or null if it hasn't joined one.
+     */
+    private String sharedName;
+
     PlcIC(ChangedSign s, Lang l) throws ICVerificationException {
 
         sign = s;
@@ -88,6 +94,7 @@ class PlcIC<StateT, CodeT, Lang extends PlcLanguage<StateT, CodeT>> implements I
         } catch (CodeNotFoundException e) {
             error("code missing", "Code went missing!!");
         }
+        codeHash = hashCode(codeString);
         try {
             if (codeString != null) {
                 code = lang.compile(codeString);
@@ -96,7 +103,24 @@ class PlcIC<StateT, CodeT, Lang extends PlcLanguage<StateT, CodeT>> implements I
             throw new RuntimeException("inconsistent compile check!", e);
         }
         state = lang.initState();
-        tryLoadState();
+        if (isShared()) {
+            joinSharedState();
+        } else {
+            tryLoadState();
+        }
+    }
+
+    /**
+     * Uses the live state of the other PLCs sharing this storage name, or loads it if this is the first one.
+     */
+    @SuppressWarnings("unchecked")
+    private void joinSharedState() {
+
+        sharedName = getFileName();
+        state = (StateT) PlcStateStore.joinSharedState(getWorld(), sharedName, () -> {
+            tryLoadState();
+            return state;
+        });
     }
 
     private boolean isShared() {
@@ -116,22 +140,14 @@ class PlcIC<StateT, CodeT, Lang extends PlcLanguage<StateT, CodeT>> implements I
         } else return lang.getName() + "$" + sign.getLine(3);
     }
 
+    private World getWorld() {
+
+        return sign.getBlock().getWorld();
+    }
+
     private File getStorageLocation() {
 
-        World w = sign.getBlock().getWorld();
-        File worldDir = w.getWorldFolder();
-        File targetDir = new File(new File(worldDir, "craftbook"), "plcs");
-        if(new File(worldDir, "craftbook-plcs").exists()) {
-
-            File oldFolder = new File(worldDir, "craftbook-plcs");
-            if(!targetDir.exists())
-                targetDir.mkdirs();
-            if(!oldFolder.renameTo(targetDir))
-                logger.warning("Failed to copy PLC States over to new directory!");
-            oldFolder.delete();
-        }
-        targetDir.mkdirs();
-        return new File(targetDir, getFileName());
+        return new File(PlcStateStore.getStorageFolder(getWorld()), getFileName());
     }
 
     private String hashCode(String code) {
@@ -162,15 +178,16 @@ class PlcIC<StateT, CodeT, Lang extends PlcLanguage<StateT, CodeT>> implements I
         } catch (IOException e) {
             logger.log(Level.SEVERE, "Failed to load PLC state", e);
             state = lang.initState();
-            getStorageLocation().delete();
+            PlcStateStore.delete(getWorld(), getStorageLocation());
         }
     }
 
     private void loadState() throws IOException {
 
-        if (!getStorageLocation().exists()) return; // Prevent error spam
+        byte[] data = PlcStateStore.read(getWorld(), getStorageLocation());
+        if (data == null) return; // Prevent error spam
 
-        try (DataInputStream in = new DataInputStream(new FileInputStream(getStorageLocation()))) {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(data))) {
             switch (in.readInt()) {
                 case 1:
                     error = in.readBoolean();
@@ -180,7 +197,7 @@ class PlcIC<StateT, CodeT, Lang extends PlcLanguage<StateT, CodeT>> implements I
                     String id = in.readUTF();
                     String code = hashCode(in.readUTF());
                     if ((lang.getName().equals(langName) || lang.supports(langName))
-                            && (isShared() || id.equals(getID()) && hashCode(codeString).equals(code))) {
+                            && (isShared() || id.equals(getID()) && codeHash.equals(code))) {
                         lang.loadState(state, in);
                     } else {
                         // Prevent errors from different ICs from affecting this one.
@@ -206,15 +223,17 @@ class PlcIC<StateT, CodeT, Lang extends PlcLanguage<StateT, CodeT>> implements I
 
     private void saveState() throws IOException {
 
-        try (DataOutputStream out = new DataOutputStream(new FileOutputStream(getStorageLocation()))) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
             out.writeInt(PLC_STORE_VERSION);
             out.writeBoolean(error);
             out.writeUTF(errorString);
             out.writeUTF(lang.getName());
             out.writeUTF(error ? "(error)" : getID());
-            out.writeUTF(hashCode(codeString));
+            out.writeUTF(codeHash);
             lang.writeState(state, out);
         }
+        PlcStateStore.save(getWorld(), getStorageLocation(), bytes.toByteArray());
     }
 
     private String getBookCode(Block chestBlock) throws CodeNotFoundException {
@@ -288,6 +307,10 @@ class PlcIC<StateT, CodeT, Lang extends PlcLanguage<StateT, CodeT>> implements I
 
     public void error(String shortMessage, String detailedMessage) {
 
+        // The storage name is replaced below, so this PLC leaves its group and stops sharing the live state.
+        if (isShared() && state != null)
+            state = lang.initState();
+
         sign.setLine(2, ChatColor.RED + "!Error!");
         sign.setLine(3, shortMessage);
         sign.update(false);
@@ -302,10 +325,6 @@ class PlcIC<StateT, CodeT, Lang extends PlcLanguage<StateT, CodeT>> implements I
     public void trigger(ChipState chip) {
 
         try {
-            if (isShared()) {
-                tryLoadState();
-            }
-
             lang.execute(chip, state, code);
 
             trySaveState();
@@ -346,6 +365,10 @@ class PlcIC<StateT, CodeT, Lang extends PlcLanguage<StateT, CodeT>> implements I
     @Override
     public void unload() {
 
+        if (sharedName != null) {
+            PlcStateStore.leaveSharedState(getWorld(), sharedName);
+            sharedName = null;
+        }
     }
 
     @Override
@@ -402,7 +425,7 @@ class PlcIC<StateT, CodeT, Lang extends PlcLanguage<StateT, CodeT>> implements I
 
         @Override
         public void unload() {
-
+            self.unload();
         }
 
         @Override
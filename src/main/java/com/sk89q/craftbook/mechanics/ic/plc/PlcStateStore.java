@@ -0,0 +1,259 @@
+/*
+ * CraftBook Copyright (C) 2010 sk89q <http://www.sk89q.com>
+ * 
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ * License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with this program. If not,
+ * see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.craftbook.mechanics.ic.plc;
+
+import com.sk89q.craftbook.bukkit.CraftBookPlugin;
+import org.bukkit.World;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Holds PLC states in memory until they are written to disk.
+ *
+ * States are kept per world, and written in batches by an asynchronous task that runs shortly after the first state
+ * changes. A PLC that triggers many times before then only gets written once. Pending states are also written when
+ * their world unloads, and when the ICs are disabled.
+ *
+ * PLCs that share a storage name also share a single live state object, so they see each other's changes without
+ * reading the file again. The shared state is forgotten once the last PLC of the group unloads.
+ *
+ * Files are written to a temporary file first and then moved into place, so a crash never leaves a partly written
+ * state behind.
+ */
+public final class PlcStateStore {
+
+    private static final Logger logger = Logger.getLogger("Minecraft.CraftBook");
+
+    /**
+     * The delay in ticks between a state changing and it being written.
+     */
+    private static final long SAVE_DELAY = 100L;
+
+    private static final Map<UUID, Map<File, byte[]>> pendingStates = new ConcurrentHashMap<>();
+    private static final Map<UUID, File> storageFolders = new ConcurrentHashMap<>();
+    private static final Map<UUID, Map<String, SharedState>> sharedStates = new ConcurrentHashMap<>();
+
+    /**
+     * Held while writing or deleting a file, so that an older state can never overwrite a newer one.
+     */
+    private static final Object fileLock = new Object();
+
+    private static final AtomicBoolean flushScheduled = new AtomicBoolean();
+
+    private PlcStateStore() {
+    }
+
+    /**
+     * Gets the folder PLC states of a world are stored in, moving the states over from the old folder the first time.
+     *
+     * @param world The world
+     * @return The storage folder
+     */
+    static File getStorageFolder(World world) {
+
+        return storageFolders.computeIfAbsent(world.getUID(), uuid -> {
+            File worldDir = world.getWorldFolder();
+            File targetDir = new File(new File(worldDir, "craftbook"), "plcs");
+            if(new File(worldDir, "craftbook-plcs").exists()) {
+
+                File oldFolder = new File(worldDir, "craftbook-plcs");
+                if(!targetDir.exists())
+                    targetDir.mkdirs();
+                if(!oldFolder.renameTo(targetDir))
+                    logger.warning("Failed to copy PLC States over to new directory!");
+                oldFolder.delete();
+            }
+            targetDir.mkdirs();
+            return targetDir;
+        });
+    }
+
+    /**
+     * Queues a state to be written.
+     *
+     * @param world The world of the PLC
+     * @param file The file to write to
+     * @param data The serialized state
+     */
+    static void save(World world, File file, byte[] data) {
+
+        pendingStates.computeIfAbsent(world.getUID(), uuid -> new ConcurrentHashMap<>()).put(file, data);
+
+        if(flushScheduled.compareAndSet(false, true)) {
+            if(CraftBookPlugin.inst() != null && CraftBookPlugin.inst().isEnabled()) {
+                CraftBookPlugin.server().getScheduler().runTaskLaterAsynchronously(CraftBookPlugin.inst(), PlcStateStore::flushAll, SAVE_DELAY);
+            } else {
+                flushAll();
+            }
+        }
+    }
+
+    /**
+     * Reads a state, including one that hasn't been written yet.
+     *
+     * @param world The world of the PLC
+     * @param file The file the state is stored in
+     * @return The serialized state, or null if there is none
+     * @throws IOException If the file could not be read
+     */
+    static byte[] read(World world, File file) throws IOException {
+
+        Map<File, byte[]> pending = pendingStates.get(world.getUID());
+        if(pending != null) {
+            byte[] data = pending.get(file);
+            if(data != null)
+                return data;
+        }
+
+        if (!file.exists()) return null;
+        return Files.readAllBytes(file.toPath());
+    }
+
+    /**
+     * Deletes a state, along with any pending changes to it.
+     *
+     * @param world The world of the PLC
+     * @param file The file the state is stored in
+     */
+    static void delete(World world, File file) {
+
+        synchronized (fileLock) {
+            Map<File, byte[]> pending = pendingStates.get(world.getUID());
+            if(pending != null)
+                pending.remove(file);
+            file.delete();
+        }
+    }
+
+    /**
+     * Joins a group of shared PLCs, getting its live state. Every PLC that joins a group must leave it again through
+     * {@link #leaveSharedState(World, String)} when it unloads.
+     *
+     * @param world The world of the PLCs
+     * @param name The storage name of the group
+     * @param initial Gives the state if no PLC of the group is loaded yet
+     * @return The state
+     */
+    static Object joinSharedState(World world, String name, Supplier<Object> initial) {
+
+        Map<String, SharedState> states = sharedStates.computeIfAbsent(world.getUID(), uuid -> new ConcurrentHashMap<>());
+        SharedState shared = states.compute(name, (key, existing) -> {
+            if(existing == null)
+                existing = new SharedState(initial.get());
+            existing.users++;
+            return existing;
+        });
+        return shared.state;
+    }
+
+    /**
+     * Leaves a group of shared PLCs, forgetting its live state if this was the last PLC of the group.
+     *
+     * @param world The world of the PLCs
+     * @param name The storage name of the group
+     */
+    static void leaveSharedState(World world, String name) {
+
+        Map<String, SharedState> states = sharedStates.get(world.getUID());
+        if(states == null)
+            return;
+        states.computeIfPresent(name, (key, existing) -> --existing.users > 0 ? existing : null);
+    }
+
+    /**
+     * Writes all pending states of a world, and forgets its shared states.
+     *
+     * @param world The world
+     */
+    public static void unload(World world) {
+
+        sharedStates.remove(world.getUID());
+        Map<File, byte[]> pending = pendingStates.get(world.getUID());
+        if(pending != null)
+            flush(pending);
+    }
+
+    /**
+     * Writes all pending states, and forgets all shared states.
+     */
+    public static void unload() {
+
+        sharedStates.clear();
+        flushAll();
+    }
+
+    /**
+     * Writes all pending states.
+     */
+    private static void flushAll() {
+
+        // Also called when the scheduled flush was cancelled, so that the next change schedules a new one.
+        flushScheduled.set(false);
+        for(Map<File, byte[]> pending : pendingStates.values())
+            flush(pending);
+    }
+
+    private static void flush(Map<File, byte[]> pending) {
+
+        for(File file : pending.keySet()) {
+            synchronized (fileLock) {
+                // Always write the latest state, and only forget it if it hasn't changed again meanwhile.
+                byte[] data = pending.get(file);
+                if(data == null)
+                    continue;
+                try {
+                    write(file, data);
+                    pending.remove(file, data);
+                } catch (IOException e) {
+                    logger.log(Level.SEVERE, "Failed to save PLC state", e);
+                }
+            }
+        }
+    }
+
+    private static void write(File file, byte[] data) throws IOException {
+
+        File temp = new File(file.getParentFile(), file.getName() + ".tmp");
+        Files.write(temp.toPath(), data);
+        try {
+            Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private static final class SharedState {
+
+        private final Object state;
+        private int users;
+
+        private SharedState(Object state) {
+
+            this.state = state;
+        }
+    }
+}
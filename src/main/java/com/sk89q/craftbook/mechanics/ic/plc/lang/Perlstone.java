@@ -20,8 +20,9 @@ import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.io.IOException;
 import java.util.ArrayList;
-import java.util.EmptyStackException;
-import java.util.Stack;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
 
 import com.sk89q.craftbook.bukkit.util.CraftBookBukkitUtil;
 import org.bukkit.ChatColor;
@@ -30,14 +31,26 @@ import com.sk89q.craftbook.mechanics.ic.ChipState;
 import com.sk89q.craftbook.mechanics.ic.ICVerificationException;
 import com.sk89q.craftbook.mechanics.ic.plc.PlcException;
 import com.sk89q.craftbook.mechanics.ic.plc.PlcLanguage;
+import com.sk89q.craftbook.util.HistoryHashMap;
 
-public class Perlstone implements PlcLanguage<boolean[], WithLineInfo<String>[]> {
+public class Perlstone implements PlcLanguage<boolean[], PerlstoneProgram> {
 
     private static final int MAX_INSTRUCTION_COUNT = 10000;
     private static final int MAX_STACK_SIZE = 64;
     private static final int MAX_RECURSION = 16;
     private static final int PERLSTONE_STORE_VERSION = 0;
 
+    private static final int RESULT_NONE = -1;
+    private static final int RESULT_FALSE = 0;
+    private static final int RESULT_TRUE = 1;
+
+    private static final LineInfo NO_LINE = new LineInfo(0, 0);
+
+    /**
+     * Compiled programs by their source, so ICs sharing the same code only compile it once.
+     */
+    private static final Map<String, PerlstoneProgram> PROGRAM_CACHE = Collections.synchronizedMap(new HistoryHashMap<>(256));
+
     @Override
     public String getName() {
 
@@ -112,7 +125,229 @@ public class Perlstone implements PlcLanguage<boolean[], WithLineInfo<String>[]>
     }
 
     @Override
-    public WithLineInfo<String>[] compile(String code) throws ICVerificationException {
+    public PerlstoneProgram compile(String code) throws ICVerificationException {
+
+        PerlstoneProgram program = PROGRAM_CACHE.get(code);
+        if (program != null)
+            return program;
+
+        WithLineInfo<String>[] functions = verify(code);
+
+        int maxArgs = 0;
+        PerlstoneProgram.Function[] compiled = new PerlstoneProgram.Function[functions.length];
+        for (int i = 0; i < functions.length; i++) {
+            compiled[i] = decode(functions[i]);
+            maxArgs = Math.max(maxArgs, compiled[i].maxArgs);
+        }
+
+        // The stack size is checked before every instruction, and no instruction pushes more than one value.
+        program = new PerlstoneProgram(compiled, Math.max(MAX_STACK_SIZE, maxArgs) + 2, MAX_RECURSION + 2);
+        PROGRAM_CACHE.put(code, program);
+        return program;
+    }
+
+    /**
+     * Decodes the instruction at every position of a function, the same way the characters would be read when
+     * stepping through it.
+     *
+     * @param source The function source
+     * @return The decoded function
+     */
+    private PerlstoneProgram.Function decode(WithLineInfo<String> source) {
+
+        char[] code = source.code.toCharArray();
+        PerlstoneProgram.Function function = new PerlstoneProgram.Function(code, source.lineInfo);
+
+        // Jump table so that [ and ] aren't that messy
+        int[] jumps = new int[code.length];
+        int[] open = new int[code.length];
+        int depth = 0;
+        for (int i = 0; i < code.length; i++) {
+            if (code[i] == '[') {
+                open[depth++] = i;
+            } else if (code[i] == ']') {
+                if (depth == 0) {
+                    function.unbalanced = true;
+                    break;
+                }
+                int j = open[--depth];
+                jumps[i] = j;
+                jumps[j] = i;
+            }
+        }
+
+        for (int i = 0; i < code.length; i++) {
+            byte op = PerlstoneProgram.NOP;
+            int a = 0;
+            int b = 0;
+            int length = 1;
+
+            switch (code[i]) {
+                case '+':
+                    op = PerlstoneProgram.PUSH_TRUE;
+                    break;
+                case '-':
+                    op = PerlstoneProgram.PUSH_FALSE;
+                    break;
+
+                case 'A':
+                case 'B':
+                case 'C':
+                    op = PerlstoneProgram.PUSH_INPUT;
+                    a = code[i] - 'A';
+                    break;
+
+                case '<':
+                case '>':
+                case 'e':
+                    length = 2;
+                    if (i + 1 >= code.length) {
+                        op = PerlstoneProgram.TRUNCATED;
+                        break;
+                    }
+                    a = decodeTable(code[i + 1]);
+                    if (code[i] == 'e') {
+                        op = PerlstoneProgram.SHIFT_RESET;
+                    } else {
+                        op = PerlstoneProgram.SHIFT_ADD;
+                        b = code[i] == '<' ? -1 : 1;
+                    }
+                    break;
+
+                case 'S':
+                case 'L':
+                    if (i + 1 >= code.length) {
+                        op = PerlstoneProgram.TRUNCATED;
+                        break;
+                    }
+                    a = decodeTable(code[i + 1]);
+                    if (a == PerlstoneProgram.TABLE_NONE) {
+                        // An unknown table does nothing, and the address is then read as an instruction.
+                        length = 2;
+                        break;
+                    }
+                    if (i + 2 >= code.length) {
+                        op = PerlstoneProgram.TRUNCATED;
+                        break;
+                    }
+                    if (Character.isLowerCase(code[i + 1]))
+                        a |= PerlstoneProgram.SHIFTED;
+                    char address = code[i + 2];
+                    b = address >= '0' && address <= '9' ? address - '0' : address - 'a' + 10;
+                    op = code[i] == 'S' ? PerlstoneProgram.STORE : PerlstoneProgram.LOAD;
+                    length = 3;
+                    break;
+
+                case 'd':
+                    op = PerlstoneProgram.DUP;
+                    break;
+                case 'p':
+                    op = PerlstoneProgram.POP;
+                    break;
+                case 'v':
+                    op = PerlstoneProgram.PEEK;
+                    // A missing depth is reported the same as peeking too deep.
+                    a = i + 1 < code.length ? code[i + 1] - '0' : Integer.MAX_VALUE;
+                    length = 2;
+                    break;
+                case 'x':
+                    op = PerlstoneProgram.SWAP;
+                    break;
+
+                case '!':
+                    op = PerlstoneProgram.NOT;
+                    break;
+                case '^':
+                    op = PerlstoneProgram.XOR;
+                    break;
+                case '&':
+                    op = PerlstoneProgram.AND;
+                    break;
+                case '|':
+                    op = PerlstoneProgram.OR;
+                    break;
+                case '=':
+                    op = PerlstoneProgram.EQUALS;
+                    break;
+
+                case '.':
+                    op = PerlstoneProgram.TABLE;
+                    length = 5;
+                    for (int j = 0; j < 4; j++) {
+                        if (i + 1 + j >= code.length) {
+                            op = PerlstoneProgram.TRUNCATED;
+                            break;
+                        }
+                        char t = code[i + 1 + j];
+                        if (t == '+' || t == '1') {
+                            a |= 1 << j;
+                        } else if (t != '-' && t != '0') {
+                            op = PerlstoneProgram.BAD_TABLE;
+                            break;
+                        }
+                    }
+                    break;
+
+                case 'c':
+                case 't':
+                    length = 4;
+                    if (i + 3 >= code.length) {
+                        op = PerlstoneProgram.TRUNCATED;
+                        break;
+                    }
+                    op = code[i] == 'c' ? PerlstoneProgram.CALL : PerlstoneProgram.TAIL_CALL;
+                    a = (code[i + 1] - '0') * 10 + code[i + 2] - '0';
+                    b = code[i + 3] - '0';
+                    function.maxArgs = Math.max(function.maxArgs, b);
+                    break;
+
+                case '[':
+                    op = PerlstoneProgram.JUMP_IF_FALSE;
+                    a = jumps[i];
+                    break;
+                case ']':
+                    op = PerlstoneProgram.JUMP_IF_TRUE;
+                    a = jumps[i];
+                    break;
+
+                case 's':
+                    op = PerlstoneProgram.RETURN_NONE;
+                    break;
+                case 'r':
+                    op = PerlstoneProgram.RETURN_POP;
+                    break;
+
+                default:
+                    break;
+            }
+
+            function.ops[i] = op;
+            function.a[i] = a;
+            function.b[i] = b;
+            function.next[i] = i + length;
+        }
+
+        return function;
+    }
+
+    private static int decodeTable(char c) {
+
+        switch (c) {
+            case 'p':
+            case 'P':
+                return PerlstoneProgram.TABLE_PERSISTENT;
+            case 't':
+            case 'T':
+                return PerlstoneProgram.TABLE_TEMP;
+            case 'l':
+            case 'L':
+                return PerlstoneProgram.TABLE_LOCAL;
+            default:
+                return PerlstoneProgram.TABLE_NONE;
+        }
+    }
+
+    private WithLineInfo<String>[] verify(String code) throws ICVerificationException {
 
         WithLineInfo<String>[] functions = splitFunctions(markLines(code));
         for (int l = 0; l < functions.length; l++) {
@@ -263,24 +498,28 @@ public class Perlstone implements PlcLanguage<boolean[], WithLineInfo<String>[]>
     }
 
     @Override
-    public void execute(ChipState chip, boolean[] state, WithLineInfo<String>[] code) throws PlcException {
-
-        boolean[] tt = new boolean[32];
-        boolean a = chip.getInputCount() > 0 && chip.getInput(0);
-        boolean b = chip.getInputCount() > 1 && chip.getInput(1);
-        boolean c = chip.getInputCount() > 2 && chip.getInput(2);
-
-        for (int i = 0; i < chip.getOutputCount(); i++) {
-            if (i < code.length) {
-                Boolean r = executeFunction(i, state, tt, code, a, b, c, new boolean[0], new int[1], 0);
-                if (r == null) {
-                    chip.setOutput(i, false);
+    public void execute(ChipState chip, boolean[] state, PerlstoneProgram code) throws PlcException {
+
+        // The same program may be shared by several ICs, so only reuse its buffers if it isn't already running.
+        PerlstoneProgram program = code.executing ? code.copy() : code;
+        program.executing = true;
+        try {
+            Arrays.fill(program.tempTable, false);
+
+            boolean a = chip.getInputCount() > 0 && chip.getInput(0);
+            boolean b = chip.getInputCount() > 1 && chip.getInput(1);
+            boolean c = chip.getInputCount() > 2 && chip.getInput(2);
+
+            for (int i = 0; i < chip.getOutputCount(); i++) {
+                if (i < program.functions.length) {
+                    program.instructionCount = 0;
+                    chip.setOutput(i, executeFunction(i, state, program, a, b, c, 0, 0) == RESULT_TRUE);
                 } else {
-                    chip.setOutput(i, r);
+                    chip.setOutput(i, false);
                 }
-            } else {
-                chip.setOutput(i, false);
             }
+        } finally {
+            program.executing = false;
         }
     }
 
@@ -295,38 +534,14 @@ public class Perlstone implements PlcLanguage<boolean[], WithLineInfo<String>[]>
         return (a % b + b) % b;
     }
 
-    private int decodeAddress(char c, int shift) {
-
-        if (c >= '0' && c <= '9') return mod(c - '0' + shift, 32);
-        else return mod(c - 'a' + 10 + shift, 32);
-    }
-
-    private int parseNumber(char c) {
+    private PlcException emptyStack() {
 
-        return c - '0';
-    }
-
-    private boolean parseTableChar(char c) throws PlcException {
-
-        switch (c) {
-            case '+':
-                return true;
-            case '-':
-                return false;
-            case '1':
-                return true;
-            case '0':
-                return false;
-
-                // Shouldn't happen because of validation.
-            default:
-                throw new PlcException("invalid table", "Invalid character in logic table.");
-        }
+        return new PlcException("empty stack", "Popped while stack was empty.");
     }
 
     private String errmsg(String err, int fno, char opcode, LineInfo li, boolean[] pt, boolean[] tt, boolean[] lt,
             int pshift, int tshift,
-            int lshift, Stack<Boolean> stack, int tc) {
+            int lshift, boolean[] stack, int stackSize, int tc) {
 
         String errm = "";
         if (!err.startsWith(ChatColor.RED + "Detailed Error Message: ")) {
@@ -347,115 +562,77 @@ public class Perlstone implements PlcLanguage<boolean[], WithLineInfo<String>[]>
                 + fno + "\n";
         errm += ChatColor.RED + "Local Variable Table: \n " + ChatColor.RESET + dumpStateText(lt) + "\n";
         errm += ChatColor.RED + " - Shift: " + ChatColor.RESET + lshift + "\n";
-        errm += ChatColor.RED + "Function Stack: " + ChatColor.RESET + dumpStateText(stack.toArray(new Boolean[stack
-                                                                                                               .size()]));
+        errm += ChatColor.RED + "Function Stack: " + ChatColor.RESET + dumpStateText(stack, stackSize);
         return errm;
     }
-
-    // Use wrapper type to be able to express "no return" as null
-    private Boolean executeFunction(int fno, boolean[] pt, boolean[] tt, WithLineInfo<String>[] funs, boolean a,
-            boolean b, boolean c,
-            boolean[] args, int[] opc, int rec) throws PlcException {
+    /**
+     * Executes a function. The arguments must already be at the bottom of the stack for this recursion level.
+     *
+     * @return {@link #RESULT_TRUE}, {@link #RESULT_FALSE} or {@link #RESULT_NONE} if no value was returned
+     */
+    private int executeFunction(int fno, boolean[] pt, PerlstoneProgram program, boolean a, boolean b, boolean c,
+            int argCount, int rec) throws PlcException {
 
         int tailcalls = 0;
+        boolean[] tt = program.tempTable;
+        boolean[] stack = program.stacks[rec];
+        boolean[] lt = program.localTables[rec];
+        int size = argCount;
 
         // Wrap in an while(true) to allow the t opcode to be a tail call.
         outer:
             while (true) {
-                String fn = funs[fno].code;
-                LineInfo[] lis = funs[fno].lineInfo;
-                char[] code = fn.toCharArray();
-                int[] jt = new int[code.length]; // Jump table so that [ and ] aren't that messy
-                /* scope */
-                {
-                    Stack<Integer> bracketStack = new Stack<>();
-                    for (int i = 0; i < code.length; i++) {
-                        char ch = code[i];
-                        if (ch == '[') {
-                            bracketStack.push(i);
-                        } else if (ch == ']') {
-                            int j = bracketStack.pop();
-                            jt[i] = j;
-                            jt[j] = i;
-                        }
-                    }
-                }
+                PerlstoneProgram.Function function = program.functions[fno];
+                byte[] ops = function.ops;
 
+                Arrays.fill(lt, false);
                 int ip = 0;
-                Stack<Boolean> executionStack = new Stack<>();
-                for (boolean arg1 : args) {
-                    executionStack.push(arg1);
-                }
-                boolean[] lt = new boolean[32];
                 int pshift = 0;
                 int tshift = 0;
                 int lshift = 0;
                 char op = '?';
 
-                LineInfo li = new LineInfo(0, 0);
+                LineInfo li = NO_LINE;
                 try {
                     if (rec > MAX_RECURSION)
                         throw new PlcException("stack overflow", "Aborted due to too many recursive non-tail calls.");
+                    if (function.unbalanced)
+                        throw new PlcException("bad braces", "Found a closing brace without an opening brace.");
                     try {
-                        while (ip < code.length) {
-                            opc[0]++;
-                            if (opc[0] == MAX_INSTRUCTION_COUNT)
+                        while (ip < ops.length) {
+                            program.instructionCount++;
+                            if (program.instructionCount == MAX_INSTRUCTION_COUNT)
                                 throw new PlcException("ran too long", "Aborted due to running too many instructions in " +
                                         "one update");
-                            if (executionStack.size() > MAX_STACK_SIZE)
+                            if (size > MAX_STACK_SIZE)
                                 throw new PlcException("stack too big", "Aborted due to too many values pushed onto stack" +
                                         ".");
-                            op = code[ip];
-                            li = lis[ip];
-                            switch (op) {
-                                case '+':
-                                    executionStack.push(true);
-                                    break;
-                                case '-':
-                                    executionStack.push(false);
+                            op = function.code[ip];
+                            li = function.lineInfo[ip];
+                            switch (ops[ip]) {
+                                case PerlstoneProgram.PUSH_TRUE:
+                                    stack[size++] = true;
                                     break;
-
-                                case 'A':
-                                    executionStack.push(a);
+                                case PerlstoneProgram.PUSH_FALSE:
+                                    stack[size++] = false;
                                     break;
-                                case 'B':
-                                    executionStack.push(b);
-                                    break;
-                                case 'C':
-                                    executionStack.push(c);
+                                case PerlstoneProgram.PUSH_INPUT:
+                                    stack[size++] = function.a[ip] == 0 ? a : function.a[ip] == 1 ? b : c;
                                     break;
 
-                                case '<':
-                                case '>':
-                                case 'e': {
-                                    int mul = 1;
-                                    int add = 0;
-                                    switch (code[ip]) {
-                                        case '<':
-                                            add = -1;
+                                case PerlstoneProgram.SHIFT_ADD:
+                                case PerlstoneProgram.SHIFT_RESET: {
+                                    boolean reset = ops[ip] == PerlstoneProgram.SHIFT_RESET;
+                                    int add = function.b[ip];
+                                    switch (function.a[ip]) {
+                                        case PerlstoneProgram.TABLE_PERSISTENT:
+                                            pshift = reset ? 0 : pshift + add;
                                             break;
-                                        case '>':
-                                            add = +1;
+                                        case PerlstoneProgram.TABLE_TEMP:
+                                            tshift = reset ? 0 : tshift + add;
                                             break;
-                                        case 'e':
-                                            mul = 0;
-                                            break;
-                                        default:
-                                            break;
-                                    }
-
-                                    switch (code[++ip]) {
-                                        case 'p':
-                                        case 'P':
-                                            pshift = mul * pshift + add;
-                                            break;
-                                        case 't':
-                                        case 'T':
-                                            tshift = mul * tshift + add;
-                                            break;
-                                        case 'l':
-                                        case 'L':
-                                            lshift = mul * lshift + add;
+                                        case PerlstoneProgram.TABLE_LOCAL:
+                                            lshift = reset ? 0 : lshift + add;
                                             break;
                                         default:
                                             break;
@@ -463,175 +640,198 @@ public class Perlstone implements PlcLanguage<boolean[], WithLineInfo<String>[]>
                                 }
                                 break;
 
-                                case 'S':
-                                case 'L': {
-                                    boolean[] table = null;
-                                    int shift = 0;
-
-                                    switch (code[++ip]) {
-                                        case 'p':
-                                            shift = pshift;
-                                        case 'P':
+                                case PerlstoneProgram.STORE:
+                                case PerlstoneProgram.LOAD: {
+                                    boolean[] table;
+                                    int shift;
+                                    switch (function.a[ip] & ~PerlstoneProgram.SHIFTED) {
+                                        case PerlstoneProgram.TABLE_PERSISTENT:
                                             table = pt;
+                                            shift = pshift;
                                             break;
-                                        case 't':
-                                            shift = tshift;
-                                        case 'T':
+                                        case PerlstoneProgram.TABLE_TEMP:
                                             table = tt;
-                                            break;
-                                        case 'l':
-                                            shift = lshift;
-                                        case 'L':
-                                            table = lt;
+                                            shift = tshift;
                                             break;
                                         default:
+                                            table = lt;
+                                            shift = lshift;
                                             break;
                                     }
-                                    if(table == null)
-                                        break;
+                                    if ((function.a[ip] & PerlstoneProgram.SHIFTED) == 0)
+                                        shift = 0;
 
-                                    int add = decodeAddress(code[++ip], shift);
-                                    if (op == 'S')
-                                        table[add] = executionStack.pop();
-                                    else
-                                        executionStack.push(table[add]);
+                                    int add = mod(function.b[ip] + shift, 32);
+                                    if (ops[ip] == PerlstoneProgram.STORE) {
+                                        if (size == 0) throw emptyStack();
+                                        table[add] = stack[--size];
+                                    } else {
+                                        stack[size++] = table[add];
+                                    }
                                 }
                                 break;
 
-                                case 'd':
-                                    executionStack.push(executionStack.peek());
+                                case PerlstoneProgram.DUP:
+                                    if (size == 0) throw emptyStack();
+                                    stack[size] = stack[size - 1];
+                                    size++;
                                     break;
-                                case 'p':
-                                    executionStack.pop();
+                                case PerlstoneProgram.POP:
+                                    if (size == 0) throw emptyStack();
+                                    size--;
                                     break;
-                                case 'v':
-                                    try {
-                                        int level = parseNumber(code[++ip]);
-                                        executionStack.push(executionStack.get(executionStack.size() - 1 - level));
-                                    } catch (ArrayIndexOutOfBoundsException e) {
+                                case PerlstoneProgram.PEEK: {
+                                    int index = size - 1 - function.a[ip];
+                                    if (index < 0 || index >= size)
                                         throw new PlcException("bad stack pos", "Attempted to call peek on too small a " +
                                                 "stack.");
+                                    stack[size] = stack[index];
+                                    size++;
+                                }
+                                break;
+                                case PerlstoneProgram.SWAP: {
+                                    if (size < 2) {
+                                        size = 0;
+                                        throw emptyStack();
                                     }
-                                    break;
-                                case 'x':
-                                    boolean x = executionStack.pop();
-                                    boolean y = executionStack.pop();
-                                    executionStack.push(x);
-                                    executionStack.push(y);
-                                    break;
-                                default:
-                                    break;
-
-                                case '!':
-                                    executionStack.push(!executionStack.pop());
-                                    break;
+                                    boolean x = stack[size - 1];
+                                    stack[size - 1] = stack[size - 2];
+                                    stack[size - 2] = x;
+                                }
+                                break;
 
-                                    // Using the short-circuiting versions would cause it to sometimes pop one less
-                                    // value than it should.
-                                case '^':
-                                    executionStack.push(executionStack.pop() ^ executionStack.pop());
-                                    break;
-                                case '&':
-                                    executionStack.push(executionStack.pop() & executionStack.pop());
-                                    break;
-                                case '|':
-                                    executionStack.push(executionStack.pop() | executionStack.pop());
-                                    break;
-                                case '=':
-                                    executionStack.push(executionStack.pop() == executionStack.pop());
+                                case PerlstoneProgram.NOT:
+                                    if (size == 0) throw emptyStack();
+                                    stack[size - 1] = !stack[size - 1];
                                     break;
 
-                                case '.':
-                                    boolean ta = parseTableChar(code[++ip]);
-                                    boolean tb = parseTableChar(code[++ip]);
-                                    boolean tc = parseTableChar(code[++ip]);
-                                    boolean td = parseTableChar(code[++ip]);
-
-                                    boolean e = executionStack.pop();
-                                    boolean f = executionStack.pop();
-
-                                    if (!e && !f) {
-                                        executionStack.push(ta);
-                                    } else if (!e && f) {
-                                        executionStack.push(tb);
-                                    } else if (e && !f) {
-                                        executionStack.push(tc);
-                                    } else {
-                                        executionStack.push(td);
+                                    // Both values are always popped, even if the first decides the result.
+                                case PerlstoneProgram.XOR:
+                                case PerlstoneProgram.AND:
+                                case PerlstoneProgram.OR:
+                                case PerlstoneProgram.EQUALS: {
+                                    if (size < 2) {
+                                        size = 0;
+                                        throw emptyStack();
                                     }
-                                    break;
-
-                                case 'c':
-                                case 't':
-                                    int n = parseNumber(code[++ip]) * 10 + parseNumber(code[++ip]);
-                                    int nArgs = parseNumber(code[++ip]);
-                                    boolean[] arg = new boolean[nArgs];
+                                    boolean x = stack[--size];
+                                    boolean y = stack[size - 1];
+                                    switch (ops[ip]) {
+                                        case PerlstoneProgram.XOR:
+                                            stack[size - 1] = x ^ y;
+                                            break;
+                                        case PerlstoneProgram.AND:
+                                            stack[size - 1] = x & y;
+                                            break;
+                                        case PerlstoneProgram.OR:
+                                            stack[size - 1] = x | y;
+                                            break;
+                                        default:
+                                            stack[size - 1] = x == y;
+                                            break;
+                                    }
+                                }
+                                break;
 
-                                    if (n < 0 || n >= funs.length)
+                                case PerlstoneProgram.TABLE: {
+                                    if (size < 2) {
+                                        size = 0;
+                                        throw emptyStack();
+                                    }
+                                    boolean e = stack[--size];
+                                    boolean f = stack[size - 1];
+                                    stack[size - 1] = (function.a[ip] >> ((e ? 2 : 0) | (f ? 1 : 0)) & 1) != 0;
+                                }
+                                break;
+                                case PerlstoneProgram.BAD_TABLE:
+                                    // Shouldn't happen because of validation.
+                                    throw new PlcException("invalid table", "Invalid character in logic table.");
+
+                                case PerlstoneProgram.CALL:
+                                case PerlstoneProgram.TAIL_CALL: {
+                                    int n = function.a[ip];
+                                    int nArgs = function.b[ip];
+
+                                    if (nArgs < 0)
+                                        throw new PlcException("bad arg count", "Attempted to call a function with a " +
+                                                "negative argument count.");
+                                    if (n < 0 || n >= program.functions.length)
                                         throw new PlcException("func not found", "Attempted to call nonexistent function " +
                                                 "#" + n);
 
-                                    if (op == 'c') {
-                                        for (int i = nArgs - 1; i >= 0; i--) {
-                                            arg[i] = executionStack.pop();
+                                    if (ops[ip] == PerlstoneProgram.CALL) {
+                                        if (size < nArgs) {
+                                            size = 0;
+                                            throw emptyStack();
                                         }
-                                        Boolean v = executeFunction(n, pt, tt, funs, a, b, c, arg, opc, rec + 1);
-                                        if (v != null) {
-                                            executionStack.push(v);
+                                        size -= nArgs;
+                                        System.arraycopy(stack, size, program.stacks[rec + 1], 0, nArgs);
+                                        int v = executeFunction(n, pt, program, a, b, c, nArgs, rec + 1);
+                                        if (v != RESULT_NONE) {
+                                            stack[size++] = v == RESULT_TRUE;
                                         }
                                         break;
                                     } else {
+                                        // Tail calls don't take their arguments from the stack.
                                         fno = n;
-                                        args = arg;
+                                        Arrays.fill(stack, 0, nArgs, false);
+                                        size = nArgs;
                                         tailcalls++;
                                         continue outer;
                                     }
+                                }
 
-                                case '[':
-                                    if (!executionStack.pop()) {
-                                        ip = jt[ip];
+                                case PerlstoneProgram.JUMP_IF_FALSE:
+                                    if (size == 0) throw emptyStack();
+                                    if (!stack[--size]) {
+                                        ip = function.a[ip] + 1;
+                                        continue;
                                     }
                                     break;
-                                case ']':
-                                    if (executionStack.pop()) {
-                                        ip = jt[ip];
+                                case PerlstoneProgram.JUMP_IF_TRUE:
+                                    if (size == 0) throw emptyStack();
+                                    if (stack[--size]) {
+                                        ip = function.a[ip] + 1;
+                                        continue;
                                     }
                                     break;
 
-                                case 's':
-                                    return null;
-                                case 'r':
-                                    return executionStack.pop();
+                                case PerlstoneProgram.RETURN_NONE:
+                                    return RESULT_NONE;
+                                case PerlstoneProgram.RETURN_POP:
+                                    if (size == 0) throw emptyStack();
+                                    return stack[--size] ? RESULT_TRUE : RESULT_FALSE;
+
+                                case PerlstoneProgram.TRUNCATED:
+                                    throw new PlcException("unexpected end", "Reached the end of the function while " +
+                                            "reading an opcode.");
+
+                                default:
+                                    break;
                             }
-                            ip++;
+                            ip = function.next[ip];
                         }
-                    } catch (EmptyStackException e) {
-                        throw new PlcException("empty stack", "Popped while stack was empty.");
                     } catch (StackOverflowError e) {
                         throw new PlcException("stack overflow", "Java stack overflow.");
                     }
                 } catch (PlcException e) {
                     throw new PlcException(e.getMessage(), errmsg(e.detailedMessage, fno, op, li, pt, tt, lt, pshift,
-                            tshift, lshift, executionStack,
+                            tshift, lshift, stack, size,
                             tailcalls));
                 }
-                return null;
+                return RESULT_NONE;
             }
     }
 
     private String dumpStateText(boolean[] state) {
 
-        char[] c = new char[state.length];
-        for (int i = 0; i < state.length; i++) {
-            c[i] = state[i] ? '1' : '0';
-        }
-        return new String(c);
+        return dumpStateText(state, state.length);
     }
 
-    private String dumpStateText(Boolean[] state) {
+    private String dumpStateText(boolean[] state, int length) {
 
-        char[] c = new char[state.length];
-        for (int i = 0; i < state.length; i++) {
+        char[] c = new char[length];
+        for (int i = 0; i < length; i++) {
             c[i] = state[i] ? '1' : '0';
         }
         return new String(c);
@@ -0,0 +1,118 @@
+package com.sk89q.craftbook.mechanics.ic.plc.lang;
+
+/**
+ * A compiled Perlstone program.
+ *
+ * Every function is decoded ahead of time into one instruction per code position, with operands parsed and bracket
+ * jumps resolved, so executing it needs no parsing or allocation.
+ */
+final class PerlstoneProgram {
+
+    static final byte NOP = 0;
+    static final byte PUSH_TRUE = 1;
+    static final byte PUSH_FALSE = 2;
+    static final byte PUSH_INPUT = 3;
+    static final byte SHIFT_ADD = 4;
+    static final byte SHIFT_RESET = 5;
+    static final byte STORE = 6;
+    static final byte LOAD = 7;
+    static final byte DUP = 8;
+    static final byte POP = 9;
+    static final byte PEEK = 10;
+    static final byte SWAP = 11;
+    static final byte NOT = 12;
+    static final byte XOR = 13;
+    static final byte AND = 14;
+    static final byte OR = 15;
+    static final byte EQUALS = 16;
+    static final byte TABLE = 17;
+    static final byte BAD_TABLE = 18;
+    static final byte CALL = 19;
+    static final byte TAIL_CALL = 20;
+    static final byte JUMP_IF_FALSE = 21;
+    static final byte JUMP_IF_TRUE = 22;
+    static final byte RETURN_NONE = 23;
+    static final byte RETURN_POP = 24;
+    static final byte TRUNCATED = 25;
+
+    static final int TABLE_PERSISTENT = 0;
+    static final int TABLE_TEMP = 1;
+    static final int TABLE_LOCAL = 2;
+    static final int TABLE_NONE = 3;
+
+    /**
+     * Flag on the table of a store or load, set if the table shift applies to the address.
+     */
+    static final int SHIFTED = 4;
+
+    final Function[] functions;
+
+    /**
+     * The largest stack any function can build before the stack size check fails.
+     */
+    final int stackCapacity;
+
+    /**
+     * Reusable execution state, one stack and local table per call depth.
+     */
+    final boolean[] tempTable = new boolean[32];
+    final boolean[][] stacks;
+    final boolean[][] localTables;
+    int instructionCount;
+    boolean executing;
+
+    PerlstoneProgram(Function[] functions, int stackCapacity, int maxDepth) {
+
+        this.functions = functions;
+        this.stackCapacity = stackCapacity;
+        this.stacks = new boolean[maxDepth][stackCapacity];
+        this.localTables = new boolean[maxDepth][32];
+    }
+
+    /**
+     * Creates a copy of this program with its own execution state.
+     *
+     * @return The copy
+     */
+    PerlstoneProgram copy() {
+
+        return new PerlstoneProgram(functions, stackCapacity, stacks.length);
+    }
+
+    static final class Function {
+
+        /**
+         * The source of this function, used for error messages.
+         */
+        final char[] code;
+        final LineInfo[] lineInfo;
+
+        /**
+         * The instruction starting at each code position, its operands and the position of the next instruction.
+         */
+        final byte[] ops;
+        final int[] a;
+        final int[] b;
+        final int[] next;
+
+        /**
+         * The most arguments passed by any call in this function.
+         */
+        int maxArgs;
+
+        /**
+         * Whether a closing brace has no opening brace, in which case the function can't run.
+         */
+        boolean unbalanced;
+
+        Function(char[] code, LineInfo[] lineInfo) {
+
+            this.code = code;
+            this.lineInfo = lineInfo;
+            ops = new byte[code.length];
+            a = new int[code.length];
+            b = new int[code.length];
+            next = new int[code.length];
+        }
+    }
+}
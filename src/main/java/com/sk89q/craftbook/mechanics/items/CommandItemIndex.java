@@ -0,0 +1,245 @@
+package com.sk89q.craftbook.mechanics.items;
+
+import com.sk89q.craftbook.util.ItemFilter;
+import com.sk89q.craftbook.util.ItemUtil;
+import org.bukkit.Material;
+import org.bukkit.event.Event;
+import org.bukkit.event.block.BlockBreakEvent;
+import org.bukkit.event.block.BlockPlaceEvent;
+import org.bukkit.event.entity.EntityDamageByEntityEvent;
+import org.bukkit.event.entity.EntityPickupItemEvent;
+import org.bukkit.event.entity.PlayerDeathEvent;
+import org.bukkit.event.entity.ProjectileHitEvent;
+import org.bukkit.event.entity.ProjectileLaunchEvent;
+import org.bukkit.event.inventory.InventoryClickEvent;
+import org.bukkit.event.player.AsyncPlayerChatEvent;
+import org.bukkit.event.player.PlayerDropItemEvent;
+import org.bukkit.event.player.PlayerInteractEntityEvent;
+import org.bukkit.event.player.PlayerInteractEvent;
+import org.bukkit.event.player.PlayerItemBreakEvent;
+import org.bukkit.event.player.PlayerItemConsumeEvent;
+import org.bukkit.inventory.ItemStack;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An index of {@link CommandItemDefinition}s by the material of their item and the events their {@link ClickType} can
+ * run on, so that an event with an item that isn't a command item costs a single lookup.
+ *
+ * The items of the definitions are compiled into {@link ItemFilter}s, which compare metadata by a cheap fingerprint
+ * first. Definitions keep the order they were given in. An index is immutable, so it can be used from the chat thread.
+ */
+final class CommandItemIndex {
+
+    private static final CommandItemDefinition[] NONE = new CommandItemDefinition[0];
+
+    private final Map<Material, Entry[][]> entries = new EnumMap<>(Material.class);
+    private final Map<Material, CommandItemDefinition[]> definitions = new EnumMap<>(Material.class);
+
+    /**
+     * Definitions with invalid items, which only match invalid items.
+     */
+    private final CommandItemDefinition[] invalid;
+
+    CommandItemIndex(Collection<CommandItemDefinition> definitions) {
+
+        Map<Material, List<CommandItemDefinition>> byMaterial = new EnumMap<>(Material.class);
+        List<CommandItemDefinition> invalid = new ArrayList<>();
+        for (CommandItemDefinition definition : definitions) {
+            if (ItemUtil.isStackValid(definition.getItem()))
+                byMaterial.computeIfAbsent(definition.getItem().getType(), material -> new ArrayList<>()).add(definition);
+            else
+                invalid.add(definition);
+        }
+        this.invalid = invalid.toArray(NONE);
+
+        EventType[] eventTypes = EventType.values();
+        for (Map.Entry<Material, List<CommandItemDefinition>> material : byMaterial.entrySet()) {
+            this.definitions.put(material.getKey(), material.getValue().toArray(NONE));
+
+            List<Entry> all = new ArrayList<>();
+            for (CommandItemDefinition definition : material.getValue())
+                all.add(new Entry(definition));
+
+            Entry[][] byEventType = new Entry[eventTypes.length][];
+            for (EventType eventType : eventTypes) {
+                List<Entry> matching = new ArrayList<>();
+                for (Entry entry : all)
+                    if (canRunOn(entry.definition.clickType, eventType))
+                        matching.add(entry);
+                if (!matching.isEmpty())
+                    byEventType[eventType.ordinal()] = matching.toArray(new Entry[0]);
+            }
+            entries.put(material.getKey(), byEventType);
+        }
+    }
+
+    /**
+     * Gets the definitions whose item is identical to the given item, and whose click type could run on the given event.
+     * The click type still has to be checked against the event itself.
+     *
+     * @param item The item
+     * @param event The event, or null for the passive check
+     * @return The definitions
+     */
+    List<CommandItemDefinition> getMatching(ItemStack item, Event event) {
+
+        if (!ItemUtil.isStackValid(item)) {
+            return invalid.length == 0 ? Collections.emptyList() : Arrays.asList(invalid);
+        }
+
+        Entry[][] byEventType = entries.get(item.getType());
+        if (byEventType == null) {
+            return Collections.emptyList();
+        }
+        Entry[] candidates = byEventType[EventType.of(event).ordinal()];
+        if (candidates == null) {
+            return Collections.emptyList();
+        }
+
+        List<CommandItemDefinition> matching = new ArrayList<>(candidates.length);
+        for (Entry entry : candidates)
+            if (entry.filter.passes(item))
+                matching.add(entry.definition);
+        return matching;
+    }
+
+    /**
+     * Gets the definitions that could match an item, which are those with an item of the same material.
+     *
+     * @param item The item
+     * @return The definitions
+     */
+    CommandItemDefinition[] getDefinitions(ItemStack item) {
+
+        if (!ItemUtil.isStackValid(item)) {
+            return invalid;
+        }
+        CommandItemDefinition[] matching = definitions.get(item.getType());
+        return matching == null ? NONE : matching;
+    }
+
+    /**
+     * Checks whether a click type could ever pass for an event of the given type, following
+     * {@link ClickType#doesPassType(Event)}.
+     */
+    private static boolean canRunOn(ClickType clickType, EventType eventType) {
+
+        switch (clickType) {
+            case ANY:
+                return true;
+            case PASSIVE:
+                return eventType == EventType.PASSIVE;
+            case BLOCK_BREAK:
+                return eventType == EventType.BLOCK_BREAK;
+            case BLOCK_PLACE:
+                return eventType == EventType.BLOCK_PLACE;
+            case BLOCK_EITHER:
+                return eventType == EventType.BLOCK_BREAK || eventType == EventType.BLOCK_PLACE;
+            case BLOCK_PROJECTILE_AIR:
+            case BLOCK_PROJECTILE_BLOCK:
+            case BLOCK_PROJECTILE_EITHER:
+                return eventType == EventType.PROJECTILE_HIT;
+            case CLICK_LEFT:
+            case CLICK_RIGHT:
+            case CLICK_EITHER:
+            case CLICK_LEFT_BLOCK:
+            case CLICK_RIGHT_BLOCK:
+            case CLICK_EITHER_BLOCK:
+            case CLICK_LEFT_AIR:
+            case CLICK_RIGHT_AIR:
+            case CLICK_EITHER_AIR:
+                return eventType == EventType.INTERACT;
+            case ENTITY_ARROW:
+            case ENTITY_PROJECTILE:
+            case ENTITY_LEFT:
+                return eventType == EventType.DAMAGE_ENTITY;
+            case ENTITY_RIGHT:
+                return eventType == EventType.INTERACT_ENTITY;
+            case ENTITY_EITHER:
+                return eventType == EventType.INTERACT_ENTITY || eventType == EventType.DAMAGE_ENTITY;
+            case PROJECTILE_LAUNCH:
+                return eventType == EventType.PROJECTILE_LAUNCH;
+            case ITEM_CONSUME:
+                return eventType == EventType.ITEM_CONSUME;
+            case ITEM_DROP:
+                return eventType == EventType.ITEM_DROP;
+            case ITEM_BREAK:
+                return eventType == EventType.ITEM_BREAK;
+            case ITEM_PICKUP:
+                return eventType == EventType.ITEM_PICKUP;
+            case ITEM_CLICK_LEFT:
+            case ITEM_CLICK_RIGHT:
+            case ITEM_CLICK_EITHER:
+                return eventType == EventType.INVENTORY_CLICK;
+            case PLAYER_CHAT:
+                return eventType == EventType.PLAYER_CHAT;
+            case PLAYER_DEATH:
+                return eventType == EventType.PLAYER_DEATH;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * The kinds of event that command items can run on.
+     */
+    enum EventType {
+
+        PASSIVE, INTERACT, INTERACT_ENTITY, DAMAGE_ENTITY, BLOCK_BREAK, BLOCK_PLACE, PROJECTILE_HIT, PROJECTILE_LAUNCH,
+        ITEM_CONSUME, ITEM_DROP, ITEM_BREAK, ITEM_PICKUP, INVENTORY_CLICK, PLAYER_CHAT, PLAYER_DEATH, OTHER;
+
+        static EventType of(Event event) {
+
+            if (event == null)
+                return PASSIVE;
+            else if (event instanceof PlayerInteractEvent)
+                return INTERACT;
+            else if (event instanceof PlayerInteractEntityEvent)
+                return INTERACT_ENTITY;
+            else if (event instanceof EntityDamageByEntityEvent)
+                return DAMAGE_ENTITY;
+            else if (event instanceof BlockBreakEvent)
+                return BLOCK_BREAK;
+            else if (event instanceof BlockPlaceEvent)
+                return BLOCK_PLACE;
+            else if (event instanceof ProjectileHitEvent)
+                return PROJECTILE_HIT;
+            else if (event instanceof ProjectileLaunchEvent)
+                return PROJECTILE_LAUNCH;
+            else if (event instanceof PlayerItemConsumeEvent)
+                return ITEM_CONSUME;
+            else if (event instanceof PlayerDropItemEvent)
+                return ITEM_DROP;
+            else if (event instanceof PlayerItemBreakEvent)
+                return ITEM_BREAK;
+            else if (event instanceof EntityPickupItemEvent)
+                return ITEM_PICKUP;
+            else if (event instanceof InventoryClickEvent)
+                return INVENTORY_CLICK;
+            else if (event instanceof AsyncPlayerChatEvent)
+                return PLAYER_CHAT;
+            else if (event instanceof PlayerDeathEvent)
+                return PLAYER_DEATH;
+            return OTHER;
+        }
+    }
+
+    private static final class Entry {
+
+        private final CommandItemDefinition definition;
+        private final ItemFilter filter;
+
+        private Entry(CommandItemDefinition definition) {
+
+            this.definition = definition;
+            this.filter = ItemFilter.compile(Collections.singleton(definition.getItem()), null);
+        }
+    }
+}
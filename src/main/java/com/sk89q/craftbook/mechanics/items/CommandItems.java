@@ -68,6 +68,7 @@ public class CommandItems extends AbstractCraftBookMechanic {
     private YAMLProcessor config;
 
     private Set<CommandItemDefinition> definitions;
+    private volatile CommandItemIndex index;
 
     private Map<Tuple2<String, String>, Integer> cooldownPeriods;
     private Map<UUID, List<ItemStack>> deathPersistItems = Maps.newHashMap();
@@ -95,6 +96,7 @@ public class CommandItems extends AbstractCraftBookMechanic {
         }
 
         definitions = null;
+        index = null;
         cooldownPeriods = null;
         config = null;
         INSTANCE = null;
@@ -124,13 +126,15 @@ public class CommandItems extends AbstractCraftBookMechanic {
         for(String key : config.getKeys("command-items")) {
 
             CommandItemDefinition comdef = CommandItemDefinition.load(config, "command-items." + key);
-            if(addDefinition(comdef)) {
+            if(definitions.add(comdef)) {
                 CraftBookPlugin.logDebugMessage("Added CommandItem: " + key, "command-items.initialize");
                 amount++;
             } else
                 CraftBookPlugin.logger().warning("Failed to add CommandItem: " + key);
         }
 
+        index = new CommandItemIndex(definitions);
+
         if(amount == 0) return false;
 
         config.save();
@@ -185,7 +189,10 @@ public class CommandItems extends AbstractCraftBookMechanic {
 
     public boolean addDefinition(CommandItemDefinition def) {
 
-        return definitions.add(def);
+        if(!definitions.add(def))
+            return false;
+        index = new CommandItemIndex(definitions);
+        return true;
     }
 
     public void save() {
@@ -339,8 +346,8 @@ public class CommandItems extends AbstractCraftBookMechanic {
         while(stackIt.hasNext()) {
             final ItemStack stack = stackIt.next();
             performCommandItems(stack, event.getEntity(), event);
-            for(CommandItemDefinition def : definitions) {
-                if(ItemUtil.areItemsIdentical(stack, def.getItem()) && def.keepOnDeath) {
+            for(CommandItemDefinition def : index.getDefinitions(stack)) {
+                if(def.keepOnDeath && ItemUtil.areItemsIdentical(stack, def.getItem())) {
                     List<ItemStack> items = deathPersistItems.get(event.getEntity().getUniqueId());
                     if (items == null) items = Lists.newArrayList();
                     items.add(stack);
@@ -390,9 +397,8 @@ public class CommandItems extends AbstractCraftBookMechanic {
 
         CraftBookPlayer lplayer = CraftBookPlugin.inst().wrapPlayer(player);
 
-        for(CommandItemDefinition def : definitions) {
+        for(CommandItemDefinition def : index.getMatching(item, event)) {
             current: {
-            if(ItemUtil.areItemsIdentical(def.stack, item)) {
                 final CommandItemDefinition comdef = def;
 
                 if(!comdef.clickType.doesPassType(event)) break current;
@@ -521,7 +527,6 @@ public class CommandItems extends AbstractCraftBookMechanic {
                         for(String command : comdef.delayedCommands)
                             doCommand(command, event, comdef, player);
                     }, comdef.delay);
-            }
         }
         }
     }
@@ -0,0 +1,178 @@
+package com.sk89q.craftbook.mechanics.pipe;
+
+import com.sk89q.craftbook.util.LongHashMap;
+import org.bukkit.World;
+import org.bukkit.block.Block;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Keeps track of how many items pipes move, both in total and for each network. A network is identified by the sticky
+ * piston that pulses it.
+ */
+public class PipeMetrics {
+
+    private final Map<UUID, LongHashMap<NetworkMetrics>> networks = new HashMap<>();
+
+    private long pulses;
+    private long itemsPulled;
+    private long itemsMoved;
+    private long outputs;
+    private long nanos;
+
+    /**
+     * Records a single pulse of a network.
+     *
+     * @param source The sticky piston that started the pulse
+     * @param pulled The amount of items that entered the network
+     * @param moved The amount of items that left the network through an output
+     * @param outputs The amount of outputs that were offered items
+     * @param nanos How long the pulse took
+     */
+    void record(Block source, int pulled, int moved, int outputs, long nanos) {
+
+        LongHashMap<NetworkMetrics> world = networks.computeIfAbsent(source.getWorld().getUID(), uuid -> new LongHashMap<>());
+        long key = PipeNetworkCache.toKey(source);
+        NetworkMetrics network = world.get(key);
+        if (network == null) {
+            network = new NetworkMetrics(source.getWorld().getName(), source.getX(), source.getY(), source.getZ());
+            world.put(key, network);
+        }
+
+        network.pulses++;
+        network.itemsPulled += pulled;
+        network.itemsMoved += moved;
+        network.outputs += outputs;
+        network.nanos += nanos;
+
+        this.pulses++;
+        this.itemsPulled += pulled;
+        this.itemsMoved += moved;
+        this.outputs += outputs;
+        this.nanos += nanos;
+    }
+
+    void forget(World world) {
+
+        networks.remove(world.getUID());
+    }
+
+    void clear() {
+
+        networks.clear();
+        pulses = 0;
+        itemsPulled = 0;
+        itemsMoved = 0;
+        outputs = 0;
+        nanos = 0;
+    }
+
+    public long getPulses() {
+
+        return pulses;
+    }
+
+    public long getItemsPulled() {
+
+        return itemsPulled;
+    }
+
+    public long getItemsMoved() {
+
+        return itemsMoved;
+    }
+
+    public long getOutputs() {
+
+        return outputs;
+    }
+
+    public long getNanos() {
+
+        return nanos;
+    }
+
+    /**
+     * Gets the metrics of every network that has pulsed since the worlds were loaded.
+     *
+     * @return The networks
+     */
+    public List<NetworkMetrics> getNetworks() {
+
+        List<NetworkMetrics> result = new ArrayList<>();
+        for (LongHashMap<NetworkMetrics> world : networks.values())
+            result.addAll(world.values());
+        return result;
+    }
+
+    public static final class NetworkMetrics {
+
+        private final String world;
+        private final int x;
+        private final int y;
+        private final int z;
+
+        private long pulses;
+        private long itemsPulled;
+        private long itemsMoved;
+        private long outputs;
+        private long nanos;
+
+        private NetworkMetrics(String world, int x, int y, int z) {
+
+            this.world = world;
+            this.x = x;
+            this.y = y;
+            this.z = z;
+        }
+
+        public String getWorld() {
+
+            return world;
+        }
+
+        public int getX() {
+
+            return x;
+        }
+
+        public int getY() {
+
+            return y;
+        }
+
+        public int getZ() {
+
+            return z;
+        }
+
+        public long getPulses() {
+
+            return pulses;
+        }
+
+        public long getItemsPulled() {
+
+            return itemsPulled;
+        }
+
+        public long getItemsMoved() {
+
+            return itemsMoved;
+        }
+
+        public long getOutputs() {
+
+            return outputs;
+        }
+
+        public long getNanos() {
+
+            return nanos;
+        }
+    }
+}
@@ -0,0 +1,385 @@
+package com.sk89q.craftbook.mechanics.pipe;
+
+import com.sk89q.craftbook.ChangedSign;
+import com.sk89q.craftbook.util.ItemFilter;
+import com.sk89q.craftbook.util.ItemSyntax;
+import com.sk89q.craftbook.util.ItemUtil;
+import com.sk89q.craftbook.util.LongHashMap;
+import com.sk89q.craftbook.util.RegexUtil;
+import com.sk89q.worldedit.bukkit.BukkitAdapter;
+import com.sk89q.worldedit.world.block.BlockStateHolder;
+import org.bukkit.Chunk;
+import org.bukkit.Material;
+import org.bukkit.World;
+import org.bukkit.block.Block;
+import org.bukkit.block.BlockFace;
+import org.bukkit.block.data.BlockData;
+import org.bukkit.block.data.Directional;
+import org.bukkit.inventory.ItemStack;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Caches the layout of pipe networks, so that pipes don't need to look at every block around every pipe each time
+ * they run.
+ *
+ * Each pipe block is stored as a {@link PipeNode}, holding its compiled sign filters and the neighbours it connects to.
+ * Nodes are built the first time a pipe reaches them, and are forgotten when a block within two blocks of them changes,
+ * as that is as far as a node looks, or when their chunk unloads.
+ *
+ * Blocks can also be changed without an event, such as by WorldEdit or by CraftBook's own mechanics. A node is
+ * therefore rebuilt whenever its own block or one of its neighbours no longer has the type it was built with, a piston
+ * faces another way, or a block that insulates diagonal edges is placed or removed.
+ */
+class PipeNetworkCache {
+
+    /**
+     * The neighbour is a pipe block, but items don't travel into it.
+     */
+    static final byte EDGE_VISIT = 0;
+
+    /**
+     * The neighbour is glass, which is searched after the current queue.
+     */
+    static final byte EDGE_GLASS = 1;
+
+    /**
+     * The neighbour is a piston, which is searched before the current queue.
+     */
+    static final byte EDGE_PISTON = 2;
+
+    /**
+     * The neighbour is a pane, and items travel through it into the block behind.
+     */
+    static final byte EDGE_PANE = 3;
+
+    /**
+     * The furthest a node looks away from its own block.
+     */
+    private static final int REACH = 2;
+
+    /**
+     * The blocks next to a node that can insulate its diagonal edges.
+     */
+    private static final BlockFace[] INSULATING_FACES = {
+            BlockFace.WEST, BlockFace.EAST, BlockFace.DOWN, BlockFace.UP, BlockFace.NORTH, BlockFace.SOUTH
+    };
+
+    private final Map<UUID, LongHashMap<LongHashMap<PipeNode>>> nodes = new HashMap<>();
+
+    private final boolean diagonal;
+    private final BlockStateHolder<?> insulator;
+    private final Material insulatorType;
+
+    PipeNetworkCache(boolean diagonal, BlockStateHolder<?> insulator) {
+
+        this.diagonal = diagonal;
+        this.insulator = insulator;
+        this.insulatorType = insulator == null ? null : BukkitAdapter.adapt(insulator.getBlockType());
+    }
+
+    static long toKey(Block block) {
+
+        return LongHashMap.toLong(block.getX(), block.getY(), block.getZ());
+    }
+
+    private static long toChunkKey(int x, int z) {
+
+        return LongHashMap.toLong(x >> 4, z >> 4);
+    }
+
+    /**
+     * Gets the node of a block, building it if it isn't cached or the block has changed type.
+     *
+     * @param block The block
+     * @return The node
+     */
+    PipeNode getNode(Block block) {
+
+        LongHashMap<LongHashMap<PipeNode>> world = nodes.get(block.getWorld().getUID());
+        if (world == null) {
+            world = new LongHashMap<>();
+            nodes.put(block.getWorld().getUID(), world);
+        }
+        long chunkKey = toChunkKey(block.getX(), block.getZ());
+        LongHashMap<PipeNode> chunk = world.get(chunkKey);
+        if (chunk == null) {
+            chunk = new LongHashMap<>();
+            world.put(chunkKey, chunk);
+        }
+        long key = toKey(block);
+
+        PipeNode node = chunk.get(key);
+        if (node == null || !node.isCurrent(block)) {
+            node = new PipeNode(block);
+            chunk.put(key, node);
+        }
+        return node;
+    }
+
+    /**
+     * Forgets every node that could be affected by a change to the given block.
+     *
+     * @param block The changed block
+     */
+    void invalidate(Block block) {
+
+        LongHashMap<LongHashMap<PipeNode>> world = nodes.get(block.getWorld().getUID());
+        if (world == null || world.isEmpty()) return;
+
+        for (int x = -REACH; x <= REACH; x++) {
+            for (int z = -REACH; z <= REACH; z++) {
+                LongHashMap<PipeNode> chunk = world.get(toChunkKey(block.getX() + x, block.getZ() + z));
+                if (chunk == null) continue;
+                for (int y = -REACH; y <= REACH; y++)
+                    chunk.remove(LongHashMap.toLong(block.getX() + x, block.getY() + y, block.getZ() + z));
+            }
+        }
+    }
+
+    void invalidate(Chunk chunk) {
+
+        LongHashMap<LongHashMap<PipeNode>> world = nodes.get(chunk.getWorld().getUID());
+        if (world != null)
+            world.remove(LongHashMap.toLong(chunk.getX(), chunk.getZ()));
+    }
+
+    void invalidate(World world) {
+
+        nodes.remove(world.getUID());
+    }
+
+    void clear() {
+
+        nodes.clear();
+    }
+
+    int size() {
+
+        int size = 0;
+        for (LongHashMap<LongHashMap<PipeNode>> world : nodes.values())
+            for (LongHashMap<PipeNode> chunk : world.values())
+                size += chunk.size();
+        return size;
+    }
+
+    private boolean isInsulator(Block block) {
+
+        return insulator.equalsFuzzy(BukkitAdapter.adapt(block.getBlockData()));
+    }
+
+    private static HashSet<ItemStack> parseFilters(String line) {
+
+        HashSet<ItemStack> filters = new HashSet<>();
+        for (String filter : RegexUtil.COMMA_PATTERN.split(line)) {
+            filters.add(ItemSyntax.getItem(filter.trim()));
+        }
+        filters.removeAll(Collections.<ItemStack>singleton(null));
+        return filters;
+    }
+
+    final class PipeNode {
+
+        final Material type;
+
+        /**
+         * Whether the block is still part of a pipe, which it may not be if it changed without an event.
+         */
+        final boolean valid;
+
+        /**
+         * Whether the block is a piston or dropper with a [Pipe] sign, and the compiled filters and exceptions of that sign.
+         */
+        final boolean hasSign;
+        final ItemFilter filter;
+
+        /**
+         * The block a piston faces, or null if this isn't a piston.
+         */
+        final Block facing;
+        private final BlockFace facingFace;
+
+        /**
+         * With diagonal pipes, the types of the blocks in {@link #INSULATING_FACES} and whether they are insulators.
+         */
+        private final Material[] insulatingMaterials;
+        private final boolean[] insulated;
+
+        /**
+         * The neighbours, in the order they are searched.
+         */
+        final Block[] edgeBlocks;
+        final long[] edgeKeys;
+        final byte[] edgeTypes;
+        private final Material[] edgeMaterials;
+
+        /**
+         * For {@link #EDGE_PANE} edges, the block behind the pane.
+         */
+        final Block[] paneTargets;
+        final long[] paneTargetKeys;
+        private final Material[] paneTargetMaterials;
+
+        private PipeNode(Block block) {
+
+            type = block.getType();
+            valid = Pipes.isValidPipeBlock(block);
+
+            ChangedSign sign = null;
+            if (type == Material.PISTON || type == Material.STICKY_PISTON || type == Material.DROPPER)
+                sign = Pipes.getSignOnPiston(block);
+            hasSign = sign != null;
+            filter = sign == null ? ItemFilter.compile(null, null) : ItemFilter.compile(parseFilters(sign.getLine(2)), parseFilters(sign.getLine(3)));
+
+            BlockData data = block.getBlockData();
+            facingFace = type == Material.PISTON || type == Material.STICKY_PISTON ? ((Directional) data).getFacing() : null;
+            facing = facingFace == null ? null : block.getRelative(facingFace);
+
+            if (diagonal) {
+                insulatingMaterials = new Material[INSULATING_FACES.length];
+                insulated = new boolean[INSULATING_FACES.length];
+                for (int i = 0; i < INSULATING_FACES.length; i++) {
+                    Block side = block.getRelative(INSULATING_FACES[i]);
+                    insulatingMaterials[i] = side.getType();
+                    insulated[i] = insulatingMaterials[i] == insulatorType && isInsulator(side);
+                }
+            } else {
+                insulatingMaterials = null;
+                insulated = null;
+            }
+
+            List<Block> blocks = new ArrayList<>();
+            List<Byte> types = new ArrayList<>();
+            List<Block> targets = new ArrayList<>();
+
+            for (int x = -1; x < 2; x++) {
+                for (int y = -1; y < 2; y++) {
+                    for (int z = -1; z < 2; z++) {
+
+                        if (!diagonal) {
+                            if (x != 0 && y != 0) continue;
+                            if (x != 0 && z != 0) continue;
+                            if (y != 0 && z != 0) continue;
+                        } else {
+                            boolean xIsY = Math.abs(x) == Math.abs(y);
+                            boolean xIsZ = Math.abs(x) == Math.abs(z);
+                            if (xIsY && xIsZ) {
+                                if (isInsulated(x, 0, 0) && isInsulated(0, y, 0) && isInsulated(0, 0, z)) {
+                                    continue;
+                                }
+                            } else if (xIsY) {
+                                if (isInsulated(x, 0, 0) && isInsulated(0, y, 0)) {
+                                    continue;
+                                }
+                            } else if (xIsZ) {
+                                if (isInsulated(x, 0, 0) && isInsulated(0, 0, z)) {
+                                    continue;
+                                }
+                            } else {
+                                if (isInsulated(0, y, 0) && isInsulated(0, 0, z)) {
+                                    continue;
+                                }
+                            }
+                        }
+
+                        Block off = block.getRelative(x, y, z);
+
+                        if (!Pipes.isValidPipeBlock(off)) continue;
+
+                        byte edgeType = EDGE_VISIT;
+                        Block target = null;
+
+                        if (ItemUtil.isStainedGlass(type) && ItemUtil.isStainedGlass(off.getType()) && type != off.getType()) {
+                            edgeType = EDGE_VISIT;
+                        } else if (off.getType() == Material.GLASS || ItemUtil.isStainedGlass(off.getType())) {
+                            edgeType = EDGE_GLASS;
+                        } else if (off.getType() == Material.GLASS_PANE || ItemUtil.isStainedGlassPane(off.getType())) {
+                            Block offsetBlock = off.getRelative(x, y, z);
+                            if (Pipes.isValidPipeBlock(offsetBlock) && (!ItemUtil.isStainedGlassPane(off.getType()) || !((ItemUtil.isStainedGlass(type)
+                                    || ItemUtil.isStainedGlassPane(type)) && ItemUtil.getStainedColor(off.getType()) != ItemUtil
+                                    .getStainedColor(offsetBlock.getType())
+                                    || (ItemUtil.isStainedGlass(offsetBlock.getType())
+                                    || ItemUtil.isStainedGlassPane(offsetBlock.getType())) && ItemUtil.getStainedColor(off.getType()) != ItemUtil
+                                    .getStainedColor(offsetBlock.getType())))) {
+                                edgeType = EDGE_PANE;
+                                target = offsetBlock;
+                            }
+                        } else if (off.getType() == Material.PISTON) {
+                            edgeType = EDGE_PISTON;
+                        }
+
+                        blocks.add(off);
+                        types.add(edgeType);
+                        targets.add(target);
+                    }
+                }
+            }
+
+            edgeBlocks = blocks.toArray(new Block[blocks.size()]);
+            edgeKeys = new long[edgeBlocks.length];
+            edgeTypes = new byte[edgeBlocks.length];
+            edgeMaterials = new Material[edgeBlocks.length];
+            paneTargets = targets.toArray(new Block[targets.size()]);
+            paneTargetKeys = new long[edgeBlocks.length];
+            paneTargetMaterials = new Material[edgeBlocks.length];
+            for (int i = 0; i < edgeBlocks.length; i++) {
+                edgeKeys[i] = toKey(edgeBlocks[i]);
+                edgeTypes[i] = types.get(i);
+                edgeMaterials[i] = edgeBlocks[i].getType();
+                if (paneTargets[i] != null) {
+                    paneTargetKeys[i] = toKey(paneTargets[i]);
+                    paneTargetMaterials[i] = paneTargets[i].getType();
+                }
+            }
+        }
+
+        /**
+         * Checks whether the block next to this node at the given offset is an insulator. The offset must point at one
+         * of the {@link #INSULATING_FACES}.
+         */
+        private boolean isInsulated(int x, int y, int z) {
+
+            if (x != 0) return insulated[x < 0 ? 0 : 1];
+            if (y != 0) return insulated[y < 0 ? 2 : 3];
+            return insulated[z < 0 ? 4 : 5];
+        }
+
+        /**
+         * Checks whether the block and its neighbours still have the types this node was built with, the piston still
+         * faces the same way, and the blocks that insulate diagonal edges haven't changed.
+         *
+         * @param block The block of this node
+         * @return If the node is up to date
+         */
+        private boolean isCurrent(Block block) {
+
+            if (block.getType() != type)
+                return false;
+            if (facingFace != null && ((Directional) block.getBlockData()).getFacing() != facingFace)
+                return false;
+            if (insulated != null) {
+                for (int i = 0; i < INSULATING_FACES.length; i++) {
+                    Block side = block.getRelative(INSULATING_FACES[i]);
+                    Material sideType = side.getType();
+                    if (sideType != insulatingMaterials[i])
+                        return false;
+                    if (sideType == insulatorType && isInsulator(side) != insulated[i])
+                        return false;
+                }
+            }
+            for (int i = 0; i < edgeBlocks.length; i++) {
+                if (edgeBlocks[i].getType() != edgeMaterials[i])
+                    return false;
+                if (paneTargets[i] != null && paneTargets[i].getType() != paneTargetMaterials[i])
+                    return false;
+            }
+            return true;
+        }
+    }
+}
@@ -9,16 +9,15 @@ import com.sk89q.craftbook.util.BlockSyntax;
 import com.sk89q.craftbook.util.BlockUtil;
 import com.sk89q.craftbook.util.EventUtil;
 import com.sk89q.craftbook.util.InventoryUtil;
-import com.sk89q.craftbook.util.ItemSyntax;
+import com.sk89q.craftbook.util.ItemFilter;
 import com.sk89q.craftbook.util.ItemUtil;
 import com.sk89q.craftbook.util.LocationUtil;
+import com.sk89q.craftbook.util.LongHashMap;
 import com.sk89q.craftbook.util.ProtectionUtil;
-import com.sk89q.craftbook.util.RegexUtil;
 import com.sk89q.craftbook.util.SignUtil;
 import com.sk89q.craftbook.util.VerifyUtil;
 import com.sk89q.craftbook.util.events.SourcedBlockRedstoneEvent;
 import com.sk89q.util.yaml.YAMLProcessor;
-import com.sk89q.worldedit.bukkit.BukkitAdapter;
 import com.sk89q.worldedit.world.block.BlockStateHolder;
 import com.sk89q.worldedit.world.block.BlockTypes;
 import org.bukkit.Bukkit;
@@ -34,19 +33,25 @@ import org.bukkit.block.data.Directional;
 import org.bukkit.block.data.type.Piston;
 import org.bukkit.event.EventHandler;
 import org.bukkit.event.EventPriority;
+import org.bukkit.event.block.BlockBreakEvent;
+import org.bukkit.event.block.BlockBurnEvent;
+import org.bukkit.event.block.BlockExplodeEvent;
+import org.bukkit.event.block.BlockPistonExtendEvent;
+import org.bukkit.event.block.BlockPistonRetractEvent;
+import org.bukkit.event.block.BlockPlaceEvent;
 import org.bukkit.event.block.SignChangeEvent;
+import org.bukkit.event.entity.EntityExplodeEvent;
+import org.bukkit.event.world.ChunkUnloadEvent;
+import org.bukkit.event.world.WorldUnloadEvent;
+import org.bukkit.inventory.Inventory;
 import org.bukkit.inventory.InventoryHolder;
 import org.bukkit.inventory.ItemStack;
-import org.bukkit.util.Vector;
 
 import java.util.ArrayDeque;
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.Deque;
-import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
-import java.util.Set;
 
 public class Pipes extends AbstractCraftBookMechanic {
 
@@ -104,7 +109,7 @@ public class Pipes extends AbstractCraftBookMechanic {
         return block.getType() == Material.PISTON || block.getType() == Material.STICKY_PISTON;
     }
 
-    private static ChangedSign getSignOnPiston(Block block) {
+    static ChangedSign getSignOnPiston(Block block) {
         BlockData blockData = block.getBlockData();
         BlockFace facing = BlockFace.SELF;
         if(blockData instanceof Directional) {
@@ -128,46 +133,33 @@ public class Pipes extends AbstractCraftBookMechanic {
         return null;
     }
 
-    private void searchNearbyPipes(Block block, Set<Vector> visitedPipes, List<ItemStack> items) {
+    private int searchNearbyPipes(Block block, LongHashMap<Boolean> visitedPipes, List<ItemStack> items) {
+        int outputs = 0;
         Deque<Block> searchQueue = new ArrayDeque<>();
         searchQueue.addFirst(block);
 
         //Use the queue to search blocks.
         while (!searchQueue.isEmpty()) {
             Block bl = searchQueue.poll();
-            if (bl.getType() == Material.PISTON) {
-                Piston p = (Piston) bl.getBlockData();
-
-                ChangedSign sign = getSignOnPiston(bl);
-
-                HashSet<ItemStack> pFilters = new HashSet<>();
-                HashSet<ItemStack> pExceptions = new HashSet<>();
-
-                if(sign != null) {
-                    for(String line3 : RegexUtil.COMMA_PATTERN.split(sign.getLine(2))) {
-                        pFilters.add(ItemSyntax.getItem(line3.trim()));
-                    }
-                    for(String line4 : RegexUtil.COMMA_PATTERN.split(sign.getLine(3))) {
-                        pExceptions.add(ItemSyntax.getItem(line4.trim()));
-                    }
-
-                    pFilters.removeAll(Collections.<ItemStack>singleton(null));
-                    pExceptions.removeAll(Collections.<ItemStack>singleton(null));
-                }
-
-                List<ItemStack> filteredItems = new ArrayList<>(VerifyUtil.withoutNulls(ItemUtil.filterItems(items, pFilters, pExceptions)));
+            PipeNetworkCache.PipeNode node = networkCache.getNode(bl);
+            if (!node.valid) continue; // Changed without an event since it was queued.
+            if (node.type == Material.PISTON) {
+                List<ItemStack> filteredItems = takeFiltered(items, node.filter);
 
                 if(filteredItems.isEmpty())
                     continue;
 
                 List<ItemStack> newItems = new ArrayList<>();
 
-                Block fac = bl.getRelative(p.getFacing());
+                Block fac = node.facing;
 
                 PipePutEvent event = new PipePutEvent(bl, new ArrayList<>(filteredItems), fac);
                 Bukkit.getPluginManager().callEvent(event);
+                outputs++;
 
-                if (!event.isCancelled()) {
+                if (event.isCancelled()) {
+                    items.addAll(filteredItems);
+                } else {
                     if (InventoryUtil.doesBlockHaveInventory(fac)) {
                         InventoryHolder holder = (InventoryHolder) fac.getState();
                         newItems.addAll(InventoryUtil.addItemsToInventory(holder, event.getItems().toArray(new ItemStack[event.getItems().size()])));
@@ -190,32 +182,16 @@ public class Pipes extends AbstractCraftBookMechanic {
                         newItems.addAll(event.getItems());
                     }
 
-                    items.removeAll(filteredItems);
                     items.addAll(newItems);
                 }
-            } else if (bl.getType() == Material.DROPPER) {
-                ChangedSign sign = getSignOnPiston(bl);
-
-                HashSet<ItemStack> pFilters = new HashSet<>();
-                HashSet<ItemStack> pExceptions = new HashSet<>();
-
-                if(sign != null) {
-                    for(String line3 : RegexUtil.COMMA_PATTERN.split(sign.getLine(2))) {
-                        pFilters.add(ItemSyntax.getItem(line3.trim()));
-                    }
-                    for(String line4 : RegexUtil.COMMA_PATTERN.split(sign.getLine(3))) {
-                        pExceptions.add(ItemSyntax.getItem(line4.trim()));
-                    }
-
-                    pFilters.removeAll(Collections.<ItemStack>singleton(null));
-                    pExceptions.removeAll(Collections.<ItemStack>singleton(null));
-                }
-
-                List<ItemStack> filteredItems = new ArrayList<>(VerifyUtil.withoutNulls(ItemUtil.filterItems(items, pFilters, pExceptions)));
+            } else if (node.type == Material.DROPPER) {
+                List<ItemStack> filteredItems = takeFiltered(items, node.filter);
 
                 if(filteredItems.isEmpty())
                     continue;
 
+                outputs++;
+
                 Dropper dropper = (Dropper) bl.getState();
                 List<ItemStack> newItems =
                         new ArrayList<>(dropper.getInventory().addItem(filteredItems.toArray(new ItemStack[filteredItems.size()])).values());
@@ -225,85 +201,128 @@ public class Pipes extends AbstractCraftBookMechanic {
                         for(int i = 0; i < stack.getAmount(); i++)
                             dropper.drop();
 
-                items.removeAll(filteredItems);
                 items.addAll(newItems);
             }
 
             if (!items.isEmpty()) {
                 //Enumerate the search queue.
-                for (int x = -1; x < 2; x++) {
-                    for (int y = -1; y < 2; y++) {
-                        for (int z = -1; z < 2; z++) {
-
-                            if(items.isEmpty())
-                                return;
-
-                            if (!pipesDiagonal) {
-                                if (x != 0 && y != 0) continue;
-                                if (x != 0 && z != 0) continue;
-                                if (y != 0 && z != 0) continue;
-                            } else {
-                                boolean xIsY = Math.abs(x) == Math.abs(y);
-                                boolean xIsZ = Math.abs(x) == Math.abs(z);
-                                if (xIsY && xIsZ) {
-                                    if (pipeInsulator.equalsFuzzy(BukkitAdapter.adapt(bl.getRelative(x, 0, 0).getBlockData()))
-                                            && pipeInsulator.equalsFuzzy(BukkitAdapter.adapt(bl.getRelative(0, y, 0).getBlockData()))
-                                            && pipeInsulator.equalsFuzzy(BukkitAdapter.adapt(bl.getRelative(0, 0, z).getBlockData()))) {
-                                        continue;
-                                    }
-                                } else if (xIsY) {
-                                    if (pipeInsulator.equalsFuzzy(BukkitAdapter.adapt(bl.getRelative(x, 0, 0).getBlockData()))
-                                            && pipeInsulator.equalsFuzzy(BukkitAdapter.adapt(bl.getRelative(0, y, 0).getBlockData()))) {
-                                        continue;
-                                    }
-                                } else if (xIsZ) {
-                                    if (pipeInsulator.equalsFuzzy(BukkitAdapter.adapt(bl.getRelative(x, 0, 0).getBlockData()))
-                                            && pipeInsulator.equalsFuzzy(BukkitAdapter.adapt(bl.getRelative(0, 0, z).getBlockData()))) {
-                                        continue;
-                                    }
-                                } else {
-                                    if (pipeInsulator.equalsFuzzy(BukkitAdapter.adapt(bl.getRelative(0, y, 0).getBlockData()))
-                                            && pipeInsulator.equalsFuzzy(BukkitAdapter.adapt(bl.getRelative(0, 0, z).getBlockData()))) {
-                                        continue;
-                                    }
-                                }
-                            }
-
-                            Block off = bl.getRelative(x, y, z);
-
-                            if (!isValidPipeBlock(off)) continue;
-
-                            if (visitedPipes.contains(off.getLocation().toVector())) continue;
-                            visitedPipes.add(off.getLocation().toVector());
-
-                            if(ItemUtil.isStainedGlass(bl.getType()) && ItemUtil.isStainedGlass(off.getType()) && bl.getType() != off.getType()) continue;
-
-                            if(off.getType() == Material.GLASS || ItemUtil.isStainedGlass(off.getType())) {
-                                searchQueue.add(off);
-                            } else if (off.getType() == Material.GLASS_PANE || ItemUtil.isStainedGlassPane(off.getType())) {
-                                Block offsetBlock = off.getRelative(x, y, z);
-                                if (!isValidPipeBlock(offsetBlock)) continue;
-                                if (visitedPipes.contains(offsetBlock.getLocation().toVector())) continue;
-                                if(ItemUtil.isStainedGlassPane(off.getType())) {
-                                    if((ItemUtil.isStainedGlass(bl.getType())
-                                            || ItemUtil.isStainedGlassPane(bl.getType())) && ItemUtil.getStainedColor(off.getType()) != ItemUtil
-                                            .getStainedColor(offsetBlock.getType())
-                                            || (ItemUtil.isStainedGlass(offsetBlock.getType())
-                                            || ItemUtil.isStainedGlassPane(offsetBlock.getType())) && ItemUtil.getStainedColor(off.getType()) != ItemUtil
-                                            .getStainedColor(offsetBlock.getType())) continue;
-                                }
-                                visitedPipes.add(offsetBlock.getLocation().toVector());
-                                searchQueue.add(off.getRelative(x, y, z));
-                            } else if(off.getType() == Material.PISTON)
-                                searchQueue.addFirst(off); //Pistons are treated with higher priority.
-                        }
+                for (int i = 0; i < node.edgeBlocks.length; i++) {
+                    Block off = node.edgeBlocks[i];
+
+                    if (visitedPipes.containsKey(node.edgeKeys[i])) continue;
+                    visitedPipes.put(node.edgeKeys[i], Boolean.TRUE);
+
+                    switch (node.edgeTypes[i]) {
+                        case PipeNetworkCache.EDGE_GLASS:
+                            searchQueue.add(off);
+                            break;
+                        case PipeNetworkCache.EDGE_PANE:
+                            if (visitedPipes.containsKey(node.paneTargetKeys[i])) continue;
+                            visitedPipes.put(node.paneTargetKeys[i], Boolean.TRUE);
+                            searchQueue.add(node.paneTargets[i]);
+                            break;
+                        case PipeNetworkCache.EDGE_PISTON:
+                            searchQueue.addFirst(off); //Pistons are treated with higher priority.
+                            break;
+                        default:
+                            break;
                     }
                 }
             }
         }
+
+        return outputs;
+    }
+
+    /**
+     * Removes the items that pass the given filter from the list, in a single pass.
+     *
+     * @param items The items, which are left with the items that didn't pass
+     * @param filter The filter
+     * @return The items that passed
+     */
+    private static List<ItemStack> takeFiltered(List<ItemStack> items, ItemFilter filter) {
+
+        List<ItemStack> passed = new ArrayList<>(items.size());
+        if (filter.isEmpty()) {
+            for (ItemStack item : items)
+                if (item != null)
+                    passed.add(item);
+            items.clear();
+            return passed;
+        }
+
+        Iterator<ItemStack> iter = items.iterator();
+        while (iter.hasNext()) {
+            ItemStack item = iter.next();
+            if (item == null) {
+                iter.remove();
+            } else if (filter.passes(item)) {
+                passed.add(item);
+                iter.remove();
+            }
+        }
+        return passed;
+    }
+
+    /**
+     * Merges similar stacks together, up to their max stack size, so that outputs are offered fewer and fuller stacks.
+     * The merged stacks are copies, so stacks handed over by a request are left untouched.
+     *
+     * @param items The items to merge
+     * @return The amount of items
+     */
+    private static int mergeStacks(List<ItemStack> items) {
+
+        List<ItemStack> merged = new ArrayList<>(items.size());
+        int total = 0;
+
+        for (ItemStack item : items) {
+            if (!ItemUtil.isStackValid(item))
+                continue;
+
+            total += item.getAmount();
+            int amount = item.getAmount();
+            for (int i = 0; i < merged.size() && amount > 0; i++) {
+                ItemStack stack = merged.get(i);
+                int space = stack.getMaxStackSize() - stack.getAmount();
+                if (space <= 0 || !stack.isSimilar(item))
+                    continue;
+                int moved = Math.min(space, amount);
+                stack.setAmount(stack.getAmount() + moved);
+                amount -= moved;
+            }
+
+            if (amount > 0) {
+                ItemStack stack = item.clone();
+                stack.setAmount(amount);
+                merged.add(stack);
+            }
+        }
+
+        items.clear();
+        items.addAll(merged);
+        return total;
+    }
+
+    /**
+     * Sends a batch of items through the network, merging them first and recording how many made it to an output.
+     */
+    private void transferItems(Block block, LongHashMap<Boolean> visitedPipes, List<ItemStack> items) {
+
+        long start = System.nanoTime();
+        int pulled = mergeStacks(items);
+        int outputs = searchNearbyPipes(block, visitedPipes, items);
+
+        int left = 0;
+        for (ItemStack item : items)
+            if (ItemUtil.isStackValid(item))
+                left += item.getAmount();
+
+        metrics.record(block, pulled, Math.max(0, pulled - left), outputs, System.nanoTime() - start);
     }
 
-    private static boolean isValidPipeBlock(Block block) {
+    static boolean isValidPipeBlock(Block block) {
         switch (block.getType()) {
             case GLASS:
             case PISTON:
@@ -320,31 +339,16 @@ public class Pipes extends AbstractCraftBookMechanic {
 
     private void startPipe(Block block, List<ItemStack> items, boolean request) {
 
-        Set<ItemStack> filters = new HashSet<>();
-        Set<ItemStack> exceptions = new HashSet<>();
-
-        ChangedSign sign = getSignOnPiston(block);
-
-        if(sign != null) {
-            for(String line3 : RegexUtil.COMMA_PATTERN.split(sign.getLine(2))) {
-                filters.add(ItemSyntax.getItem(line3.trim()));
-            }
-            for(String line4 : RegexUtil.COMMA_PATTERN.split(sign.getLine(3))) {
-                exceptions.add(ItemSyntax.getItem(line4.trim()));
-            }
-        }
-
-        filters.removeAll(Collections.<ItemStack>singleton(null));
-        exceptions.removeAll(Collections.<ItemStack>singleton(null));
+        PipeNetworkCache.PipeNode node = networkCache.getNode(block);
+        ItemFilter filter = node.filter;
 
-        Set<Vector> visitedPipes = new HashSet<>();
+        LongHashMap<Boolean> visitedPipes = new LongHashMap<>();
 
         if (block.getType() == Material.STICKY_PISTON) {
 
             List<ItemStack> leftovers = new ArrayList<>();
 
-            Piston p = (Piston) block.getBlockData();
-            Block fac = block.getRelative(p.getFacing());
+            Block fac = node.facing;
 
             if (fac.getType() == Material.CHEST
                     || fac.getType() == Material.TRAPPED_CHEST
@@ -353,16 +357,19 @@ public class Pipes extends AbstractCraftBookMechanic {
                     || fac.getType() == Material.HOPPER
                     || fac.getType() == Material.BARREL
                     || Tag.SHULKER_BOXES.isTagged(fac.getType())) {
-                for (ItemStack stack : ((InventoryHolder) fac.getState()).getInventory().getContents()) {
+                Inventory inventory = ((InventoryHolder) fac.getState()).getInventory();
+                ItemStack[] contents = inventory.getContents();
+                for (int slot = 0; slot < contents.length; slot++) {
+                    ItemStack stack = contents[slot];
 
                     if (!ItemUtil.isStackValid(stack))
                         continue;
 
-                    if(!ItemUtil.doesItemPassFilters(stack, filters, exceptions))
+                    if(!filter.passes(stack))
                         continue;
 
-                    items.add(stack);
-                    ((InventoryHolder) fac.getState()).getInventory().removeItem(stack);
+                    items.add(stack.clone());
+                    inventory.clear(slot);
                     if (pipeStackPerPull)
                         break;
                 }
@@ -372,20 +379,20 @@ public class Pipes extends AbstractCraftBookMechanic {
                 items.clear();
                 items.addAll(event.getItems());
                 if(!event.isCancelled()) {
-                    visitedPipes.add(fac.getLocation().toVector());
-                    searchNearbyPipes(block, visitedPipes, items);
+                    visitedPipes.put(PipeNetworkCache.toKey(fac), Boolean.TRUE);
+                    transferItems(block, visitedPipes, items);
                 }
 
                 if (!items.isEmpty()) {
-                    for (ItemStack item : items) {
-                        if (item == null) continue;
-                        leftovers.addAll(((InventoryHolder) fac.getState()).getInventory().addItem(item).values());
-                    }
+                    List<ItemStack> returned = new ArrayList<>(items);
+                    VerifyUtil.withoutNulls(returned);
+                    if (!returned.isEmpty())
+                        leftovers.addAll(inventory.addItem(returned.toArray(new ItemStack[returned.size()])).values());
                 }
             } else if (fac.getType() == Material.FURNACE || fac.getType() == Material.BLAST_FURNACE || fac.getType() == Material.SMOKER) {
 
                 Furnace f = (Furnace) fac.getState();
-                if(!ItemUtil.doesItemPassFilters(f.getInventory().getResult(), filters, exceptions))
+                if(!filter.passes(f.getInventory().getResult()))
                     return;
                 items.add(f.getInventory().getResult());
                 if (f.getInventory().getResult() != null) f.getInventory().setResult(null);
@@ -395,8 +402,8 @@ public class Pipes extends AbstractCraftBookMechanic {
                 items.clear();
                 items.addAll(event.getItems());
                 if(!event.isCancelled()) {
-                    visitedPipes.add(fac.getLocation().toVector());
-                    searchNearbyPipes(block, visitedPipes, items);
+                    visitedPipes.put(PipeNetworkCache.toKey(fac), Boolean.TRUE);
+                    transferItems(block, visitedPipes, items);
                 }
 
                 if (!items.isEmpty()) {
@@ -421,8 +428,8 @@ public class Pipes extends AbstractCraftBookMechanic {
                     items.addAll(event.getItems());
 
                     if (!event.isCancelled()) {
-                        visitedPipes.add(fac.getLocation().toVector());
-                        searchNearbyPipes(block, visitedPipes, items);
+                        visitedPipes.put(PipeNetworkCache.toKey(fac), Boolean.TRUE);
+                        transferItems(block, visitedPipes, items);
                     }
 
                     if (!items.isEmpty()) {
@@ -441,8 +448,8 @@ public class Pipes extends AbstractCraftBookMechanic {
                 items.clear();
                 items.addAll(event.getItems());
                 if(!event.isCancelled() && !items.isEmpty()) {
-                    visitedPipes.add(fac.getLocation().toVector());
-                    searchNearbyPipes(block, visitedPipes, items);
+                    visitedPipes.put(PipeNetworkCache.toKey(fac), Boolean.TRUE);
+                    transferItems(block, visitedPipes, items);
                 }
                 leftovers.addAll(items);
             }
@@ -467,9 +474,7 @@ public class Pipes extends AbstractCraftBookMechanic {
 
         if (event.getBlock().getType() == Material.STICKY_PISTON) {
 
-            ChangedSign sign = getSignOnPiston(event.getBlock());
-
-            if (pipeRequireSign && sign == null)
+            if (pipeRequireSign && !networkCache.getNode(event.getBlock()).hasSign)
                 return;
 
             if(!EventUtil.passesFilter(event)) return;
@@ -483,9 +488,7 @@ public class Pipes extends AbstractCraftBookMechanic {
 
         if (event.getBlock().getType() == Material.STICKY_PISTON) {
 
-            ChangedSign sign = getSignOnPiston(event.getBlock());
-
-            if (pipeRequireSign && sign == null)
+            if (pipeRequireSign && !networkCache.getNode(event.getBlock()).hasSign)
                 return;
 
             if(!EventUtil.passesFilter(event)) return;
@@ -494,11 +497,102 @@ public class Pipes extends AbstractCraftBookMechanic {
         }
     }
 
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onNetworkSignChange(SignChangeEvent event) {
+
+        networkCache.invalidate(event.getBlock());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onNetworkBlockPlace(BlockPlaceEvent event) {
+
+        networkCache.invalidate(event.getBlock());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onNetworkBlockBreak(BlockBreakEvent event) {
+
+        networkCache.invalidate(event.getBlock());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onNetworkBlockBurn(BlockBurnEvent event) {
+
+        networkCache.invalidate(event.getBlock());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onNetworkPistonExtend(BlockPistonExtendEvent event) {
+
+        networkCache.invalidate(event.getBlock());
+        for (Block block : event.getBlocks()) {
+            networkCache.invalidate(block);
+            networkCache.invalidate(block.getRelative(event.getDirection()));
+        }
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onNetworkPistonRetract(BlockPistonRetractEvent event) {
+
+        networkCache.invalidate(event.getBlock());
+        for (Block block : event.getBlocks()) {
+            networkCache.invalidate(block);
+            networkCache.invalidate(block.getRelative(event.getDirection()));
+        }
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onNetworkEntityExplode(EntityExplodeEvent event) {
+
+        for (Block block : event.blockList())
+            networkCache.invalidate(block);
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onNetworkBlockExplode(BlockExplodeEvent event) {
+
+        for (Block block : event.blockList())
+            networkCache.invalidate(block);
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onNetworkChunkUnload(ChunkUnloadEvent event) {
+
+        networkCache.invalidate(event.getChunk());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onNetworkWorldUnload(WorldUnloadEvent event) {
+
+        networkCache.invalidate(event.getWorld());
+        metrics.forget(event.getWorld());
+    }
+
     private boolean pipesDiagonal;
     private BlockStateHolder<?> pipeInsulator;
     private boolean pipeStackPerPull;
     private boolean pipeRequireSign;
 
+    private PipeNetworkCache networkCache;
+    private final PipeMetrics metrics = new PipeMetrics();
+
+    /**
+     * Gets the throughput metrics of the pipe networks.
+     *
+     * @return The metrics
+     */
+    public PipeMetrics getMetrics() {
+
+        return metrics;
+    }
+
+    @Override
+    public void disable() {
+
+        networkCache.clear();
+        metrics.clear();
+    }
+
     @Override
     public void loadConfiguration (YAMLProcessor config, String path) {
 
@@ -513,5 +607,7 @@ public class Pipes extends AbstractCraftBookMechanic {
 
         config.setComment(path + "require-sign", "Requires pipes to have a [Pipe] sign connected to them. This is the only way to require permissions to make pipes.");
         pipeRequireSign = config.getBoolean(path + "require-sign", false);
+
+        networkCache = new PipeNetworkCache(pipesDiagonal, pipeInsulator);
     }
 }
\ No newline at end of file
@@ -0,0 +1,266 @@
+package com.sk89q.craftbook.mechanics.variables;
+
+import com.sk89q.squirrelid.Profile;
+import com.sk89q.squirrelid.resolver.ProfileService;
+import com.sk89q.util.yaml.YAMLProcessor;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Resolves player names to UUIDs without blocking the caller.
+ *
+ * Names are queued by {@link #request(String, Consumer)}, and looked up in batches by {@link #resolvePending()}, which
+ * is meant to run off the main thread. Results are kept in a cache, including names that have no profile, so each name
+ * is only looked up once. Names without a profile are looked up again after {@link #MISSING_EXPIRY}.
+ */
+class ProfileResolver {
+
+    /**
+     * How long a name without a profile is remembered, in milliseconds.
+     */
+    static final long MISSING_EXPIRY = 24 * 60 * 60 * 1000L;
+
+    private static final String NONE = "none";
+
+    private final ProfileService service;
+    private final Executor callbackExecutor;
+    private final YAMLProcessor cacheFile;
+    private final Logger logger;
+
+    /**
+     * The results by lower case name. Names without a profile map to an entry with a null UUID.
+     */
+    private final Map<String, Result> results = new ConcurrentHashMap<>();
+
+    /**
+     * The names waiting for a lookup and the callbacks waiting on them by key, guarded by itself.
+     */
+    private final Map<String, Map<Object, Consumer<UUID>>> pending = new LinkedHashMap<>();
+
+    /**
+     * Creates a resolver.
+     *
+     * @param service The service to look the names up with
+     * @param callbackExecutor The executor that callbacks are run on
+     * @param cacheFile The file to keep results in, or null to only keep them in memory
+     * @param logger The logger
+     */
+    ProfileResolver(ProfileService service, Executor callbackExecutor, YAMLProcessor cacheFile, Logger logger) {
+
+        this.service = service;
+        this.callbackExecutor = callbackExecutor;
+        this.cacheFile = cacheFile;
+        this.logger = logger;
+    }
+
+    /**
+     * Loads the cached results from the cache file.
+     */
+    void load() {
+
+        if(cacheFile == null)
+            return;
+
+        try {
+            cacheFile.load();
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Failed to load the profile cache", e);
+            return;
+        }
+
+        List<String> names = cacheFile.getKeys("profiles");
+        if(names == null)
+            return;
+
+        long now = System.currentTimeMillis();
+        for(String name : names) {
+            String uuid = cacheFile.getString("profiles." + name + ".uuid", NONE);
+            long checked = (long) cacheFile.getDouble("profiles." + name + ".checked", 0);
+            try {
+                if(NONE.equals(uuid)) {
+                    if(now - checked < MISSING_EXPIRY)
+                        results.put(name, new Result(null, checked));
+                } else {
+                    results.put(name, new Result(UUID.fromString(uuid), checked));
+                }
+            } catch(IllegalArgumentException e) {
+                logger.warning("Skipping invalid cached profile for " + name);
+            }
+        }
+    }
+
+    /**
+     * Writes the cached results to the cache file.
+     */
+    synchronized void save() {
+
+        if(cacheFile == null)
+            return;
+
+        long now = System.currentTimeMillis();
+        cacheFile.clear();
+        for(Map.Entry<String, Result> entry : results.entrySet()) {
+            Result result = entry.getValue();
+            if(result.uuid == null && now - result.checked >= MISSING_EXPIRY)
+                continue;
+            cacheFile.setProperty("profiles." + entry.getKey() + ".uuid", result.uuid == null ? NONE : result.uuid.toString());
+            cacheFile.setProperty("profiles." + entry.getKey() + ".checked", result.checked);
+        }
+        cacheFile.save();
+    }
+
+    /**
+     * Checks whether the result for a name is known.
+     *
+     * @param name The name
+     * @return If the name has been looked up
+     */
+    boolean isResolved(String name) {
+
+        Result result = results.get(name.toLowerCase(Locale.ENGLISH));
+        return result != null && (result.uuid != null || System.currentTimeMillis() - result.checked < MISSING_EXPIRY);
+    }
+
+    /**
+     * Gets the cached UUID of a name.
+     *
+     * @param name The name
+     * @return The UUID, or null if the name has no profile or hasn't been looked up yet
+     */
+    UUID getCached(String name) {
+
+        Result result = results.get(name.toLowerCase(Locale.ENGLISH));
+        return result == null ? null : result.uuid;
+    }
+
+    /**
+     * Queues a name to be looked up. If the result is already known, the callback is run straight away on the calling
+     * thread, otherwise it is run on the callback executor once the name has been looked up.
+     *
+     * @param name The name
+     * @param callback The callback, given the UUID or null if the name has no profile. Can be null
+     */
+    void request(String name, Consumer<UUID> callback) {
+
+        request(name, new Object(), callback);
+    }
+
+    /**
+     * Queues a name to be looked up, like {@link #request(String, Consumer)}. While the name is pending, only the first
+     * callback requested with each key is kept, so that repeated requests for the same thing don't pile up.
+     *
+     * @param name The name
+     * @param key The key of the callback
+     * @param callback The callback, given the UUID or null if the name has no profile. Can be null
+     */
+    void request(String name, Object key, Consumer<UUID> callback) {
+
+        if(isResolved(name)) {
+            if(callback != null)
+                callback.accept(getCached(name));
+            return;
+        }
+
+        synchronized (pending) {
+            Map<Object, Consumer<UUID>> callbacks = pending.computeIfAbsent(name.toLowerCase(Locale.ENGLISH), lower -> new LinkedHashMap<>());
+            if(callback != null)
+                callbacks.putIfAbsent(key, callback);
+        }
+    }
+
+    /**
+     * Gets the amount of names waiting for a lookup.
+     *
+     * @return The amount of names
+     */
+    int getPendingCount() {
+
+        synchronized (pending) {
+            return pending.size();
+        }
+    }
+
+    /**
+     * Looks up a batch of pending names, and hands the results to their callbacks. This blocks on the profile service,
+     * so it should not be run on the main thread. Names that fail to resolve due to an error stay pending.
+     *
+     * @return If any names were looked up
+     */
+    boolean resolvePending() {
+
+        Map<String, Map<Object, Consumer<UUID>>> batch = new LinkedHashMap<>();
+        synchronized (pending) {
+            Iterator<Map.Entry<String, Map<Object, Consumer<UUID>>>> iter = pending.entrySet().iterator();
+            while(iter.hasNext() && batch.size() < Math.max(1, service.getIdealRequestLimit())) {
+                Map.Entry<String, Map<Object, Consumer<UUID>>> entry = iter.next();
+                batch.put(entry.getKey(), entry.getValue());
+                iter.remove();
+            }
+        }
+
+        if(batch.isEmpty())
+            return false;
+
+        List<Profile> profiles;
+        try {
+            profiles = service.findAllByName(batch.keySet());
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Failed to look up " + batch.size() + " profile(s), retrying later", e);
+            requeue(batch);
+            return false;
+        } catch (InterruptedException e) {
+            requeue(batch);
+            Thread.currentThread().interrupt();
+            return false;
+        }
+
+        long now = System.currentTimeMillis();
+        Map<String, UUID> found = new HashMap<>();
+        for(Profile profile : profiles)
+            found.put(profile.getName().toLowerCase(Locale.ENGLISH), profile.getUniqueId());
+
+        for(Map.Entry<String, Map<Object, Consumer<UUID>>> entry : batch.entrySet()) {
+            UUID uuid = found.get(entry.getKey());
+            results.put(entry.getKey(), new Result(uuid, now));
+            for(Consumer<UUID> callback : entry.getValue().values())
+                callbackExecutor.execute(() -> callback.accept(uuid));
+        }
+
+        return true;
+    }
+
+    private void requeue(Map<String, Map<Object, Consumer<UUID>>> batch) {
+
+        synchronized (pending) {
+            for(Map.Entry<String, Map<Object, Consumer<UUID>>> entry : batch.entrySet()) {
+                Map<Object, Consumer<UUID>> callbacks = pending.computeIfAbsent(entry.getKey(), name -> new LinkedHashMap<>());
+                for(Map.Entry<Object, Consumer<UUID>> callback : entry.getValue().entrySet())
+                    callbacks.putIfAbsent(callback.getKey(), callback.getValue());
+            }
+        }
+    }
+
+    private static final class Result {
+
+        private final UUID uuid;
+        private final long checked;
+
+        private Result(UUID uuid, long checked) {
+
+            this.uuid = uuid;
+            this.checked = checked;
+        }
+    }
+}
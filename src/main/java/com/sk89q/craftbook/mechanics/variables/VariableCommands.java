@@ -3,7 +3,6 @@ package com.sk89q.craftbook.mechanics.variables;
 import com.sk89q.craftbook.bukkit.CraftBookPlugin;
 import com.sk89q.craftbook.mechanics.ic.ICManager;
 import com.sk89q.craftbook.util.RegexUtil;
-import com.sk89q.craftbook.util.Tuple2;
 import com.sk89q.craftbook.util.exceptions.FastCommandException;
 import com.sk89q.minecraft.util.commands.Command;
 import com.sk89q.minecraft.util.commands.CommandContext;
@@ -14,6 +13,7 @@ import org.bukkit.command.CommandSender;
 import org.bukkit.entity.Player;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map.Entry;
 
@@ -137,17 +137,15 @@ public class VariableCommands {
 
         List<String> variablesLines = new ArrayList<>();
 
-        for (Entry<Tuple2<String, String>, String> entry : VariableManager.instance.getVariableStore().entrySet()) {
-            if (key != null && !entry.getKey().b.equals(key)) {
-                continue;
-            }
+        for (String namespace : key == null ? VariableManager.instance.getNamespaces() : Collections.singleton(key)) {
+            for (Entry<String, String> entry : VariableManager.instance.getVariables(namespace).entrySet()) {
+                String keyName = entry.getKey();
+                if (key == null) {
+                    keyName = namespace + '|' + keyName;
+                }
 
-            String keyName = entry.getKey().a;
-            if (key == null) {
-                keyName = entry.getKey().b + '|' + keyName;
+                variablesLines.add(ChatColor.YELLOW + keyName + ChatColor.WHITE + ": " + ChatColor.GREEN + entry.getValue());
             }
-
-            variablesLines.add(ChatColor.YELLOW + keyName + ChatColor.WHITE + ": " + ChatColor.GREEN + entry.getValue());
         }
 
         String[] lines = variablesLines.toArray(new String[variablesLines.size()]);
@@ -206,8 +204,7 @@ public class VariableCommands {
 
         if(ICManager.inst() != null) {//Make sure IC's are enabled.
 
-            ICManager.getCachedICs().entrySet()
-                    .removeIf(ic -> ic.getValue().getSign().hasVariable(namespace + '|' + variable) || ic.getValue().getSign().hasVariable(variable));
+            ICManager.removeCachedICs(ic -> ic.getSign().hasVariable(namespace + '|' + variable) || ic.getSign().hasVariable(variable));
         }
     }
 
@@ -3,27 +3,48 @@ package com.sk89q.craftbook.mechanics.variables;
 import com.sk89q.craftbook.bukkit.CraftBookPlugin;
 import com.sk89q.craftbook.bukkit.util.CraftBookBukkitUtil;
 import com.sk89q.craftbook.util.RegexUtil;
-import com.sk89q.craftbook.util.Tuple2;
-import com.sk89q.squirrelid.Profile;
-import com.sk89q.squirrelid.resolver.HttpRepositoryService;
-import com.sk89q.squirrelid.resolver.ProfileService;
+import com.sk89q.util.yaml.YAMLFormat;
 import com.sk89q.util.yaml.YAMLProcessor;
-import org.bukkit.Bukkit;
-import org.bukkit.OfflinePlayer;
 
+import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+import java.util.List;
 import java.util.Map.Entry;
-import java.util.UUID;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 
+/**
+ * Persists the variables. Every change is appended to a log file shortly after it is made, and the log is
+ * periodically compacted back into the variables.yml file, so that no variables are lost on a crash and the whole file
+ * is never rewritten on the main thread.
+ *
+ * The log is replayed over variables.yml when the variables are loaded.
+ */
 public class VariableConfiguration {
 
     public final YAMLProcessor config;
     protected final Logger logger;
 
-    public VariableConfiguration(YAMLProcessor config, Logger logger) {
+    private final VariableStore store;
+    private final File file;
+    private final File logFile;
+
+    private long lastCompaction = System.currentTimeMillis();
+
+    VariableConfiguration(YAMLProcessor config, File file, VariableStore store, File logFile, Logger logger) {
 
         this.config = config;
+        this.file = file;
+        this.store = store;
+        this.logFile = logFile;
         this.logger = logger;
     }
 
@@ -38,25 +59,20 @@ public class VariableConfiguration {
 
         boolean shouldSave = false;
 
-        if(config.getKeys("variables") == null) return;
-        for(String key : config.getKeys("variables")) {
+        List<String> variableKeys = config.getKeys("variables");
+        for(String key : variableKeys == null ? Collections.<String>emptyList() : variableKeys) {
 
             String[] keys = RegexUtil.PIPE_PATTERN.split(key, 2);
             if(keys.length == 1) {
                 keys = new String[]{"global", key};
             } else if (CraftBookPlugin.inst().getConfiguration().convertNamesToCBID) {
-                if(CraftBookPlugin.inst().getUUIDMappings().getUUID(keys[0]) != null) continue;
-                OfflinePlayer player = Bukkit.getOfflinePlayer(keys[0]);
-                if(player.hasPlayedBefore()) {
-                    try {
-                        ProfileService resolver = HttpRepositoryService.forMinecraft();
-                        Profile profile = resolver.findByName(player.getName()); // May be null
-
-                        UUID uuid = profile.getUniqueId();
-                        keys[0] = CraftBookPlugin.inst().getUUIDMappings().getCBID(uuid);
-                    } catch (Exception e) {
-                        e.printStackTrace();
-                    }
+                final String name = keys[0];
+                String cbid = VariableManager.instance.getConvertedNamespace(name, name, uuid -> {
+                    if(uuid != null && VariableManager.instance != null)
+                        VariableManager.instance.convertNamespace(name);
+                });
+                if(cbid != null) {
+                    keys[0] = cbid;
                     shouldSave = true;
                 }
             }
@@ -64,23 +80,151 @@ public class VariableConfiguration {
             String value = String.valueOf(config.getProperty("variables." + key));
 
             if(RegexUtil.VARIABLE_KEY_PATTERN.matcher(keys[1]).find() && RegexUtil.VARIABLE_VALUE_PATTERN.matcher(value).find()) {
-                VariableManager.instance.setVariable(keys[1], keys[0], value);
+                store.set(keys[1], keys[0], value);
             }
         }
 
+        if(replayLog())
+            shouldSave = true;
+
         if(shouldSave)
-            save();
+            compact();
     }
 
-    public void save() {
+    /**
+     * Applies the changes in the log file to the store. A record that was only partly written is cut off the end of the
+     * log, so that the next record isn't appended onto it.
+     *
+     * @return If the log held anything, in which case it should be compacted
+     */
+    private boolean replayLog() {
 
-        config.clear();
+        if(!logFile.exists())
+            return false;
 
-        for(Entry<Tuple2<String, String>, String> var : VariableManager.instance.getVariableStore().entrySet()) {
+        byte[] bytes;
+        try {
+            bytes = Files.readAllBytes(logFile.toPath());
+        } catch (IOException e) {
+            CraftBookBukkitUtil.printStacktrace(e);
+            return false;
+        }
+        if(bytes.length == 0)
+            return false;
+
+        int complete = bytes.length;
+        while(complete > 0 && bytes[complete - 1] != '\n')
+            complete--;
+        if(complete < bytes.length) {
+            logger.warning("Discarding a partly written record at the end of " + logFile.getName());
+            try(FileChannel channel = FileChannel.open(logFile.toPath(), StandardOpenOption.WRITE)) {
+                channel.truncate(complete);
+            } catch (IOException e) {
+                logger.log(Level.WARNING, "Failed to truncate " + logFile.getName(), e);
+            }
+        }
+
+        String log = new String(bytes, 0, complete, StandardCharsets.UTF_8);
+
+        int replayed = 0;
+        int start = 0;
+        int end;
+        while((end = log.indexOf('\n', start)) >= 0) {
+            String record = log.substring(start, end);
+            start = end + 1;
+            if(store.replay(record))
+                replayed++;
+            else
+                logger.warning("Skipping invalid variable log record: " + record);
+        }
+
+        if(replayed > 0)
+            logger.info("Recovered " + replayed + " variable change(s) from " + logFile.getName());
+        return true;
+    }
+
+    /**
+     * Appends the changes made since the last flush to the log file.
+     */
+    public synchronized void flushLog() {
+
+        List<String> records = store.drainRecords();
+        if(records.isEmpty())
+            return;
+
+        StringBuilder builder = new StringBuilder();
+        for(String record : records)
+            builder.append(record).append('\n');
+
+        try(FileOutputStream out = new FileOutputStream(logFile, true)) {
+            out.write(builder.toString().getBytes(StandardCharsets.UTF_8));
+            out.getFD().sync();
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Failed to write to " + logFile.getName(), e);
+        }
+    }
 
-            if(RegexUtil.VARIABLE_KEY_PATTERN.matcher(var.getKey().a).find() && RegexUtil.VARIABLE_VALUE_PATTERN.matcher(var.getValue()).find())
-                config.setProperty("variables." + var.getKey().b + '|' + var.getKey().a, var.getValue());
+    /**
+     * Gets how long ago the log was last compacted.
+     *
+     * @return The time in milliseconds
+     */
+    public long getLogAge() {
+
+        return System.currentTimeMillis() - lastCompaction;
+    }
+
+    /**
+     * Writes every variable to variables.yml, and then empties the log. Changes made while this runs are logged again
+     * on the next flush, which is safe as replaying a change twice gives the same result. The log is kept if
+     * variables.yml couldn't be written.
+     */
+    public synchronized void compact() {
+
+        flushLog();
+        if(!save())
+            return;
+        try(FileOutputStream ignored = new FileOutputStream(logFile, false)) {
+            lastCompaction = System.currentTimeMillis();
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Failed to truncate " + logFile.getName(), e);
+        }
+    }
+
+    /**
+     * Writes every variable to variables.yml. The variables are written to a temporary file first, which then replaces
+     * variables.yml, so that a failed or interrupted save never leaves a partly written file behind.
+     *
+     * @return If the variables were saved
+     */
+    public synchronized boolean save() {
+
+        File temp = new File(file.getParentFile(), file.getName() + ".tmp");
+        YAMLProcessor output = new YAMLProcessor(temp, false, YAMLFormat.EXTENDED);
+
+        for(String namespace : store.getNamespaces()) {
+            for(Entry<String, String> var : store.getVariables(namespace).entrySet()) {
+
+                if(RegexUtil.VARIABLE_KEY_PATTERN.matcher(var.getKey()).find() && RegexUtil.VARIABLE_VALUE_PATTERN.matcher(var.getValue()).find())
+                    output.setProperty("variables." + namespace + '|' + var.getKey(), var.getValue());
+            }
+        }
+
+        if(!output.save()) {
+            logger.warning("Failed to write " + temp.getName() + ", keeping " + logFile.getName());
+            return false;
+        }
+
+        try {
+            try {
+                Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Failed to replace " + file.getName() + ", keeping " + logFile.getName(), e);
+            return false;
         }
-        config.save();
+        return true;
     }
 }
\ No newline at end of file
@@ -4,24 +4,27 @@ import com.sk89q.craftbook.AbstractCraftBookMechanic;
 import com.sk89q.craftbook.ChangedSign;
 import com.sk89q.craftbook.bukkit.CraftBookPlugin;
 import com.sk89q.craftbook.bukkit.util.CraftBookBukkitUtil;
+import com.sk89q.craftbook.mechanics.ic.ICManager;
 import com.sk89q.craftbook.util.*;
 import com.sk89q.craftbook.util.events.SelfTriggerPingEvent;
-import com.sk89q.squirrelid.Profile;
 import com.sk89q.squirrelid.resolver.HttpRepositoryService;
-import com.sk89q.squirrelid.resolver.ProfileService;
 import com.sk89q.util.yaml.YAMLFormat;
 import com.sk89q.util.yaml.YAMLProcessor;
 import org.apache.commons.lang.StringUtils;
 import org.bukkit.Bukkit;
-import org.bukkit.OfflinePlayer;
+import org.bukkit.block.Block;
 import org.bukkit.event.EventHandler;
 import org.bukkit.event.player.AsyncPlayerChatEvent;
 import org.bukkit.event.player.PlayerCommandPreprocessEvent;
 import org.bukkit.event.server.ServerCommandEvent;
+import org.bukkit.scheduler.BukkitTask;
 
 import java.io.File;
-import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
+import java.util.function.Consumer;
+import java.util.regex.Pattern;
 
 public class VariableManager extends AbstractCraftBookMechanic {
 
@@ -29,29 +32,52 @@ public class VariableManager extends AbstractCraftBookMechanic {
 
     public static VariableManager instance;
 
-    /**
-     * Stores the variables used in VariableStore ((Variable, Namespace), Value).
-     */
-    private HashMap<Tuple2<String, String>, String> variableStore;
+    private VariableStore variableStore;
+
+    private BukkitTask persistenceTask;
+
+    private ProfileResolver profileResolver;
+
+    private static final Pattern PLAYER_NAME_PATTERN = Pattern.compile("[a-zA-Z0-9_]{1,16}");
 
     @Override
     public boolean enable() {
 
         instance = this;
-        variableStore = new HashMap<>();
+        variableStore = new VariableStore();
         CraftBookPlugin.logDebugMessage("Initializing Variables!", "startup.variables");
 
         try {
+            File profileFile = new File(CraftBookPlugin.inst().getDataFolder(), "profile-cache.yml");
+            if(!profileFile.exists())
+                profileFile.createNewFile();
+            profileResolver = new ProfileResolver(HttpRepositoryService.forMinecraft(),
+                    runnable -> Bukkit.getScheduler().runTask(CraftBookPlugin.inst(), runnable),
+                    new YAMLProcessor(profileFile, false, YAMLFormat.COMPACT), CraftBookPlugin.logger());
+            profileResolver.load();
+
             File varFile = new File(CraftBookPlugin.inst().getDataFolder(), "variables.yml");
             if(!varFile.exists())
                 varFile.createNewFile();
-            variableConfiguration = new VariableConfiguration(new YAMLProcessor(varFile, true, YAMLFormat.EXTENDED), CraftBookPlugin.logger());
+            variableConfiguration = new VariableConfiguration(new YAMLProcessor(varFile, true, YAMLFormat.EXTENDED), varFile, variableStore,
+                    new File(CraftBookPlugin.inst().getDataFolder(), "variables.log"), CraftBookPlugin.logger());
             variableConfiguration.load();
         } catch(Exception ignored){
             CraftBookBukkitUtil.printStacktrace(ignored);
             return false;
         }
 
+        variableStore.setLogging(true);
+        final VariableConfiguration configuration = variableConfiguration;
+        final ProfileResolver resolver = profileResolver;
+        persistenceTask = Bukkit.getScheduler().runTaskTimerAsynchronously(CraftBookPlugin.inst(), () -> {
+            if(resolver.resolvePending())
+                resolver.save();
+            configuration.flushLog();
+            if(configuration.getLogAge() >= compactInterval * 50L)
+                configuration.compact();
+        }, logFlushInterval, logFlushInterval);
+
         if(packetMessageOverride)
             new VariablePacketModifier();
 
@@ -61,35 +87,71 @@ public class VariableManager extends AbstractCraftBookMechanic {
     @Override
     public void disable() {
 
+        if(persistenceTask != null) {
+            persistenceTask.cancel();
+            persistenceTask = null;
+        }
         if(variableConfiguration != null) {
-            variableConfiguration.save();
+            variableConfiguration.compact();
             variableConfiguration = null;
         }
+        variableStore.setLogging(false);
         variableStore.clear();
         instance = null;
     }
 
     public boolean hasVariable(String variable, String namespace) {
 
-        return variableStore.containsKey(new Tuple2<>(variable, namespace));
+        return variableStore.has(variable, namespace);
     }
 
     public String getVariable(String variable, String namespace) {
 
-        return variableStore.get(new Tuple2<>(variable, namespace));
+        return variableStore.get(variable, namespace);
     }
 
     public String setVariable(String variable, String namespace, String value) {
 
-        return variableStore.put(new Tuple2<>(variable, namespace), value);
+        return variableStore.set(variable, namespace, value);
     }
 
     public String removeVariable(String variable, String namespace) {
 
-        return variableStore.remove(new Tuple2<>(variable, namespace));
+        return variableStore.remove(variable, namespace);
+    }
+
+    /**
+     * Checks whether there are no variables at all.
+     *
+     * @return If there are no variables
+     */
+    public boolean isEmpty() {
+
+        return variableStore.isEmpty();
+    }
+
+    /**
+     * Gets the namespaces that currently hold at least one variable.
+     *
+     * @return The namespaces
+     */
+    public Set<String> getNamespaces() {
+
+        return variableStore.getNamespaces();
+    }
+
+    /**
+     * Gets the variables of a namespace, as a read-only view of (Variable, Value).
+     *
+     * @param namespace The namespace
+     * @return The variables, which are empty if the namespace has none
+     */
+    public Map<String, String> getVariables(String namespace) {
+
+        return variableStore.getVariables(namespace);
     }
 
-    public HashMap<Tuple2<String, String>, String> getVariableStore() {
+    VariableStore getVariableStore() {
 
         return variableStore;
     }
@@ -153,42 +215,99 @@ public class VariableManager extends AbstractCraftBookMechanic {
     public void onSelfTriggerPing(SelfTriggerPingEvent event) {
 
         if(!CraftBookPlugin.inst().getConfiguration().convertNamesToCBID) return;
-        if(SignUtil.isSign(event.getBlock())) {
-
-            ChangedSign sign = CraftBookBukkitUtil.toChangedSign(event.getBlock());
-
-            int i = 0;
-
-            for(String line : sign.getLines()) {
-                for(String var : ParsingUtil.getPossibleVariables(line)) {
-                    String namespace = getNamespace(var);
-                    if(namespace == null || namespace.isEmpty() || namespace.equals("global")) continue;
-                    if(CraftBookPlugin.inst().getUUIDMappings().getUUID(namespace) != null) continue;
-                    OfflinePlayer player = Bukkit.getOfflinePlayer(namespace);
-                    if(player.hasPlayedBefore()) {
-                        try {
-                            ProfileService resolver = HttpRepositoryService.forMinecraft();
-                            Profile profile = resolver.findByName(player.getName()); // May be null
-
-                            UUID uuid = profile.getUniqueId();
-                            line = StringUtils.replace(line, var, var.replace(namespace, CraftBookPlugin.inst().getUUIDMappings().getCBID(uuid)));
-                        } catch (Exception e) {
-                            e.printStackTrace();
-                        }
-                    }
-                }
-                sign.setLine(i++, line);
+        if(SignUtil.isSign(event.getBlock()))
+            convertSign(event.getBlock());
+    }
+
+    /**
+     * Converts the player name namespaces of the variables on a sign to CBIDs. Names that haven't been looked up yet
+     * are queued, and the sign is converted again once they have been.
+     *
+     * @param block The sign block
+     */
+    private void convertSign(final Block block) {
+
+        ChangedSign sign = CraftBookBukkitUtil.toChangedSign(block);
+        boolean changed = false;
+
+        for(int i = 0; i < 4; i++) {
+            String line = sign.getRawLine(i);
+            for(String var : ParsingUtil.getPossibleVariables(line)) {
+                String namespace = getNamespace(var);
+                String cbid = getConvertedNamespace(namespace, block.getLocation(), uuid -> {
+                    if(uuid == null || instance != this) return;
+                    if(!block.getWorld().isChunkLoaded(block.getX() >> 4, block.getZ() >> 4) || !SignUtil.isSign(block)) return;
+                    convertSign(block);
+                });
+                if(cbid != null)
+                    line = StringUtils.replace(line, var, var.replace(namespace, cbid));
+            }
+            if(!line.equals(sign.getRawLine(i))) {
+                sign.setLine(i, line);
+                changed = true;
             }
+        }
 
+        if(changed) {
+            ICManager.invalidateIC(block.getLocation());
             sign.update(false);
         }
     }
 
+    /**
+     * Moves every variable in a player name namespace over to the player's CBID namespace, once the name has been
+     * looked up.
+     *
+     * @param namespace The player name namespace
+     */
+    void convertNamespace(final String namespace) {
+
+        String cbid = getConvertedNamespace(namespace, namespace, uuid -> {
+            if(uuid != null && instance == this)
+                convertNamespace(namespace);
+        });
+        if(cbid == null || cbid.equals(namespace))
+            return;
+
+        for(Map.Entry<String, String> var : getVariables(namespace).entrySet()) {
+            setVariable(var.getKey(), cbid, var.getValue());
+            removeVariable(var.getKey(), namespace);
+        }
+    }
+
+    /**
+     * Gets the CBID a player name namespace should be converted to. If the name hasn't been looked up yet, it is queued
+     * instead of blocking on the lookup.
+     *
+     * @param namespace The namespace
+     * @param key The key of the callback. Only one callback per key is queued for each name
+     * @param callback Run on the main thread with the UUID once the name has been looked up, if it is queued
+     * @return The CBID, or null if the namespace isn't a known player name
+     */
+    String getConvertedNamespace(String namespace, Object key, Consumer<UUID> callback) {
+
+        if(namespace == null || namespace.isEmpty() || namespace.equals("global")) return null;
+        if(!PLAYER_NAME_PATTERN.matcher(namespace).matches()) return null;
+        if(CraftBookPlugin.inst().getUUIDMappings().getUUID(namespace) != null) return null;
+
+        if(!profileResolver.isResolved(namespace)) {
+            profileResolver.request(namespace, key, callback);
+            return null;
+        }
+
+        UUID uuid = profileResolver.getCached(namespace);
+        if(uuid == null || !Bukkit.getOfflinePlayer(uuid).hasPlayedBefore())
+            return null;
+        return CraftBookPlugin.inst().getUUIDMappings().getCBID(uuid);
+    }
+
     boolean defaultToGlobal;
     private boolean consoleOverride;
     private boolean playerCommandOverride;
     private boolean playerChatOverride;
     private boolean packetMessageOverride;
+    private long logFlushInterval;
+    private long compactInterval;
 
     @Override
     public void loadConfiguration (YAMLProcessor config, String path) {
@@ -207,6 +326,12 @@ public class VariableManager extends AbstractCraftBookMechanic {
 
         config.setComment(path + "override-all-text", "Modify outgoing packets to replace variables in all text. (Requires ProtocolLib)");
         packetMessageOverride = config.getBoolean(path + "override-all-text", false);
+
+        config.setComment(path + "log-flush-interval", "The interval (in ticks) between writing variable changes to variables.log. Changes since the last write are lost on a crash.");
+        logFlushInterval = Math.max(1, config.getInt(path + "log-flush-interval", 40));
+
+        config.setComment(path + "compact-interval", "The interval (in ticks) between folding variables.log back into variables.yml.");
+        compactInterval = Math.max(logFlushInterval, config.getInt(path + "compact-interval", 6000));
     }
 
     @Override
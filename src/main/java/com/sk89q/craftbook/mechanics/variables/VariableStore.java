@@ -0,0 +1,206 @@
+package com.sk89q.craftbook.mechanics.variables;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Stores the variables used in VariableStore (Namespace, (Variable, Value)).
+ *
+ * This is read from the async chat thread, so both levels are concurrent maps, and namespaces are only ever added or
+ * removed atomically through {@link ConcurrentHashMap#compute}.
+ *
+ * While logging is enabled, every change is also queued as a log record, which {@link VariableConfiguration} appends
+ * to the variable log in the background. Records are queued while the namespace is locked, so the records of a
+ * namespace are always in the order the changes were made.
+ */
+class VariableStore {
+
+    private static final char SET = 'S';
+    private static final char REMOVE = 'R';
+    private static final char SEPARATOR = '\t';
+
+    private final ConcurrentHashMap<String, ConcurrentHashMap<String, String>> variables = new ConcurrentHashMap<>();
+    private final ConcurrentLinkedQueue<String> pendingRecords = new ConcurrentLinkedQueue<>();
+
+    private volatile boolean logging;
+
+    boolean has(String variable, String namespace) {
+
+        Map<String, String> vars = variables.get(namespace);
+        return vars != null && vars.containsKey(variable);
+    }
+
+    String get(String variable, String namespace) {
+
+        Map<String, String> vars = variables.get(namespace);
+        return vars == null ? null : vars.get(variable);
+    }
+
+    String set(String variable, String namespace, String value) {
+
+        String[] old = new String[1];
+        variables.compute(namespace, (key, vars) -> {
+            if(vars == null)
+                vars = new ConcurrentHashMap<>();
+            old[0] = vars.put(variable, value);
+            if(logging)
+                pendingRecords.add(encode(SET, namespace, variable, value));
+            return vars;
+        });
+        return old[0];
+    }
+
+    String remove(String variable, String namespace) {
+
+        String[] old = new String[1];
+        variables.computeIfPresent(namespace, (key, vars) -> {
+            old[0] = vars.remove(variable);
+            if(logging && old[0] != null)
+                pendingRecords.add(encode(REMOVE, namespace, variable, null));
+            return vars.isEmpty() ? null : vars;
+        });
+        return old[0];
+    }
+
+    boolean isEmpty() {
+
+        return variables.isEmpty();
+    }
+
+    Set<String> getNamespaces() {
+
+        return Collections.unmodifiableSet(variables.keySet());
+    }
+
+    Map<String, String> getVariables(String namespace) {
+
+        Map<String, String> vars = variables.get(namespace);
+        return vars == null ? Collections.emptyMap() : Collections.unmodifiableMap(vars);
+    }
+
+    void clear() {
+
+        variables.clear();
+        pendingRecords.clear();
+    }
+
+    /**
+     * Sets whether changes are queued as log records. This is off while the variables are being loaded.
+     *
+     * @param logging If changes should be logged
+     */
+    void setLogging(boolean logging) {
+
+        this.logging = logging;
+    }
+
+    /**
+     * Takes the log records that have been queued since the last call.
+     *
+     * @return The records, oldest first
+     */
+    List<String> drainRecords() {
+
+        List<String> records = new ArrayList<>();
+        String record;
+        while((record = pendingRecords.poll()) != null)
+            records.add(record);
+        return records;
+    }
+
+    /**
+     * Applies a log record to this store.
+     *
+     * @param record The record
+     * @return If the record was valid
+     */
+    boolean replay(String record) {
+
+        List<String> fields = decode(record);
+        if(fields == null)
+            return false;
+
+        if(fields.get(0).equals(String.valueOf(SET)) && fields.size() == 4) {
+            set(fields.get(2), fields.get(1), fields.get(3));
+            return true;
+        } else if(fields.get(0).equals(String.valueOf(REMOVE)) && fields.size() == 3) {
+            remove(fields.get(2), fields.get(1));
+            return true;
+        }
+        return false;
+    }
+
+    private static String encode(char type, String namespace, String variable, String value) {
+
+        StringBuilder record = new StringBuilder().append(type);
+        escape(record.append(SEPARATOR), namespace);
+        escape(record.append(SEPARATOR), variable);
+        if(value != null)
+            escape(record.append(SEPARATOR), value);
+        return record.toString();
+    }
+
+    private static void escape(StringBuilder record, String field) {
+
+        for(int i = 0; i < field.length(); i++) {
+            char c = field.charAt(i);
+            switch(c) {
+                case '\\':
+                    record.append("\\\\");
+                    break;
+                case '\t':
+                    record.append("\\t");
+                    break;
+                case '\n':
+                    record.append("\\n");
+                    break;
+                case '\r':
+                    record.append("\\r");
+                    break;
+                default:
+                    record.append(c);
+            }
+        }
+    }
+
+    private static List<String> decode(String record) {
+
+        List<String> fields = new ArrayList<>(4);
+        StringBuilder field = new StringBuilder();
+        for(int i = 0; i < record.length(); i++) {
+            char c = record.charAt(i);
+            if(c == SEPARATOR) {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else if(c == '\\') {
+                if(++i == record.length())
+                    return null;
+                switch(record.charAt(i)) {
+                    case '\\':
+                        field.append('\\');
+                        break;
+                    case 't':
+                        field.append('\t');
+                        break;
+                    case 'n':
+                        field.append('\n');
+                        break;
+                    case 'r':
+                        field.append('\r');
+                        break;
+                    default:
+                        return null;
+                }
+            } else {
+                field.append(c);
+            }
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+}
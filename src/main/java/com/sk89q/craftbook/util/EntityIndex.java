@@ -0,0 +1,161 @@
+package com.sk89q.craftbook.util;
+
+import org.bukkit.Bukkit;
+import org.bukkit.Chunk;
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.bukkit.entity.Entity;
+import org.bukkit.entity.Player;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A per-tick index of the entities in loaded chunks, shared by everything that searches for entities.
+ *
+ * The entities of a chunk are only collected the first time the chunk is searched in a tick, along with their location
+ * and the {@link EntityType}s they match. Every other search of that chunk in the same tick reuses them, so many sensors
+ * watching the same area only cost one scan of its entities per tick.
+ *
+ * Entities that are removed during a tick stay in the index until the next tick, so searches still need to check that
+ * an entity is valid. This must only be used from the main thread.
+ */
+public final class EntityIndex {
+
+    private static final EntityType[] TYPES = EntityType.values();
+
+    private int tick;
+    private int indexedTick = -1;
+
+    private final Map<World, LongHashMap<IndexedEntity[]>> worlds = new HashMap<>();
+    private List<IndexedEntity> players;
+
+    /**
+     * Moves the index on to the next tick, so that entities are collected again the next time they are searched.
+     */
+    public void nextTick() {
+
+        tick++;
+    }
+
+    private void checkTick() {
+
+        if(indexedTick != tick) {
+            worlds.clear();
+            players = null;
+            indexedTick = tick;
+        }
+    }
+
+    /**
+     * Gets the entities in a loaded chunk, as they were when the chunk was first searched this tick.
+     *
+     * @param chunk The chunk
+     * @return The entities
+     */
+    IndexedEntity[] getEntities(Chunk chunk) {
+
+        checkTick();
+
+        LongHashMap<IndexedEntity[]> chunks = worlds.computeIfAbsent(chunk.getWorld(), world -> new LongHashMap<>());
+        long key = LongHashMap.toLong(chunk.getX(), chunk.getZ());
+        IndexedEntity[] entities = chunks.get(key);
+        if(entities == null) {
+            Entity[] chunkEntities = chunk.getEntities();
+            entities = new IndexedEntity[chunkEntities.length];
+            for(int i = 0; i < chunkEntities.length; i++)
+                entities[i] = new IndexedEntity(chunkEntities[i]);
+            chunks.put(key, entities);
+        }
+        return entities;
+    }
+
+    /**
+     * Gets the online players, as they were when the players were first searched this tick.
+     *
+     * @return The players
+     */
+    List<IndexedEntity> getPlayers() {
+
+        checkTick();
+
+        if(players == null) {
+            players = new ArrayList<>(Bukkit.getOnlinePlayers().size());
+            for(Player player : Bukkit.getOnlinePlayers())
+                players.add(new IndexedEntity(player));
+        }
+        return players;
+    }
+
+    /**
+     * Gets the amount of chunks that have been indexed this tick.
+     *
+     * @return The amount of chunks
+     */
+    public int getIndexedChunkCount() {
+
+        if(indexedTick != tick)
+            return 0;
+
+        int count = 0;
+        for(LongHashMap<IndexedEntity[]> chunks : worlds.values())
+            count += chunks.size();
+        return count;
+    }
+
+    /**
+     * Gets the bit mask matching any of the given types, to test against {@link IndexedEntity#matches(int)}.
+     *
+     * @param types The types
+     * @return The mask
+     */
+    static int getTypeMask(Collection<EntityType> types) {
+
+        int mask = 0;
+        for(EntityType type : types)
+            mask |= 1 << type.ordinal();
+        return mask;
+    }
+
+    static final class IndexedEntity {
+
+        private final Entity entity;
+        private final Location location;
+        private final int types;
+
+        private IndexedEntity(Entity entity) {
+
+            this.entity = entity;
+            this.location = entity.getLocation();
+
+            int types = 0;
+            for(EntityType type : TYPES)
+                if(type.is(entity))
+                    types |= 1 << type.ordinal();
+            this.types = types;
+        }
+
+        Entity getEntity() {
+
+            return entity;
+        }
+
+        /**
+         * Gets the location of the entity when it was indexed. This must not be modified.
+         *
+         * @return The location
+         */
+        Location getLocation() {
+
+            return location;
+        }
+
+        boolean matches(int typeMask) {
+
+            return (types & typeMask) != 0;
+        }
+    }
+}
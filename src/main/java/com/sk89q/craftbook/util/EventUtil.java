@@ -3,7 +3,9 @@ package com.sk89q.craftbook.util;
 import com.sk89q.craftbook.bukkit.CraftBookPlugin;
 import org.bukkit.event.Cancellable;
 import org.bukkit.event.Event;
+import org.bukkit.event.HandlerList;
 import org.bukkit.event.player.PlayerInteractEvent;
+import org.bukkit.plugin.RegisteredListener;
 
 import java.util.*;
 
@@ -54,6 +56,22 @@ public final class EventUtil {
     }
 
 
+    /**
+     * Checks whether plugins other than CraftBook listen to the given handler list. This allows CraftBook to skip
+     * firing events that only it listens to.
+     *
+     * @param handlers The handler list of the event
+     *
+     * @return true if another plugin listens to the event.
+     */
+    public static boolean hasExternalListeners(HandlerList handlers) {
+
+        for(RegisteredListener listener : handlers.getRegisteredListeners())
+            if(listener.getPlugin() != CraftBookPlugin.inst())
+                return true;
+        return false;
+    }
+
     /**
      * Used to filter events for processing. This allows for short circuiting code so that code isn't checked
      * unnecessarily.
@@ -0,0 +1,224 @@
+package com.sk89q.craftbook.util;
+
+import org.bukkit.Material;
+import org.bukkit.inventory.ItemStack;
+import org.bukkit.inventory.meta.BookMeta;
+import org.bukkit.inventory.meta.EnchantmentStorageMeta;
+import org.bukkit.inventory.meta.ItemMeta;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A set of inclusion and exclusion filters, compiled so that items can be checked against them quickly.
+ *
+ * Filters are indexed by {@link Material}, so an item is only compared with the filters of its own type. The metadata of
+ * each filter is read once when it is compiled, and items are compared by a fingerprint of their metadata before the
+ * full comparison. Items pass in exactly the same cases as {@link ItemUtil#doesItemPassFilters(ItemStack, java.util.Set,
+ * java.util.Set)}.
+ *
+ * Filters are immutable, so they can be compiled once per sign and reused.
+ */
+public final class ItemFilter {
+
+    private static final ItemFilter EMPTY = new ItemFilter(new EnumMap<>(Material.class), new EnumMap<>(Material.class));
+
+    private final Map<Material, Filter[]> inclusions;
+    private final Map<Material, Filter[]> exclusions;
+
+    private ItemFilter(Map<Material, Filter[]> inclusions, Map<Material, Filter[]> exclusions) {
+
+        this.inclusions = inclusions;
+        this.exclusions = exclusions;
+    }
+
+    /**
+     * Compiles a set of filters. Invalid filter items are ignored.
+     *
+     * @param inclusions The items to include, or null. Skipped if empty.
+     * @param exclusions The items to exclude, or null. Skipped if empty.
+     * @return The compiled filter
+     */
+    public static ItemFilter compile(Collection<ItemStack> inclusions, Collection<ItemStack> exclusions) {
+
+        Map<Material, Filter[]> included = index(inclusions);
+        Map<Material, Filter[]> excluded = index(exclusions);
+        if(included.isEmpty() && excluded.isEmpty())
+            return EMPTY;
+        return new ItemFilter(included, excluded);
+    }
+
+    private static Map<Material, Filter[]> index(Collection<ItemStack> items) {
+
+        Map<Material, Filter[]> index = new EnumMap<>(Material.class);
+        if(items == null)
+            return index;
+
+        for(ItemStack item : items) {
+            if(!isValid(item))
+                continue;
+            Filter[] filters = index.get(item.getType());
+            filters = filters == null ? new Filter[1] : Arrays.copyOf(filters, filters.length + 1);
+            filters[filters.length - 1] = new Filter(item);
+            index.put(item.getType(), filters);
+        }
+        return index;
+    }
+
+    /**
+     * Checks whether this filter has no valid inclusions or exclusions, in which case every item passes.
+     *
+     * @return If the filter is empty
+     */
+    public boolean isEmpty() {
+
+        return inclusions.isEmpty() && exclusions.isEmpty();
+    }
+
+    /**
+     * Checks whether an item passes this filter.
+     *
+     * @param stack The item
+     * @return If the item passes
+     */
+    public boolean passes(ItemStack stack) {
+
+        if(isEmpty())
+            return true;
+
+        Filter[] included = isValid(stack) ? inclusions.get(stack.getType()) : null;
+        Filter[] excluded = isValid(stack) ? exclusions.get(stack.getType()) : null;
+        if(!inclusions.isEmpty() && included == null)
+            return false;
+        if(included == null && excluded == null)
+            return true;
+
+        StackMeta meta = new StackMeta(stack);
+        if(included != null && !matchesAny(included, meta))
+            return false;
+        return excluded == null || !matchesAny(excluded, meta);
+    }
+
+    /**
+     * Gets the items that pass this filter.
+     *
+     * @param stacks The items
+     * @return A new list of the items that pass
+     */
+    public List<ItemStack> filter(List<ItemStack> stacks) {
+
+        List<ItemStack> passed = new ArrayList<>(stacks.size());
+        for(ItemStack stack : stacks)
+            if(passes(stack))
+                passed.add(stack);
+        return passed;
+    }
+
+    private static boolean matchesAny(Filter[] filters, StackMeta stack) {
+
+        for(Filter filter : filters)
+            if(filter.matches(stack))
+                return true;
+        return false;
+    }
+
+    private static boolean isValid(ItemStack item) {
+
+        return item != null && item.getAmount() > 0;
+    }
+
+    /**
+     * Gets a fingerprint of the parts of some metadata that must be equal for {@link ItemUtil#areItemMetaIdentical(ItemMeta,
+     * ItemMeta)} to be true, so that most differing items can be told apart without comparing names and lore.
+     */
+    private static int getMetaFingerprint(ItemMeta meta) {
+
+        int lore = meta.hasLore() ? Math.min(meta.getLore().size(), 0xFFF) : 0;
+        int enchants = meta.hasEnchants() ? Math.min(meta.getEnchants().size(), 0xFF) : 0;
+        int fingerprint = lore | enchants << 12;
+        if(meta instanceof EnchantmentStorageMeta)
+            fingerprint |= 1 << 20;
+        if(meta instanceof BookMeta)
+            fingerprint |= 1 << 21;
+        return fingerprint;
+    }
+
+    /**
+     * The metadata of an item being checked, which is only read if a filter needs it.
+     */
+    private static final class StackMeta {
+
+        private final ItemStack stack;
+        private final boolean hasMeta;
+        private ItemMeta meta;
+        private int fingerprint;
+        private int validMeta = -1;
+
+        private StackMeta(ItemStack stack) {
+
+            this.stack = stack;
+            this.hasMeta = stack.hasItemMeta();
+        }
+
+        private ItemMeta getMeta() {
+
+            if(meta == null) {
+                meta = stack.getItemMeta();
+                fingerprint = getMetaFingerprint(meta);
+            }
+            return meta;
+        }
+
+        private int getFingerprint() {
+
+            getMeta();
+            return fingerprint;
+        }
+
+        private boolean isValidMeta() {
+
+            if(validMeta < 0)
+                validMeta = ItemUtil.isValidItemMeta(getMeta()) ? 1 : 0;
+            return validMeta == 1;
+        }
+    }
+
+    private static final class Filter {
+
+        private final boolean hasMeta;
+        private final ItemMeta meta;
+        private final boolean validMeta;
+        private final int fingerprint;
+
+        private Filter(ItemStack item) {
+
+            hasMeta = item.hasItemMeta();
+            meta = hasMeta ? item.getItemMeta() : null;
+            validMeta = hasMeta && ItemUtil.isValidItemMeta(meta);
+            fingerprint = hasMeta ? getMetaFingerprint(meta) : 0;
+        }
+
+        /**
+         * Checks whether an item of the same type is identical to this filter, following
+         * {@link ItemUtil#areItemsIdentical(ItemStack, ItemStack)}.
+         */
+        private boolean matches(StackMeta stack) {
+
+            if(hasMeta != stack.hasMeta) {
+                if(hasMeta && validMeta)
+                    return false;
+                else if(stack.hasMeta && stack.isValidMeta())
+                    return false;
+            }
+
+            if(!hasMeta)
+                return true;
+
+            return fingerprint == stack.getFingerprint() && ItemUtil.areItemMetaIdentical(meta, stack.getMeta());
+        }
+    }
+}
@@ -63,20 +63,14 @@ public final class ItemUtil {
      */
     public static List<ItemStack> filterItems(List<ItemStack> stacks, HashSet<ItemStack> inclusions, HashSet<ItemStack> exclusions) {
 
-        List<ItemStack> ret = new ArrayList<>();
-
-        for(ItemStack stack : stacks) {
-
-            if(doesItemPassFilters(stack, inclusions, exclusions))
-                ret.add(stack);
-        }
-
-        return ret;
+        return ItemFilter.compile(inclusions, exclusions).filter(stacks);
     }
 
     /**
      * Check whether or not an item passes filters.
      * 
+     * When checking many items against the same filters, compile them into an {@link ItemFilter} instead.
+     * 
      * @param stack The item to check if it passes.
      * @param inclusions The list of items to include, skipped if empty.
      * @param exclusions The list of items to exclude, skipped if empty.
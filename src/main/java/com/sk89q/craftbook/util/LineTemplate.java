@@ -0,0 +1,168 @@
+package com.sk89q.craftbook.util;
+
+import com.sk89q.craftbook.bukkit.CraftBookPlugin;
+import org.bukkit.Location;
+import org.bukkit.entity.Player;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A line compiled into literal segments and player tag slots, so that it can be rendered for a player in a single
+ * pass. Values are only looked up for the tags the line actually contains.
+ *
+ * Rendering gives the same result as replacing each tag in turn, longest tags first, which is how
+ * {@link ParsingUtil#parsePlayerTags(String, Player)} used to work.
+ */
+final class LineTemplate {
+
+    private static final byte NAME = 0;
+    private static final byte LOCATION = 1;
+    private static final byte X = 2;
+    private static final byte Y = 3;
+    private static final byte Z = 4;
+    private static final byte BLOCK_X = 5;
+    private static final byte BLOCK_Y = 6;
+    private static final byte BLOCK_Z = 7;
+    private static final byte WORLD = 8;
+    private static final byte UUID = 9;
+    private static final byte CBID = 10;
+
+    private static final ThreadLocal<StringBuilder> BUFFER = ThreadLocal.withInitial(() -> new StringBuilder(64));
+
+    /**
+     * The literal segments, with a slot between each pair. There is always one more literal than there are slots.
+     */
+    private final String[] literals;
+    private final byte[] slots;
+    private final boolean usesLocation;
+
+    private LineTemplate(String[] literals, byte[] slots) {
+
+        this.literals = literals;
+        this.slots = slots;
+
+        boolean usesLocation = false;
+        for (byte slot : slots)
+            if (slot >= LOCATION && slot <= WORLD)
+                usesLocation = true;
+        this.usesLocation = usesLocation;
+    }
+
+    /**
+     * Compiles a line into a template.
+     *
+     * @param line The line
+     * @return The template
+     */
+    static LineTemplate compile(String line) {
+
+        List<String> literals = new ArrayList<>();
+        List<Byte> slots = new ArrayList<>();
+
+        int start = 0;
+        int index = line.indexOf("@p");
+        while (index >= 0) {
+            int end = index + 2;
+            byte slot = NAME;
+
+            if (line.startsWith(".b", end) && line.length() > end + 2) {
+                switch (line.charAt(end + 2)) {
+                    case 'x': slot = BLOCK_X; end += 3; break;
+                    case 'y': slot = BLOCK_Y; end += 3; break;
+                    case 'z': slot = BLOCK_Z; end += 3; break;
+                    default: break;
+                }
+            }
+            if (slot == NAME && line.length() > end + 1 && line.charAt(end) == '.') {
+                switch (line.charAt(end + 1)) {
+                    case 'l': slot = LOCATION; end += 2; break;
+                    case 'x': slot = X; end += 2; break;
+                    case 'y': slot = Y; end += 2; break;
+                    case 'z': slot = Z; end += 2; break;
+                    case 'w': slot = WORLD; end += 2; break;
+                    case 'u': slot = UUID; end += 2; break;
+                    case 'i': slot = CBID; end += 2; break;
+                    default: break;
+                }
+            }
+
+            literals.add(line.substring(start, index));
+            slots.add(slot);
+            start = end;
+            index = line.indexOf("@p", start);
+        }
+        literals.add(line.substring(start));
+
+        byte[] slotArray = new byte[slots.size()];
+        for (int i = 0; i < slotArray.length; i++)
+            slotArray[i] = slots.get(i);
+        return new LineTemplate(literals.toArray(new String[literals.size()]), slotArray);
+    }
+
+    /**
+     * Renders this template for a player.
+     *
+     * @param player The player
+     * @return The rendered line
+     */
+    String render(Player player) {
+
+        if (slots.length == 0)
+            return literals[0];
+
+        Location location = usesLocation ? player.getLocation() : null;
+        String cbid = null;
+
+        StringBuilder buffer = BUFFER.get();
+        buffer.setLength(0);
+        buffer.append(literals[0]);
+        for (int i = 0; i < slots.length; i++) {
+            switch (slots[i]) {
+                case NAME:
+                    buffer.append(player.getName());
+                    break;
+                case LOCATION:
+                    buffer.append(location.getX()).append(':').append(location.getY()).append(':').append(location.getZ());
+                    break;
+                case X:
+                    buffer.append(location.getX());
+                    break;
+                case Y:
+                    buffer.append(location.getY());
+                    break;
+                case Z:
+                    buffer.append(location.getZ());
+                    break;
+                case BLOCK_X:
+                    buffer.append(location.getBlockX());
+                    break;
+                case BLOCK_Y:
+                    buffer.append(location.getBlockY());
+                    break;
+                case BLOCK_Z:
+                    buffer.append(location.getBlockZ());
+                    break;
+                case WORLD:
+                    buffer.append(location.getWorld().getName());
+                    break;
+                case UUID:
+                    buffer.append(player.getUniqueId());
+                    break;
+                case CBID:
+                    if (cbid == null)
+                        cbid = CraftBookPlugin.inst().getUUIDMappings().getCBID(player.getUniqueId());
+                    buffer.append(cbid);
+                    break;
+                default:
+                    break;
+            }
+            buffer.append(literals[i + 1]);
+        }
+
+        String result = buffer.toString();
+        if (buffer.capacity() > 1024)
+            BUFFER.remove();
+        return result;
+    }
+}
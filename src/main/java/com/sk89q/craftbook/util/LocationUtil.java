@@ -16,7 +16,9 @@ import org.bukkit.entity.Entity;
 import org.bukkit.entity.Player;
 import org.bukkit.scheduler.BukkitRunnable;
 
+import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.List;
 
 /**
  * @author Silthus, Me4502
@@ -53,17 +55,21 @@ public final class LocationUtil {
     public static Entity[] getNearbyEntities(Location l, Vector3 radius) {
         int chunkRadiusX = (int) radius.getX() < 16 ? 1 : (int) radius.getX() / 16;
         int chunkRadiusZ = (int) radius.getZ() < 16 ? 1 : (int) radius.getZ() / 16;
-        HashSet<Entity> radiusEntities = new HashSet<>();
+        int chunkX = l.getBlockX() >> 4;
+        int chunkZ = l.getBlockZ() >> 4;
+        EntityIndex index = CraftBookPlugin.inst().getEntityIndex();
+        List<Entity> radiusEntities = new ArrayList<>();
         for (int chX = 0 - chunkRadiusX; chX <= chunkRadiusX; chX++) {
             for (int chZ = 0 - chunkRadiusZ; chZ <= chunkRadiusZ; chZ++) {
-                int offChunkX = l.getChunk().getX() + chX;
-                int offChunkZ = l.getChunk().getZ() + chZ;
+                int offChunkX = chunkX + chX;
+                int offChunkZ = chunkZ + chZ;
                 if (l.getWorld().isChunkLoaded(offChunkX, offChunkZ)) {
-                    for (Entity e : l.getWorld().getChunkAt(offChunkX, offChunkZ).getEntities()) {
-                        if (e == null || e.isDead() || !e.isValid())
+                    for (EntityIndex.IndexedEntity e : index.getEntities(l.getWorld().getChunkAt(offChunkX, offChunkZ))) {
+                        if (!isWithinRadius(l, e.getLocation(), radius))
                             continue;
-                        if (isWithinRadius(l, e.getLocation(), radius))
-                            radiusEntities.add(e);
+                        if (e.getEntity().isDead() || !e.getEntity().isValid())
+                            continue;
+                        radiusEntities.add(e.getEntity());
                     }
                 }
             }
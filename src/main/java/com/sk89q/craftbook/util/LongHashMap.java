@@ -0,0 +1,244 @@
+/*
+ * CraftBook Copyright (C) 2010 sk89q <http://www.sk89q.com>
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ * License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program. If not,
+ * see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.craftbook.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A hash map keyed by primitive longs, using open addressing so lookups never box the key.
+ *
+ * This is mostly used with packed chunk or block coordinates, see {@link #toLong(int, int)}.
+ *
+ * @param <V> The value type
+ */
+public final class LongHashMap<V> {
+
+    private static final int MIN_CAPACITY = 16;
+
+    private long[] keys;
+    private Object[] values;
+    private boolean[] used;
+
+    private int size;
+    private int mask;
+    private int resizeAt;
+
+    public LongHashMap() {
+
+        this(MIN_CAPACITY);
+    }
+
+    public LongHashMap(int expectedSize) {
+
+        int capacity = MIN_CAPACITY;
+        while (capacity * 3 / 4 < expectedSize)
+            capacity <<= 1;
+        allocate(capacity);
+    }
+
+    /**
+     * Packs two ints into a single long key.
+     *
+     * @param msw The most significant word, for example a chunk X coordinate.
+     * @param lsw The least significant word, for example a chunk Z coordinate.
+     * @return The packed key.
+     */
+    public static long toLong(int msw, int lsw) {
+
+        return ((long) msw << 32) + lsw - Integer.MIN_VALUE;
+    }
+
+    /**
+     * Packs a block position into a single long key. X and Z are kept to 26 bits and Y to 12 bits, which covers the
+     * full world border and build height.
+     *
+     * @param x The X coordinate
+     * @param y The Y coordinate
+     * @param z The Z coordinate
+     * @return The packed key.
+     */
+    public static long toLong(int x, int y, int z) {
+
+        return ((long) x & 0x3FFFFFFL) << 38 | ((long) z & 0x3FFFFFFL) << 12 | (long) y & 0xFFFL;
+    }
+
+    public static int msw(long key) {
+
+        return (int) (key >> 32);
+    }
+
+    public static int lsw(long key) {
+
+        return (int) (key & 0xFFFFFFFFL) + Integer.MIN_VALUE;
+    }
+
+    public int size() {
+
+        return size;
+    }
+
+    public boolean isEmpty() {
+
+        return size == 0;
+    }
+
+    public boolean containsKey(long key) {
+
+        return indexOf(key) >= 0;
+    }
+
+    @SuppressWarnings("unchecked")
+    public V get(long key) {
+
+        int index = indexOf(key);
+        return index < 0 ? null : (V) values[index];
+    }
+
+    @SuppressWarnings("unchecked")
+    public V put(long key, V value) {
+
+        int index = hash(key) & mask;
+        while (used[index]) {
+            if (keys[index] == key) {
+                V old = (V) values[index];
+                values[index] = value;
+                return old;
+            }
+            index = index + 1 & mask;
+        }
+
+        used[index] = true;
+        keys[index] = key;
+        values[index] = value;
+
+        if (++size > resizeAt)
+            rehash(keys.length << 1);
+        return null;
+    }
+
+    @SuppressWarnings("unchecked")
+    public V remove(long key) {
+
+        int gap = indexOf(key);
+        if (gap < 0) return null;
+
+        V old = (V) values[gap];
+
+        // Shift back any following entries of the probe chain, so that no tombstones are needed.
+        int index = gap + 1 & mask;
+        while (used[index]) {
+            int home = hash(keys[index]) & mask;
+            if ((index - home & mask) >= (index - gap & mask)) {
+                keys[gap] = keys[index];
+                values[gap] = values[index];
+                gap = index;
+            }
+            index = index + 1 & mask;
+        }
+
+        used[gap] = false;
+        values[gap] = null;
+        size--;
+        return old;
+    }
+
+    public void clear() {
+
+        if (size == 0) return;
+        Arrays.fill(used, false);
+        Arrays.fill(values, null);
+        size = 0;
+    }
+
+    /**
+     * Gets a snapshot of the keys in this map. Modifying the map does not affect the returned array.
+     *
+     * @return The keys
+     */
+    public long[] keys() {
+
+        long[] result = new long[size];
+        int i = 0;
+        for (int index = 0; index < used.length; index++)
+            if (used[index])
+                result[i++] = keys[index];
+        return result;
+    }
+
+    /**
+     * Gets a snapshot of the values in this map. Modifying the map does not affect the returned list.
+     *
+     * @return The values
+     */
+    @SuppressWarnings("unchecked")
+    public List<V> values() {
+
+        List<V> result = new ArrayList<>(size);
+        for (int index = 0; index < used.length; index++)
+            if (used[index])
+                result.add((V) values[index]);
+        return result;
+    }
+
+    private int indexOf(long key) {
+
+        int index = hash(key) & mask;
+        while (used[index]) {
+            if (keys[index] == key)
+                return index;
+            index = index + 1 & mask;
+        }
+        return -1;
+    }
+
+    private void allocate(int capacity) {
+
+        keys = new long[capacity];
+        values = new Object[capacity];
+        used = new boolean[capacity];
+        mask = capacity - 1;
+        resizeAt = capacity * 3 / 4;
+    }
+
+    private void rehash(int capacity) {
+
+        long[] oldKeys = keys;
+        Object[] oldValues = values;
+        boolean[] oldUsed = used;
+
+        allocate(capacity);
+
+        for (int i = 0; i < oldUsed.length; i++) {
+            if (!oldUsed[i]) continue;
+            int index = hash(oldKeys[i]) & mask;
+            while (used[index])
+                index = index + 1 & mask;
+            used[index] = true;
+            keys[index] = oldKeys[i];
+            values[index] = oldValues[i];
+        }
+    }
+
+    private static int hash(long key) {
+
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        return (int) key;
+    }
+}
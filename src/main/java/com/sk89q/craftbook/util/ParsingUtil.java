@@ -12,7 +12,6 @@ import org.bukkit.entity.Player;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Map.Entry;
 import java.util.concurrent.TimeUnit;
 
 public final class ParsingUtil {
@@ -35,23 +34,30 @@ public final class ParsingUtil {
         return line;
     }
 
+    /**
+     * Replaces the @p tags of a line with the details of the given player. Lines are compiled into a cached
+     * {@link LineTemplate}, so only the tags that are present get looked up.
+     *
+     * @param line The line
+     * @param player The player
+     * @return The line with the tags replaced
+     */
     public static String parsePlayerTags(String line, Player player) {
 
-        line = StringUtils.replace(line, "@p.l", player.getLocation().getX() + ":" + player.getLocation().getY() + ":" + player.getLocation().getZ());
-        line = StringUtils.replace(line, "@p.x", String.valueOf(player.getLocation().getX()));
-        line = StringUtils.replace(line, "@p.y", String.valueOf(player.getLocation().getY()));
-        line = StringUtils.replace(line, "@p.z", String.valueOf(player.getLocation().getZ()));
-        line = StringUtils.replace(line, "@p.bx", String.valueOf(player.getLocation().getBlockX()));
-        line = StringUtils.replace(line, "@p.by", String.valueOf(player.getLocation().getBlockY()));
-        line = StringUtils.replace(line, "@p.bz", String.valueOf(player.getLocation().getBlockZ()));
-        line = StringUtils.replace(line, "@p.w", String.valueOf(player.getLocation().getWorld().getName()));
-        line = StringUtils.replace(line, "@p.u", player.getUniqueId().toString());
-        line = StringUtils.replace(line, "@p.i", CraftBookPlugin.inst().getUUIDMappings().getCBID(player.getUniqueId()));
-        line = StringUtils.replace(line, "@p", player.getName());
+        if(!line.contains("@p"))
+            return line;
 
-        return line;
+        return lineTemplateCache.getUnchecked(line).render(player);
     }
 
+    private static final LoadingCache<String, LineTemplate> lineTemplateCache = CacheBuilder.newBuilder().maximumSize(1024).expireAfterAccess(10, TimeUnit.MINUTES).build(new CacheLoader<String, LineTemplate>() {
+        @Override
+        public LineTemplate load (String line) throws Exception {
+
+            return LineTemplate.compile(line);
+        }
+    });
+
     public static List<String> getPossibleVariables(String line) {
 
         if(!line.contains("%"))
@@ -78,7 +84,8 @@ public final class ParsingUtil {
 
     public static String parseVariables(String line, CommandSender player) {
 
-        if(CraftBookPlugin.inst() == null || VariableManager.instance == null || VariableManager.instance.getVariableStore().isEmpty())
+        VariableManager variables = VariableManager.instance;
+        if(CraftBookPlugin.inst() == null || variables == null || variables.isEmpty())
             return line;
 
         for(String var : getPossibleVariables(line)) {
@@ -103,18 +110,18 @@ public final class ParsingUtil {
                 CraftBookPlugin.logDebugMessage("Global Variable " + value + " detected!", "variables.line-parsing");
             }
 
+            String result = variables.getVariable(value, key);
+            if(result == null)
+                continue;
+
             if(player != null)
                 if(!VariableCommands.hasVariablePermission(player, key, value, "use"))
                     continue;
             CraftBookPlugin.logDebugMessage(var + " permissions granted!", "variables.line-parsing");
 
-            for(Entry<Tuple2<String, String>, String> bit : VariableManager.instance.getVariableStore().entrySet()) {
-                if(bit.getKey().b.equals(key) && bit.getKey().a.equals(value)) {
-                    line = StringUtils.replace(line, "%" + var + "%", bit.getValue());
-                }
-            }
+            line = StringUtils.replace(line, "%" + var + "%", result);
         }
 
         return StringUtils.replace(line, "\\%", "%");
     }
-}
\ No newline at end of file
+}
@@ -9,7 +9,6 @@ import com.sk89q.worldedit.math.Vector3;
 import com.sk89q.worldguard.WorldGuard;
 import com.sk89q.worldguard.protection.regions.ProtectedRegion;
 import org.apache.commons.lang.StringUtils;
-import org.bukkit.Bukkit;
 import org.bukkit.Chunk;
 import org.bukkit.Location;
 import org.bukkit.World;
@@ -18,6 +17,7 @@ import org.bukkit.entity.Entity;
 import org.bukkit.entity.Player;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashSet;
@@ -26,6 +26,12 @@ import java.util.Set;
 
 public final class SearchArea {
 
+    /**
+     * The most chunks an area keeps a list of. Larger areas check the loaded chunks of the world against their bounds
+     * instead.
+     */
+    private static final int MAX_LISTED_CHUNKS = 1024;
+
     private Location center = null;
     private Vector3 radius = null;
     private BlockVector3 blockRadius = null;
@@ -33,6 +39,8 @@ public final class SearchArea {
     private ProtectedRegion region = null;
     private World world = null;
 
+    private volatile Bounds bounds = null;
+
     /**
      * Creates an invalid SearchArea that can not be used to search.
      */
@@ -133,9 +141,9 @@ public final class SearchArea {
 
         List<Player> players = new ArrayList<>();
 
-        for(Player player : Bukkit.getOnlinePlayers())
+        for(EntityIndex.IndexedEntity player : CraftBookPlugin.inst().getEntityIndex().getPlayers())
             if(isWithinArea(player.getLocation()))
-                players.add(player);
+                players.add((Player) player.getEntity());
 
         return players;
     }
@@ -149,21 +157,14 @@ public final class SearchArea {
     public List<Entity> getEntitiesInArea(Collection<EntityType> types) {
 
         List<Entity> entities = new ArrayList<>();
+        EntityIndex index = CraftBookPlugin.inst().getEntityIndex();
+        int typeMask = EntityIndex.getTypeMask(types);
 
-        for(Chunk chunk : getChunksInArea())
-            for(Entity ent : chunk.getEntities()) {
-                if(!ent.isValid() || !isWithinArea(ent.getLocation())) continue;
-
-                boolean isType = false;
-                for(EntityType type : types) {
-                    if(type.is(ent)) {
-                        isType = true;
-                        break;
-                    }
-                }
-                if(!isType) continue;
+        for(Chunk chunk : getLoadedChunksInArea())
+            for(EntityIndex.IndexedEntity ent : index.getEntities(chunk)) {
+                if(!ent.matches(typeMask) || !isWithinArea(ent.getLocation()) || !ent.getEntity().isValid()) continue;
 
-                entities.add(ent);
+                entities.add(ent.getEntity());
             }
 
         return entities;
@@ -182,10 +183,13 @@ public final class SearchArea {
     public boolean isWithinArea(Location location) {
 
         if(hasRegion()) {
-            if(!region.isPhysicalArea() || region.contains(CraftBookBukkitUtil.toVector(location.getBlock())) && location.getWorld().equals(world))
+            if(!region.isPhysicalArea())
+                return true;
+            if(getBounds().contains(location) && location.getWorld().equals(world)
+                    && region.contains(BlockVector3.at(location.getBlockX(), location.getBlockY(), location.getBlockZ())))
                 return true;
         } else if(hasRadiusAndCenter()) {
-            if(LocationUtil.isWithinRadius(location, center, radius))
+            if(getBounds().contains(location) && LocationUtil.isWithinRadius(location, center, radius))
                 return true;
         } else
             return true;
@@ -194,43 +198,87 @@ public final class SearchArea {
     }
 
     /**
-     * Get a set of chunks inside this SearchArea.
+     * Get a set of chunks inside this SearchArea. This loads any of the chunks that aren't loaded, so
+     * {@link #getLoadedChunksInArea()} should be used where unloaded chunks can be skipped.
      * 
      * @return the set of chunks.
      */
     public Set<Chunk> getChunksInArea() {
 
         Set<Chunk> chunks = new HashSet<>();
+        if(!isValid())
+            return chunks;
 
-        if(hasRegion()) {
-
-            Chunk c1 = getWorld().getChunkAt(region.getMinimumPoint().getBlockX() >> 4, region.getMinimumPoint().getBlockZ() >> 4);
-
-            Chunk c2 = getWorld().getChunkAt(region.getMaximumPoint().getBlockX() >> 4, region.getMaximumPoint().getBlockZ() >> 4);
-            int xMin = Math.min(c1.getX(), c2.getX());
-            int xMax = Math.max(c1.getX(), c2.getX());
-            int zMin = Math.min(c1.getZ(), c2.getZ());
-            int zMax = Math.max(c1.getZ(), c2.getZ());
-
-            for(int x = xMin; x <= xMax; x++)
-                for(int z = zMin; z <= zMax; z++)
-                    chunks.add(getWorld().getChunkAt(x,z));
-        } else if (hasRadiusAndCenter()) {
+        Bounds bounds = getBounds();
+        if(bounds.unbounded) {
+            chunks.addAll(Arrays.asList(getWorld().getLoadedChunks()));
+            return chunks;
+        }
 
-            int chunkRadiusX = blockRadius.getBlockX() < 16 ? 1 : blockRadius.getBlockX() / 16;
-            int chunkRadiusZ = blockRadius.getBlockZ() < 16 ? 1 : blockRadius.getBlockZ() / 16;
+        for(int x = bounds.minChunkX; x <= bounds.maxChunkX; x++)
+            for(int z = bounds.minChunkZ; z <= bounds.maxChunkZ; z++)
+                chunks.add(getWorld().getChunkAt(x, z));
 
-            for (int chX = 0 - chunkRadiusX; chX <= chunkRadiusX; chX++) {
-                for (int chZ = 0 - chunkRadiusZ; chZ <= chunkRadiusZ; chZ++) {
+        return chunks;
+    }
 
-                    chunks.add(new Location(center.getWorld(), center.getBlockX() + chX * 16, center.getBlockY(), center.getBlockZ() + chZ * 16).getChunk());
-                }
+    /**
+     * Get the loaded chunks inside this SearchArea. Unlike {@link #getChunksInArea()}, this never loads chunks.
+     *
+     * @return the list of loaded chunks.
+     */
+    public List<Chunk> getLoadedChunksInArea() {
+
+        List<Chunk> chunks = new ArrayList<>();
+        if(!isValid())
+            return chunks;
+
+        World world = getWorld();
+        Bounds bounds = getBounds();
+        if(bounds.chunkKeys != null) {
+            for(long key : bounds.chunkKeys) {
+                int x = LongHashMap.msw(key);
+                int z = LongHashMap.lsw(key);
+                if(world.isChunkLoaded(x, z))
+                    chunks.add(world.getChunkAt(x, z));
             }
+        } else {
+            for(Chunk chunk : world.getLoadedChunks())
+                if(bounds.containsChunk(chunk.getX(), chunk.getZ()))
+                    chunks.add(chunk);
         }
 
         return chunks;
     }
 
+    /**
+     * Gets the bounds of this area, working them out the first time they are needed.
+     *
+     * @return The bounds
+     */
+    private Bounds getBounds() {
+
+        Bounds bounds = this.bounds;
+        if(bounds == null) {
+            if(hasRegion()) {
+                if(!region.isPhysicalArea())
+                    bounds = new Bounds();
+                else
+                    bounds = new Bounds(region.getMinimumPoint().getBlockX(), region.getMinimumPoint().getBlockY(), region.getMinimumPoint().getBlockZ(),
+                            region.getMaximumPoint().getBlockX() + 1, region.getMaximumPoint().getBlockY() + 1, region.getMaximumPoint().getBlockZ() + 1);
+            } else {
+                // The radius checks are not exact at the edges, so the box is a block larger to be safe.
+                double radiusX = Math.abs(radius.getX()) + 1;
+                double radiusY = Math.abs(radius.getY()) + 1;
+                double radiusZ = Math.max(Math.abs(radius.getX()), Math.abs(radius.getZ())) + 1;
+                bounds = new Bounds(center.getX() - radiusX, center.getY() - radiusY, center.getZ() - radiusZ,
+                        center.getX() + radiusX, center.getY() + radiusY, center.getZ() + radiusZ);
+            }
+            this.bounds = bounds;
+        }
+        return bounds;
+    }
+
     /**
      * Get a random block from within the area.
      * 
@@ -338,4 +386,71 @@ public final class SearchArea {
 
         return hasRadiusAndCenter() || hasRegion();
     }
-}
\ No newline at end of file
+
+    /**
+     * The bounding box of an area, used to rule out locations and chunks before the exact checks.
+     */
+    private static final class Bounds {
+
+        private final boolean unbounded;
+        private final double minX, minY, minZ, maxX, maxY, maxZ;
+        private final int minChunkX, minChunkZ, maxChunkX, maxChunkZ;
+
+        /**
+         * The packed coordinates of the chunks in the bounds, or null if there are too many to list.
+         */
+        private final long[] chunkKeys;
+
+        /**
+         * Creates bounds that contain everything.
+         */
+        private Bounds() {
+
+            unbounded = true;
+            minX = minY = minZ = Double.NEGATIVE_INFINITY;
+            maxX = maxY = maxZ = Double.POSITIVE_INFINITY;
+            minChunkX = minChunkZ = Integer.MIN_VALUE;
+            maxChunkX = maxChunkZ = Integer.MAX_VALUE;
+            chunkKeys = null;
+        }
+
+        private Bounds(double minX, double minY, double minZ, double maxX, double maxY, double maxZ) {
+
+            unbounded = false;
+            this.minX = minX;
+            this.minY = minY;
+            this.minZ = minZ;
+            this.maxX = maxX;
+            this.maxY = maxY;
+            this.maxZ = maxZ;
+
+            minChunkX = (int) Math.floor(minX) >> 4;
+            minChunkZ = (int) Math.floor(minZ) >> 4;
+            maxChunkX = (int) Math.floor(maxX) >> 4;
+            maxChunkZ = (int) Math.floor(maxZ) >> 4;
+
+            long chunkCount = (long) (maxChunkX - minChunkX + 1) * (maxChunkZ - minChunkZ + 1);
+            if(chunkCount <= MAX_LISTED_CHUNKS) {
+                chunkKeys = new long[(int) chunkCount];
+                int i = 0;
+                for(int x = minChunkX; x <= maxChunkX; x++)
+                    for(int z = minChunkZ; z <= maxChunkZ; z++)
+                        chunkKeys[i++] = LongHashMap.toLong(x, z);
+            } else
+                chunkKeys = null;
+        }
+
+        private boolean contains(Location location) {
+
+            double x = location.getX();
+            double y = location.getY();
+            double z = location.getZ();
+            return x >= minX && x <= maxX && y >= minY && y <= maxY && z >= minZ && z <= maxZ;
+        }
+
+        private boolean containsChunk(int x, int z) {
+
+            return x >= minChunkX && x <= maxChunkX && z >= minChunkZ && z <= maxChunkZ;
+        }
+    }
+}
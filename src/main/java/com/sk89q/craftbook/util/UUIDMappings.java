@@ -3,20 +3,77 @@ package com.sk89q.craftbook.util;
 import com.sk89q.craftbook.bukkit.CraftBookPlugin;
 
 import java.sql.*;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.UUID;
-
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Maps player UUIDs to the short CraftBook IDs used in variable namespaces and sign text.
+ *
+ * The mappings are kept in an SQLite database, and preloaded into a bounded in-memory cache in both directions, so that
+ * lookups don't normally touch the database. While every mapping fits in the cache, a miss is known to be absent and is
+ * answered without a query. New mappings are added to the cache straight away, and written to the database by a
+ * background thread with its own connection. Mappings are also kept aside until they have been written, so that one
+ * evicted from the cache before then is never created again with a different ID.
+ */
 public final class UUIDMappings {
 
+    /**
+     * The most mappings that are kept in memory.
+     */
+    private static final int MAX_CACHED = 100000;
+
+    private static final String DATABASE_URL = "jdbc:sqlite:plugins/CraftBook/uuid-mappings.db";
+
     private Connection db;
 
+    /**
+     * Writes new mappings in the background, using its own connection.
+     */
+    private ExecutorService writer;
+    private Connection writeConnection;
+
+    /**
+     * The cached mappings, in access order, and the reverse of them. Both are guarded by this object.
+     */
+    private final LinkedHashMap<UUID, String> cbIds = new LinkedHashMap<>(16, 0.75f, true);
+    private final HashMap<String, UUID> uuids = new HashMap<>();
+
+    /**
+     * The new mappings that haven't been written to the database yet, in both directions. Guarded by this object.
+     */
+    private final HashMap<UUID, String> pendingCbIds = new HashMap<>();
+    private final HashMap<String, UUID> pendingUuids = new HashMap<>();
+
+    /**
+     * Whether the cache holds every mapping in the database, so that misses don't need to be looked up.
+     */
+    private boolean complete;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
     public void enable() {
         createConnection();
+        preload();
+
+        writer = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "CraftBook UUID Mappings Writer");
+            thread.setDaemon(true);
+            return thread;
+        });
     }
 
     private void createConnection() {
         try {
             Class.forName("org.sqlite.JDBC");
-            db = DriverManager.getConnection("jdbc:sqlite:plugins/CraftBook/uuid-mappings.db");
+            db = DriverManager.getConnection(DATABASE_URL);
 
             DatabaseMetaData dbm = db.getMetaData();
             ResultSet tables = dbm.getTables(null, null, "mappings", null);
@@ -35,6 +92,67 @@ public final class UUIDMappings {
         }
 }
 
+    /**
+     * Loads the mappings from the database into the cache, up to {@link #MAX_CACHED}.
+     */
+    private synchronized void preload() {
+
+        if(db == null)
+            return;
+
+        Statement statement = null;
+        ResultSet results = null;
+
+        try {
+            statement = db.createStatement();
+            results = statement.executeQuery("SELECT UUID, CBID FROM mappings");
+
+            complete = true;
+            while(results.next()) {
+                if(cbIds.size() >= MAX_CACHED) {
+                    complete = false;
+                    break;
+                }
+                try {
+                    cache(UUID.fromString(results.getString(1)), results.getString(2));
+                } catch(IllegalArgumentException e) {
+                    CraftBookPlugin.logger().warning("Skipping invalid UUID mapping: " + results.getString(1));
+                }
+            }
+        } catch(SQLException e) {
+            complete = false;
+            e.printStackTrace();
+        } finally {
+            close(results);
+            if(statement != null) {
+                try {
+                    statement.close();
+                } catch (SQLException e) {
+                    e.printStackTrace();
+                }
+            }
+        }
+
+        CraftBookPlugin.logDebugMessage("Preloaded " + cbIds.size() + " UUID mapping(s)" + (complete ? "" : ", more are left in the database"), "startup");
+    }
+
+    /**
+     * Adds a mapping to the cache, evicting the least recently used one if it is full.
+     */
+    private void cache(UUID uuid, String cbId) {
+
+        cbIds.put(uuid, cbId);
+        uuids.put(cbId, uuid);
+
+        if(cbIds.size() > MAX_CACHED) {
+            Iterator<Map.Entry<UUID, String>> iter = cbIds.entrySet().iterator();
+            Map.Entry<UUID, String> eldest = iter.next();
+            iter.remove();
+            uuids.remove(eldest.getValue());
+            complete = false;
+        }
+    }
+
     private static void close(ResultSet results) {
 
         if(results != null) {
@@ -65,6 +183,21 @@ public final class UUIDMappings {
      */
     public UUID getUUID(String cbID) {
 
+        synchronized (this) {
+            UUID cached = uuids.get(cbID);
+            if(cached != null) {
+                cbIds.get(cached); // Mark as recently used
+                hits.incrementAndGet();
+                return cached;
+            }
+            UUID pending = pendingUuids.get(cbID);
+            if(complete || pending != null) {
+                hits.incrementAndGet();
+                return pending;
+            }
+        }
+        misses.incrementAndGet();
+
         UUID uuid = null;
 
         PreparedStatement statement = null;
@@ -87,6 +220,12 @@ public final class UUIDMappings {
             close(results);
         }
 
+        if(uuid != null) {
+            synchronized (this) {
+                cache(uuid, cbID);
+            }
+        }
+
         return uuid;
     }
 
@@ -98,10 +237,24 @@ public final class UUIDMappings {
      */
     public String getCBID(UUID uuid) {
 
+        synchronized (this) {
+            String cached = cbIds.get(uuid);
+            if(cached == null)
+                cached = pendingCbIds.get(uuid);
+            if(cached != null) {
+                hits.incrementAndGet();
+                return cached;
+            }
+            if(complete) {
+                hits.incrementAndGet();
+                return createCBID(uuid);
+            }
+        }
+        misses.incrementAndGet();
+
         String cbId = null;
 
         PreparedStatement statement = null;
-        PreparedStatement insertStatement = null;
         ResultSet results = null;
 
         try {
@@ -110,56 +263,148 @@ public final class UUIDMappings {
 
             results = statement.executeQuery();
 
-            if(!results.next()) {
+            if(results.next())
+                cbId = results.getString(1);
+        } catch(SQLException e) {
+            e.printStackTrace();
+        } finally {
+            close(statement);
+            close(results);
+        }
 
-                //We need to generate one.
-                boolean foundOne = false;
-                while(!foundOne) {
-                    StringBuilder sb = new StringBuilder();
-                    for(int i = 0; i < 6; i++)
-                        sb.append(Integer.toHexString(CraftBookPlugin.inst().getRandom().nextInt(16)));
+        synchronized (this) {
+            if(cbId == null)
+                return createCBID(uuid);
+            cache(uuid, cbId);
+        }
 
-                    sb.setLength(6); //Just makin' sure.
+        return cbId;
+    }
 
-                    cbId = sb.toString();
+    /**
+     * Generates a new CraftBook ID for a UUID, adds it to the cache and queues it to be written to the database.
+     * Must be called while holding this object's lock.
+     */
+    private String createCBID(UUID uuid) {
 
-                    statement = db.prepareStatement("SELECT UUID FROM mappings WHERE CBID = ?");
-                    statement.setString(1, cbId);
+        String existing = cbIds.get(uuid);
+        if(existing == null)
+            existing = pendingCbIds.get(uuid);
+        if(existing != null)
+            return existing;
 
-                    close(results);
-                    results = statement.executeQuery();
+        String cbId;
+        while(true) {
+            StringBuilder sb = new StringBuilder();
+            for(int i = 0; i < 6; i++)
+                sb.append(Integer.toHexString(CraftBookPlugin.inst().getRandom().nextInt(16)));
 
-                    if(!results.next()) {
-                        foundOne = true;
-                    } else
-                        continue;
+            sb.setLength(6); //Just makin' sure.
 
-                    insertStatement = db.prepareStatement("INSERT INTO mappings VALUES(?,?)");
-                    insertStatement.setString(1, uuid.toString());
-                    insertStatement.setString(2, cbId);
+            cbId = sb.toString();
 
-                    insertStatement.executeUpdate();
-                }
+            if(uuids.containsKey(cbId) || pendingUuids.containsKey(cbId))
+                continue;
+            if(!complete && isCBIDTaken(cbId))
+                continue;
+            break;
+        }
 
-                return cbId;
-            }
+        cache(uuid, cbId);
+        pendingCbIds.put(uuid, cbId);
+        pendingUuids.put(cbId, uuid);
 
-            cbId = results.getString(1);
+        final String newId = cbId;
+        if(writer != null && !writer.isShutdown())
+            writer.execute(() -> insert(uuid, newId));
+        else
+            insert(uuid, newId);
+
+        return cbId;
+    }
+
+    private boolean isCBIDTaken(String cbId) {
+
+        PreparedStatement statement = null;
+        ResultSet results = null;
+
+        try {
+            statement = db.prepareStatement("SELECT UUID FROM mappings WHERE CBID = ?");
+            statement.setString(1, cbId);
+
+            results = statement.executeQuery();
+            return results.next();
         } catch(SQLException e) {
             e.printStackTrace();
+            return false;
         } finally {
             close(statement);
-            close(insertStatement);
             close(results);
         }
+    }
 
-        return cbId;
+    /**
+     * Writes a mapping to the database. This runs on the writer thread, which has its own connection. The mapping stays
+     * pending if it couldn't be written, so it is still used for the rest of the session.
+     */
+    private void insert(UUID uuid, String cbId) {
+
+        PreparedStatement insertStatement = null;
+
+        try {
+            if(writeConnection == null || writeConnection.isClosed())
+                writeConnection = DriverManager.getConnection(DATABASE_URL);
+
+            insertStatement = writeConnection.prepareStatement("INSERT OR IGNORE INTO mappings VALUES(?,?)");
+            insertStatement.setString(1, uuid.toString());
+            insertStatement.setString(2, cbId);
+
+            if(insertStatement.executeUpdate() == 0)
+                CraftBookPlugin.logger().warning("UUID mapping " + uuid + " -> " + cbId + " conflicts with an existing mapping and was not saved");
+
+            synchronized (this) {
+                pendingCbIds.remove(uuid, cbId);
+                pendingUuids.remove(cbId, uuid);
+            }
+        } catch(SQLException e) {
+            e.printStackTrace();
+        } finally {
+            close(insertStatement);
+        }
+    }
+
+    public synchronized int getCachedCount() {
+
+        return cbIds.size();
+    }
+
+    public long getCacheHits() {
+
+        return hits.get();
+    }
+
+    public long getCacheMisses() {
+
+        return misses.get();
     }
 
     public void disable() {
+        if(writer != null) {
+            writer.shutdown();
+            try {
+                if(!writer.awaitTermination(10, TimeUnit.SECONDS))
+                    CraftBookPlugin.logger().warning("Timed out writing UUID mappings");
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        try {
+            if(writeConnection != null && !writeConnection.isClosed())
+                writeConnection.close();
+        } catch(SQLException ignored){}
         try {
             if(db != null && !db.isClosed())
                 db.close();
         } catch(SQLException ignored){}
     }
-}
\ No newline at end of file
+}
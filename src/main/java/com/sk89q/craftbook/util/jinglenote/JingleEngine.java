@@ -0,0 +1,84 @@
+package com.sk89q.craftbook.util.jinglenote;
+
+import com.sk89q.craftbook.bukkit.CraftBookPlugin;
+import com.sk89q.craftbook.bukkit.util.CraftBookBukkitUtil;
+import org.bukkit.Bukkit;
+import org.bukkit.scheduler.BukkitTask;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Plays every active {@link TimelineSequencer} from a single scheduler task on the main thread.
+ *
+ * The task is only running while something is playing. It starts when the first sequencer is scheduled, and cancels
+ * itself once the last one has finished.
+ */
+public final class JingleEngine {
+
+    private static final List<TimelineSequencer> sequencers = new CopyOnWriteArrayList<>();
+
+    private static BukkitTask task;
+
+    private JingleEngine() {
+    }
+
+    /**
+     * Starts advancing a sequencer every tick, until it stops playing.
+     *
+     * @param sequencer The sequencer
+     */
+    static synchronized void schedule(TimelineSequencer sequencer) {
+
+        sequencers.add(sequencer);
+        if(task == null)
+            task = Bukkit.getScheduler().runTaskTimer(CraftBookPlugin.inst(), JingleEngine::tick, 1L, 1L);
+    }
+
+    private static void tick() {
+
+        for(TimelineSequencer sequencer : sequencers) {
+            boolean playing;
+            try {
+                playing = sequencer.tick();
+            } catch (Throwable t) {
+                CraftBookBukkitUtil.printStacktrace(t);
+                sequencer.stop();
+                playing = false;
+            }
+            if(!playing)
+                sequencers.remove(sequencer);
+        }
+
+        synchronized (JingleEngine.class) {
+            if(sequencers.isEmpty() && task != null) {
+                task.cancel();
+                task = null;
+            }
+        }
+    }
+
+    /**
+     * Gets the amount of sequencers that are currently playing.
+     *
+     * @return The amount of sequencers
+     */
+    public static int getPlayingCount() {
+
+        return sequencers.size();
+    }
+
+    /**
+     * Stops every sequencer, and the playback task.
+     */
+    public static synchronized void stopAll() {
+
+        for(TimelineSequencer sequencer : sequencers)
+            sequencer.stop();
+        sequencers.clear();
+        if(task != null) {
+            task.cancel();
+            task = null;
+        }
+    }
+}
@@ -9,8 +9,8 @@ import com.sk89q.craftbook.bukkit.CraftBookPlugin;
 import com.sk89q.craftbook.util.SearchArea;
 import com.sk89q.craftbook.util.jinglenote.bukkit.BukkitJingleNotePlayer;
 
-import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * A manager of play instances.
@@ -22,11 +22,12 @@ public class JingleNoteManager {
     /**
      * List of instances.
      */
-    private final Map<String, JingleNotePlayer> instances = new HashMap<>();
+    private final Map<String, JingleNotePlayer> instances = new ConcurrentHashMap<>();
 
     public boolean isPlaying(String player) {
 
-        return instances.containsKey(player) && instances.get(player).isPlaying();
+        JingleNotePlayer notePlayer = instances.get(player);
+        return notePlayer != null && notePlayer.isPlaying();
     }
 
     public boolean isPlaying() {
@@ -51,20 +52,16 @@ public class JingleNoteManager {
         CraftBookPlugin.logDebugMessage("Playing sequencer for player: " + player, "midi");
 
         JingleNotePlayer notePlayer = new BukkitJingleNotePlayer(player, sequencer, area);
-        Thread thread = new Thread(notePlayer);
-        thread.setDaemon(true);
-        thread.setPriority(Thread.MAX_PRIORITY);
-        thread.setName("JingleNotePlayer for " + player);
-        thread.start();
-
         instances.put(player, notePlayer);
+        notePlayer.start();
     }
 
     public boolean stop(String player) {
 
         // Existing player found!
-        if (instances.containsKey(player)) {
-            instances.remove(player).stop();
+        JingleNotePlayer notePlayer = instances.remove(player);
+        if (notePlayer != null) {
+            notePlayer.stop();
             return true;
         }
         return false;
@@ -5,12 +5,14 @@
 
 package com.sk89q.craftbook.util.jinglenote;
 
-import com.sk89q.craftbook.bukkit.CraftBookPlugin;
-import com.sk89q.craftbook.bukkit.util.CraftBookBukkitUtil;
 import com.sk89q.craftbook.util.SearchArea;
 import com.sk89q.craftbook.util.jinglenote.JingleSequencer.Note;
 
-public abstract class JingleNotePlayer implements Runnable {
+/**
+ * A listener of a {@link JingleSequencer}. Listeners have no threads of their own, the sequencer hands them each note as
+ * it is played.
+ */
+public abstract class JingleNotePlayer {
 
     protected final String player;
     private JingleSequencer sequencer;
@@ -30,27 +32,13 @@ public abstract class JingleNotePlayer implements Runnable {
         this.area = area;
     }
 
-    @Override
-    public void run() {
-
-        if(sequencer == null)
-            return;
-        try {
-            try {
-                sequencer.play(this);
-            } catch (Throwable t) {
-                CraftBookBukkitUtil.printStacktrace(t);
-            }
+    /**
+     * Starts listening to the sequencer.
+     */
+    public void start() {
 
-            while(isPlaying()){
-                Thread.sleep(10L);
-            }
-        } catch (InterruptedException e) {
-            CraftBookBukkitUtil.printStacktrace(e);
-        } finally {
-            CraftBookPlugin.logDebugMessage("Finished playing for: " + player, "midi.stop");
-            stop();
-        }
+        if(sequencer != null)
+            sequencer.play(this);
     }
 
     public boolean isPlaying() {
@@ -71,5 +59,10 @@ public abstract class JingleNotePlayer implements Runnable {
         }
     }
 
+    /**
+     * Plays a note to this listener. The sequencer checks {@link #isPlaying()} before handing out the notes of a tick.
+     *
+     * @param note The note
+     */
     public abstract void play(Note note);
 }
\ No newline at end of file
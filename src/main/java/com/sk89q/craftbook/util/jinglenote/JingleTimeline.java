@@ -0,0 +1,130 @@
+package com.sk89q.craftbook.util.jinglenote;
+
+import com.sk89q.craftbook.util.jinglenote.JingleSequencer.Note;
+
+import java.util.Arrays;
+
+/**
+ * A song rendered ahead of time into the notes to play on each server tick.
+ *
+ * The notes are kept in tick order in parallel arrays, so a sequencer only has to walk forward through them while the
+ * song plays. Timelines are immutable, so one timeline can be shared by every sequencer playing the same song.
+ */
+public final class JingleTimeline {
+
+    /**
+     * Set on the instrument of notes that come from the MIDI percussion channel.
+     */
+    static final byte PERCUSSION = 0x40;
+
+    private final int[] ticks;
+    private final byte[] instruments;
+    private final byte[] pitches;
+    private final byte[] velocities;
+    private final float volume;
+    private final int length;
+
+    private JingleTimeline(int[] ticks, byte[] instruments, byte[] pitches, byte[] velocities, float volume, int length) {
+
+        this.ticks = ticks;
+        this.instruments = instruments;
+        this.pitches = pitches;
+        this.velocities = velocities;
+        this.volume = volume;
+        this.length = length;
+    }
+
+    /**
+     * Gets the amount of notes in this timeline.
+     *
+     * @return The amount of notes
+     */
+    public int size() {
+
+        return ticks.length;
+    }
+
+    /**
+     * Gets the length of this timeline, in ticks.
+     *
+     * @return The length
+     */
+    public int getLength() {
+
+        return length;
+    }
+
+    /**
+     * Gets roughly how much memory this timeline takes up.
+     *
+     * @return The size, in bytes
+     */
+    public int getMemorySize() {
+
+        // Object headers and array references, then an int and three bytes per note.
+        return 96 + ticks.length * 7;
+    }
+
+    int getTick(int index) {
+
+        return ticks[index];
+    }
+
+    boolean isPercussion(int index) {
+
+        return (instruments[index] & PERCUSSION) != 0;
+    }
+
+    Note getNote(int index) {
+
+        return new Note(Instrument.toMCSound((byte) (instruments[index] & ~PERCUSSION)), pitches[index], volume * velocities[index] / 127f);
+    }
+
+    /**
+     * Builds a timeline from notes added in tick order.
+     */
+    static final class Builder {
+
+        private int[] ticks = new int[64];
+        private byte[] instruments = new byte[64];
+        private byte[] pitches = new byte[64];
+        private byte[] velocities = new byte[64];
+        private int size;
+
+        /**
+         * Adds a note. Notes must be added in tick order.
+         *
+         * @param tick The tick to play the note on
+         * @param instrument The instrument, optionally marked with {@link #PERCUSSION}
+         * @param pitch The pitch
+         * @param velocity The velocity, from 0 to 127
+         */
+        void add(int tick, byte instrument, byte pitch, byte velocity) {
+
+            if(size == ticks.length) {
+                ticks = Arrays.copyOf(ticks, size * 2);
+                instruments = Arrays.copyOf(instruments, size * 2);
+                pitches = Arrays.copyOf(pitches, size * 2);
+                velocities = Arrays.copyOf(velocities, size * 2);
+            }
+            ticks[size] = tick;
+            instruments[size] = instrument;
+            pitches[size] = pitch;
+            velocities[size] = velocity;
+            size++;
+        }
+
+        /**
+         * Builds the timeline.
+         *
+         * @param volume The volume of a note at full velocity
+         * @param length The length of the timeline, in ticks
+         * @return The timeline
+         */
+        JingleTimeline build(float volume, int length) {
+
+            return new JingleTimeline(Arrays.copyOf(ticks, size), Arrays.copyOf(instruments, size), Arrays.copyOf(pitches, size),
+                    Arrays.copyOf(velocities, size), volume, Math.max(length, size == 0 ? 0 : ticks[size - 1]));
+        }
+    }
+}
@@ -0,0 +1,233 @@
+package com.sk89q.craftbook.util.jinglenote;
+
+import com.google.common.base.Throwables;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.cache.RemovalCause;
+import com.google.common.cache.RemovalNotification;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hashing;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import com.sk89q.craftbook.bukkit.CraftBookPlugin;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+
+import javax.sound.midi.InvalidMidiDataException;
+import javax.sound.midi.MidiSystem;
+
+/**
+ * A cache of rendered {@link JingleTimeline}s, shared by every IC that plays music.
+ *
+ * Timelines are keyed by a hash of what they were rendered from, so files with the same contents share a timeline. The
+ * cache is bounded by the memory the timelines take up, and evicts the least recently used ones first.
+ *
+ * Files are only checked for changes every {@link #CHECK_INTERVAL} milliseconds, so songs that are played over and over
+ * don't touch the disk at all. A changed file is read again, but only rendered again if its contents changed. A file is
+ * forgotten along with its timeline once that is evicted.
+ *
+ * A timeline that is requested while it is being rendered waits for that render, rather than rendering it again.
+ */
+public final class JingleTimelineCache {
+
+    /**
+     * How often a file is checked for changes, in milliseconds.
+     */
+    static final long CHECK_INTERVAL = 5000L;
+
+    private static final long DEFAULT_MAX_SIZE = 4 * 1024 * 1024L;
+
+    private static volatile Cache<HashCode, JingleTimeline> timelines = createCache(DEFAULT_MAX_SIZE);
+
+    private static final Map<File, FileStamp> files = new ConcurrentHashMap<>();
+
+    private JingleTimelineCache() {
+    }
+
+    private static Cache<HashCode, JingleTimeline> createCache(long maxSize) {
+
+        return CacheBuilder.newBuilder()
+                .concurrencyLevel(1)
+                .maximumWeight(maxSize)
+                .weigher((HashCode key, JingleTimeline timeline) -> timeline.getMemorySize())
+                .removalListener((RemovalNotification<HashCode, JingleTimeline> notification) -> {
+                    if(notification.getCause() != RemovalCause.REPLACED)
+                        files.values().removeIf(stamp -> stamp.hash.equals(notification.getKey()));
+                })
+                .recordStats()
+                .build();
+    }
+
+    /**
+     * Sets the most memory the cached timelines can take up, and empties the cache.
+     *
+     * @param maxSize The maximum size, in bytes
+     */
+    public static void setMaxSize(long maxSize) {
+
+        timelines = createCache(Math.max(0, maxSize));
+        files.clear();
+    }
+
+    /**
+     * Gets the timeline of a MIDI file, reading and rendering it if the cache doesn't have it.
+     *
+     * @param midiFile The MIDI file
+     * @return The timeline
+     * @throws InvalidMidiDataException If the file isn't a valid MIDI file
+     * @throws IOException If the file couldn't be read
+     */
+    public static JingleTimeline getMidi(File midiFile) throws InvalidMidiDataException, IOException {
+
+        File file = midiFile.getAbsoluteFile();
+        long now = System.currentTimeMillis();
+
+        FileStamp stamp = files.get(file);
+        if(stamp != null) {
+            if(now - stamp.checked >= CHECK_INTERVAL) {
+                if(file.lastModified() != stamp.modified || file.length() != stamp.size)
+                    stamp = null;
+                else
+                    stamp.checked = now;
+            }
+            if(stamp != null) {
+                JingleTimeline timeline = timelines.getIfPresent(stamp.hash);
+                if(timeline != null)
+                    return timeline;
+            }
+        }
+
+        long modified = file.lastModified();
+        long size = file.length();
+        byte[] data;
+        try {
+            data = Files.readAllBytes(file.toPath());
+        } catch (IOException e) {
+            files.remove(file);
+            throw e;
+        }
+
+        HashCode hash = Hashing.sha256().hashBytes(data);
+
+        JingleTimeline timeline;
+        try {
+            timeline = timelines.get(hash, () -> {
+                JingleTimeline rendered = MidiJingleSequencer.render(MidiSystem.getSequence(new ByteArrayInputStream(data)));
+                CraftBookPlugin.logDebugMessage("Rendered " + rendered.size() + " notes from midi file: " + file.getName(), "midi");
+                return rendered;
+            });
+        } catch (ExecutionException | UncheckedExecutionException e) {
+            files.remove(file);
+            Throwables.propagateIfPossible(e.getCause(), InvalidMidiDataException.class, IOException.class);
+            throw new IOException("Failed to render midi file: " + file.getName(), e.getCause());
+        }
+        // Only remembered once the timeline is cached, so that the stamp is forgotten when the timeline is evicted.
+        files.put(file, new FileStamp(hash, modified, size, now));
+        if(!timelines.asMap().containsKey(hash))
+            files.remove(file);
+        return timeline;
+    }
+
+    /**
+     * Gets the timeline of a tune, rendering it if the cache doesn't have it.
+     *
+     * @param tune The tune
+     * @param delay The delay between notes, in ticks
+     * @return The timeline, or null if the tune is invalid
+     */
+    public static JingleTimeline getTune(String tune, int delay) {
+
+        if(tune == null)
+            return null;
+
+        HashCode hash = Hashing.sha256().hashString(delay + ":" + tune, StandardCharsets.UTF_8);
+        try {
+            return timelines.get(hash, () -> {
+                JingleTimeline rendered = StringJingleSequencer.render(tune, delay);
+                if(rendered == null)
+                    throw new InvalidTuneException();
+                return rendered;
+            });
+        } catch (ExecutionException | UncheckedExecutionException e) {
+            if(e.getCause() instanceof InvalidTuneException)
+                return null;
+            throw new RuntimeException(e.getCause());
+        }
+    }
+
+    /**
+     * Gets the amount of cached timelines.
+     *
+     * @return The amount of timelines
+     */
+    public static long getCachedCount() {
+
+        return timelines.size();
+    }
+
+    /**
+     * Gets the memory taken up by the cached timelines.
+     *
+     * @return The size, in bytes
+     */
+    public static long getCachedSize() {
+
+        long size = 0;
+        for(JingleTimeline timeline : timelines.asMap().values())
+            size += timeline.getMemorySize();
+        return size;
+    }
+
+    /**
+     * Gets the hit, miss and eviction counts of the cache.
+     *
+     * @return The cache stats
+     */
+    public static CacheStats getStats() {
+
+        return timelines.stats();
+    }
+
+    /**
+     * Empties the cache.
+     */
+    public static void clear() {
+
+        timelines.invalidateAll();
+        files.clear();
+    }
+
+    /**
+     * Thrown to leave an invalid tune out of the cache.
+     */
+    private static final class InvalidTuneException extends Exception {
+
+        private InvalidTuneException() {
+
+            super(null, null, false, false);
+        }
+    }
+
+    private static final class FileStamp {
+
+        private final HashCode hash;
+        private final long modified;
+        private final long size;
+        private volatile long checked;
+
+        private FileStamp(HashCode hash, long modified, long size, long checked) {
+
+            this.hash = hash;
+            this.modified = modified;
+            this.size = size;
+            this.checked = checked;
+        }
+    }
+}
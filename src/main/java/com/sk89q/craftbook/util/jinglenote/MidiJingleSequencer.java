@@ -1,24 +1,18 @@
 package com.sk89q.craftbook.util.jinglenote;
 
-import com.sk89q.craftbook.bukkit.CraftBookPlugin;
-import com.sk89q.craftbook.bukkit.util.CraftBookBukkitUtil;
-import com.sk89q.craftbook.mechanics.ic.ICMechanic;
-
 import java.io.File;
 import java.io.IOException;
-import java.util.HashMap;
-import java.util.HashSet;
-import java.util.Map;
-import java.util.Set;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
 
 import javax.sound.midi.InvalidMidiDataException;
+import javax.sound.midi.MetaMessage;
+import javax.sound.midi.MidiEvent;
 import javax.sound.midi.MidiMessage;
-import javax.sound.midi.MidiSystem;
-import javax.sound.midi.MidiUnavailableException;
-import javax.sound.midi.Receiver;
 import javax.sound.midi.Sequence;
-import javax.sound.midi.Sequencer;
 import javax.sound.midi.ShortMessage;
+import javax.sound.midi.Track;
 
 /**
  * A sequencer that reads MIDI files.
@@ -26,7 +20,7 @@ import javax.sound.midi.ShortMessage;
  * @author sk89q
  * @author me4502
  */
-public final class MidiJingleSequencer implements JingleSequencer {
+public final class MidiJingleSequencer extends TimelineSequencer {
 
     private static final byte[] instruments = {
             0, 0, 0, 0, 0, 0, 0,11, // 0-7
@@ -58,126 +52,64 @@ public final class MidiJingleSequencer implements JingleSequencer {
             15, 15,                 //82 - Open Triangle
     };
 
-    private Sequencer sequencer;
-    private boolean running = false;
-    private boolean playedBefore = false;
-
-    private static final Object PLAYER_LOCK = new Object();
+    private static final double MICROS_PER_TICK = 50000.0;
+    private static final double DEFAULT_TEMPO = 500000.0;
 
-    private volatile Set<JingleNotePlayer> players = new HashSet<>();
+    public MidiJingleSequencer(File midiFile, boolean loop) throws InvalidMidiDataException, IOException {
 
-    public MidiJingleSequencer(File midiFile, boolean loop) throws MidiUnavailableException, InvalidMidiDataException, IOException {
-        try {
-            sequencer = MidiSystem.getSequencer(false);
-            sequencer.open();
-            Sequence seq = MidiSystem.getSequence(midiFile);
-            sequencer.setSequence(seq);
-            if(loop)
-                sequencer.setLoopCount(Sequencer.LOOP_CONTINUOUSLY);
-        } catch (MidiUnavailableException | IOException | InvalidMidiDataException e) {
-            stop();
-            throw e;
-        }
+        super(JingleTimelineCache.getMidi(midiFile), loop, true);
     }
 
-    @Override
-    public void run() {
-
-        final Map<Integer, Integer> patches = new HashMap<>();
-
-        try {
-            if(sequencer == null || sequencer.getSequence() == null)
-                return;
-
-            if (!sequencer.isOpen())
-                sequencer.open();
-
-            sequencer.getTransmitter().setReceiver(new Receiver() {
-
-                @Override
-                public void send(MidiMessage message, long timeStamp) {
-                    if (getPlayerCount() == 0) {
-                        running = false;
-                        return;
-                    }
-
-                    if ((message.getStatus() & 0xF0) == ShortMessage.PROGRAM_CHANGE) {
-
-                        ShortMessage msg = (ShortMessage) message;
-                        int chan = msg.getChannel();
-                        int patch = msg.getData1();
-                        patches.put(chan, patch);
-                    } else if ((message.getStatus() & 0xF0) == ShortMessage.NOTE_ON) {
-
-                        ShortMessage msg = (ShortMessage) message;
-                        int chan = msg.getChannel();
-                        int n = msg.getData1();
-                        synchronized(PLAYER_LOCK) {
-                            if (chan == 9) { // Percussion
-                                // Sounds like utter crap
-                                if(ICMechanic.instance.usePercussionMidi)
-                                    for(JingleNotePlayer player : players)
-                                        player.play(new Note(Instrument.toMCSound(toMCPercussion(patches.get(chan))), toMCNote(n),  10 * (msg.getData2() / 127f)));
-                            } else {
-                                for(JingleNotePlayer player : players)
-                                    player.play(new Note(Instrument.toMCSound(toMCInstrument(patches.get(chan))), toMCNote(n), 10 * (msg.getData2() / 127f)));
-                            }
-                        }
-                    }
+    /**
+     * Renders a MIDI sequence into a timeline of server ticks, following the tempo changes of the sequence.
+     *
+     * @param sequence The sequence
+     * @return The timeline
+     */
+    static JingleTimeline render(Sequence sequence) {
+
+        List<MidiEvent> events = new ArrayList<>();
+        for(Track track : sequence.getTracks())
+            for(int i = 0; i < track.size(); i++)
+                events.add(track.get(i));
+        // List.sort is stable, so events on the same tick stay in track order.
+        events.sort(Comparator.comparingLong(MidiEvent::getTick));
+
+        boolean ppq = sequence.getDivisionType() == Sequence.PPQ;
+        double microsPerMidiTick = ppq ? DEFAULT_TEMPO / sequence.getResolution()
+                : 1000000.0 / (sequence.getDivisionType() * sequence.getResolution());
+
+        Integer[] patches = new Integer[16];
+        JingleTimeline.Builder builder = new JingleTimeline.Builder();
+        double micros = 0;
+        long lastTick = 0;
+
+        for(MidiEvent event : events) {
+            micros += (event.getTick() - lastTick) * microsPerMidiTick;
+            lastTick = event.getTick();
+
+            MidiMessage message = event.getMessage();
+            if(message instanceof MetaMessage) {
+                MetaMessage meta = (MetaMessage) message;
+                byte[] data = meta.getData();
+                // SET_TEMPO_MESSAGE
+                if(ppq && meta.getType() == 0x51 && data.length == 3) {
+                    int tempo = (data[0] & 0xFF) << 16 | (data[1] & 0xFF) << 8 | data[2] & 0xFF;
+                    microsPerMidiTick = (double) tempo / sequence.getResolution();
                 }
-
-                @Override
-                public void close() {
-                    running = false;
+            } else if(message instanceof ShortMessage) {
+                ShortMessage msg = (ShortMessage) message;
+                int chan = msg.getChannel();
+                if(msg.getCommand() == ShortMessage.PROGRAM_CHANGE) {
+                    patches[chan] = msg.getData1();
+                } else if(msg.getCommand() == ShortMessage.NOTE_ON && msg.getData2() > 0) {
+                    byte instrument = chan == 9 ? (byte) (toMCPercussion(patches[chan]) | JingleTimeline.PERCUSSION) : toMCInstrument(patches[chan]);
+                    builder.add((int) Math.round(micros / MICROS_PER_TICK), instrument, toMCNote(msg.getData1()), (byte) msg.getData2());
                 }
-            });
-
-            sequencer.addMetaEventListener(meta -> {
-                // END_OF_TRACK_MESSAGE
-                if (meta.getType() == 47) {
-                    running = false;
-                }
-            });
-
-            try {
-                if (sequencer.isOpen()) {
-                    sequencer.start();
-                    running = true;
-                    playedBefore = true;
-                    if (CraftBookPlugin.inst().getConfiguration().debugMode) {
-                        synchronized (PLAYER_LOCK) {
-                            for (JingleNotePlayer player : players)
-                                CraftBookPlugin.logDebugMessage("Opening midi sequencer: " + player.player, "midi");
-                        }
-                    }
-                } else
-                    throw new IllegalArgumentException("Sequencer is not open!");
-            } catch(Exception e){
-                CraftBookBukkitUtil.printStacktrace(e);
             }
-        } catch (MidiUnavailableException e) {
-            CraftBookBukkitUtil.printStacktrace(e);
         }
-    }
-
-    @Override
-    public void stop() {
 
-        if(!running) return;
-        synchronized(PLAYER_LOCK) {
-            players.clear();
-        }
-        CraftBookPlugin.logDebugMessage("Stopping MIDI sequencer. (Stop called)", "midi");
-        if (sequencer != null) {
-            try {
-                if(sequencer.isRunning())
-                    sequencer.stop();
-                if(sequencer.isOpen())
-                    sequencer.close();
-                sequencer = null;
-            } catch(Exception ignored){}
-        }
-        running = false;
+        return builder.build(10f, (int) Math.round(micros / MICROS_PER_TICK));
     }
 
     private static byte toMCNote(int n) {
@@ -208,53 +140,4 @@ public final class MidiJingleSequencer implements JingleSequencer {
 
         return (byte) percussion[i];
     }
-
-    Sequencer getSequencer() {
-        return sequencer;
-    }
-
-    @Override
-    public boolean isPlaying () {
-        return running && sequencer != null;
-    }
-
-    @Override
-    public boolean hasPlayedBefore () {
-        return playedBefore;
-    }
-
-    @Override
-    public void stop (JingleNotePlayer player) {
-        synchronized(PLAYER_LOCK) {
-            players.remove(player);
-        }
-
-        if (this.getPlayerCount() == 0) {
-            stop();
-        }
-    }
-
-    @Override
-    public void play (JingleNotePlayer player) {
-        synchronized(PLAYER_LOCK) {
-            players.add(player);
-        }
-        if(!playedBefore) {
-            run();
-        }
-    }
-
-    @Override
-    public int getPlayerCount() {
-        return this.players.size();
-    }
-
-    @Override
-    public Set<JingleNotePlayer> getPlayers () {
-        Set<JingleNotePlayer> copy;
-        synchronized(PLAYER_LOCK) {
-            copy = new HashSet<>(players);
-        }
-        return copy;
-    }
-}
\ No newline at end of file
+}
@@ -21,7 +21,6 @@ import java.util.Map;
 import java.util.Map.Entry;
 
 import javax.sound.midi.InvalidMidiDataException;
-import javax.sound.midi.MidiUnavailableException;
 
 public class Playlist {
 
@@ -247,9 +246,6 @@ public class Playlist {
 
                     try {
                         sequencer = new MidiJingleSequencer(file, false);
-                        if (!((MidiJingleSequencer) sequencer).getSequencer().isOpen()) {
-                            ((MidiJingleSequencer) sequencer).getSequencer().open();
-                        }
 
                         CraftBookPlugin.logDebugMessage("Player list on midi create: " + players.toString(), "playlist");
 
@@ -265,7 +261,7 @@ public class Playlist {
                         } catch (InterruptedException e) {
                             CraftBookBukkitUtil.printStacktrace(e);
                         }
-                    } catch (MidiUnavailableException | IOException | InvalidMidiDataException e) {
+                    } catch (IOException | InvalidMidiDataException e) {
                         CraftBookBukkitUtil.printStacktrace(e);
                     }
                 } else if (line.startsWith("tune ")) {
@@ -1,61 +1,29 @@
 package com.sk89q.craftbook.util.jinglenote;
 
-import com.sk89q.craftbook.bukkit.CraftBookPlugin;
-import org.bukkit.Bukkit;
-
-import java.util.ArrayList;
-import java.util.HashSet;
-import java.util.List;
-import java.util.Set;
-
 /**
  * @author Me4502 with code borrowed from CraftBook Extra
  */
-public class StringJingleSequencer implements JingleSequencer {
-
-    private int delay;
-    private int position;
-    private int taskID;
-    private boolean isPlaying;
-    private boolean playedBefore = false;
-
-    private List<Note> song;
-
-    private Set<JingleNotePlayer> players = new HashSet<>();
+public class StringJingleSequencer extends TimelineSequencer {
 
     public StringJingleSequencer(String tune, int delay) {
-        this.delay = delay;
-        song = parseTune(tune);
-    }
-
-    @Override
-    public void run() throws InterruptedException {
 
-        position = 0;
-        if(song == null)
-            return;
-
-        isPlaying = true;
-        playedBefore = true;
-
-        taskID = Bukkit.getScheduler().scheduleSyncRepeatingTask(CraftBookPlugin.inst(), () -> {
-
-            if (position >= song.size() || !isPlaying || players.isEmpty()) {
-                Bukkit.getScheduler().cancelTask(taskID);
-                isPlaying = false;
-                return;
-            }
-            for(JingleNotePlayer player : players)
-                player.play(song.get(position));
-            position++;
-        }, delay, delay);
+        super(JingleTimelineCache.getTune(tune, delay), false, false);
     }
 
-    private static ArrayList<Note> parseTune(String tune) {
+    /**
+     * Renders a tune into a timeline, playing a note every delay ticks.
+     *
+     * @param tune The tune
+     * @param delay The delay between notes, in ticks
+     * @return The timeline, or null if the tune is invalid
+     */
+    static JingleTimeline render(String tune, int delay) {
 
         if (tune == null) return null;
 
-        ArrayList<Note> musicKeys = new ArrayList<>();
+        int period = Math.max(1, delay);
+        JingleTimeline.Builder builder = new JingleTimeline.Builder();
+        int notes = 0;
 
         byte instrument = -1;
         for (int i = 0; i < tune.length(); i++) {
@@ -87,9 +55,8 @@ public class StringJingleSequencer implements JingleSequencer {
                     octave = 2;
                 }
 
-                if (skip) {
-                    musicKeys.add(new Note(Instrument.HARP, (byte) 0, 0));
-                } else {
+                // Skipped notes are rests, so they only take up time.
+                if (!skip) {
                     if (octave < 2) octave = 2;
 
                     pitch += (octave - 2) * 12;
@@ -97,16 +64,17 @@ public class StringJingleSequencer implements JingleSequencer {
                     if (pitch < 0) pitch = 0;
                     else if (pitch > 24) pitch = 24;
 
-                    musicKeys.add(new Note(Instrument.toMCSound(instrument), (byte) pitch, 60F));
+                    builder.add(delay + notes * period, instrument, (byte) pitch, (byte) 127);
                 }
+                notes++;
 
                 i++;
             }
         }
 
-        if (musicKeys.size() == 0) return null;
+        if (notes == 0) return null;
 
-        return musicKeys;
+        return builder.build(60F, delay + notes * period);
     }
 
     private static byte getTypeFromChar(char type) {
@@ -177,45 +145,4 @@ public class StringJingleSequencer implements JingleSequencer {
 
         return pitch;
     }
-
-    @Override
-    public void stop() {
-        isPlaying = false;
-    }
-
-    @Override
-    public boolean isPlaying () {
-        return isPlaying;
-    }
-
-    @Override
-    public boolean hasPlayedBefore () {
-        return playedBefore;
-    }
-
-    @Override
-    public void stop (JingleNotePlayer player) {
-        players.remove(player);
-    }
-
-    @Override
-    public void play (JingleNotePlayer player) {
-        players.add(player);
-        if(!playedBefore)
-            try {
-                run();
-            } catch (InterruptedException e) {
-                e.printStackTrace();
-            }
-    }
-
-    @Override
-    public int getPlayerCount() {
-        return players.size();
-    }
-
-    @Override
-    public Set<JingleNotePlayer> getPlayers () {
-        return players;
-    }
-}
\ No newline at end of file
+}
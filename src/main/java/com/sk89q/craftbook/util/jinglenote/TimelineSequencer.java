@@ -0,0 +1,149 @@
+package com.sk89q.craftbook.util.jinglenote;
+
+import com.sk89q.craftbook.bukkit.CraftBookPlugin;
+import com.sk89q.craftbook.mechanics.ic.ICMechanic;
+import com.sk89q.craftbook.util.jinglenote.JingleSequencer.Note;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArraySet;
+
+/**
+ * A sequencer that plays a {@link JingleTimeline}. Sequencers don't have threads of their own, they are advanced one
+ * tick at a time by the {@link JingleEngine}, which hands each tick's notes to every listener.
+ */
+public abstract class TimelineSequencer implements JingleSequencer {
+
+    private final JingleTimeline timeline;
+    private final boolean loop;
+    private final boolean stopWhenEmpty;
+
+    private final Set<JingleNotePlayer> players = new CopyOnWriteArraySet<>();
+
+    private int position;
+    private int cursor;
+    private volatile boolean running = false;
+    private volatile boolean playedBefore = false;
+
+    /**
+     * Creates a sequencer for a timeline.
+     *
+     * @param timeline The timeline to play, or null if there is nothing to play
+     * @param loop If the timeline should start over once it ends
+     * @param stopWhenEmpty If playback should stop once the last listener has gone
+     */
+    protected TimelineSequencer(JingleTimeline timeline, boolean loop, boolean stopWhenEmpty) {
+
+        this.timeline = timeline;
+        this.loop = loop;
+        this.stopWhenEmpty = stopWhenEmpty;
+    }
+
+    @Override
+    public void run() {
+
+        if(timeline == null || running)
+            return;
+
+        position = 0;
+        cursor = 0;
+        running = true;
+        playedBefore = true;
+        JingleEngine.schedule(this);
+    }
+
+    /**
+     * Plays the notes of the current tick to all listeners, and moves on to the next tick. This is called by the
+     * {@link JingleEngine} on the main thread.
+     *
+     * @return If the sequencer is still playing
+     */
+    boolean tick() {
+
+        if(!running)
+            return false;
+
+        List<Note> notes = null;
+        boolean percussion = ICMechanic.instance != null && ICMechanic.instance.usePercussionMidi;
+        while(cursor < timeline.size() && timeline.getTick(cursor) <= position) {
+            if(percussion || !timeline.isPercussion(cursor)) {
+                if(notes == null)
+                    notes = new ArrayList<>();
+                notes.add(timeline.getNote(cursor));
+            }
+            cursor++;
+        }
+
+        for(JingleNotePlayer player : players) {
+            if(!player.isPlaying()) {
+                CraftBookPlugin.logDebugMessage("Finished playing for: " + player.getPlayer(), "midi.stop");
+                player.stop();
+                continue;
+            }
+            if(notes != null)
+                for(Note note : notes)
+                    player.play(note);
+        }
+
+        if(++position > timeline.getLength()) {
+            if(loop) {
+                position = 0;
+                cursor = 0;
+            } else
+                running = false;
+        }
+
+        return running;
+    }
+
+    @Override
+    public void stop() {
+
+        running = false;
+        players.clear();
+    }
+
+    @Override
+    public boolean isPlaying() {
+
+        return running;
+    }
+
+    @Override
+    public boolean hasPlayedBefore() {
+
+        return playedBefore;
+    }
+
+    @Override
+    public void stop(JingleNotePlayer player) {
+
+        players.remove(player);
+        if(stopWhenEmpty && players.isEmpty() && running) {
+            CraftBookPlugin.logDebugMessage("Stopping sequencer. (No listeners)", "midi");
+            stop();
+        }
+    }
+
+    @Override
+    public void play(JingleNotePlayer player) {
+
+        players.add(player);
+        if(!playedBefore)
+            run();
+    }
+
+    @Override
+    public int getPlayerCount() {
+
+        return players.size();
+    }
+
+    @Override
+    public Set<JingleNotePlayer> getPlayers() {
+
+        return new HashSet<>(players);
+    }
+}
@@ -22,7 +22,7 @@ public class BukkitJingleNotePlayer extends JingleNotePlayer {
     @Override
     public void play (Note note)  {
 
-        if(!isPlaying()) return;
+        if(p == null) return;
 
         p.playSound(p.getLocation(), toSound(note.getInstrument()), SoundCategory.RECORDS, note.getVelocity(), note.getNote());
     }
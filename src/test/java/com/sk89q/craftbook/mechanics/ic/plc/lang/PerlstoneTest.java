@@ -0,0 +1,164 @@
+package com.sk89q.craftbook.mechanics.ic.plc.lang;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+
+import com.sk89q.craftbook.mechanics.ic.ChipState;
+import com.sk89q.craftbook.mechanics.ic.plc.PlcException;
+
+public class PerlstoneTest {
+
+    private final Perlstone perlstone = new Perlstone();
+
+    @Test
+    public void testGates() throws Exception {
+
+        PerlstoneProgram and = perlstone.compile("ABC&&r");
+        assertTrue(run(and, perlstone.initState(), true, true, true)[0]);
+        assertFalse(run(and, perlstone.initState(), true, false, true)[0]);
+
+        PerlstoneProgram not = perlstone.compile("A!r");
+        assertTrue(run(not, perlstone.initState(), false, false, false)[0]);
+        assertFalse(run(not, perlstone.initState(), true, false, false)[0]);
+
+        PerlstoneProgram table = perlstone.compile("AB.0110r");
+        assertFalse(run(table, perlstone.initState(), false, false, false)[0]);
+        assertTrue(run(table, perlstone.initState(), true, false, false)[0]);
+        assertTrue(run(table, perlstone.initState(), false, true, false)[0]);
+        assertFalse(run(table, perlstone.initState(), true, true, false)[0]);
+    }
+
+    @Test
+    public void testToggleFlipFlop() throws Exception {
+
+        PerlstoneProgram program = perlstone.compile("Lp1AdSp1.0100[Lp0!dSp0r]Lp0r");
+        boolean[] state = perlstone.initState();
+
+        // Toggles whenever the input turns off.
+        assertFalse(run(program, state, true, false, false)[0]);
+        assertTrue(run(program, state, false, false, false)[0]);
+        assertTrue(run(program, state, true, false, false)[0]);
+        assertFalse(run(program, state, false, false, false)[0]);
+        assertFalse(run(program, state, true, false, false)[0]);
+    }
+
+    @Test
+    public void testFunctions() throws Exception {
+
+        // Output 0 calls function 3 with two arguments, output 1 tail calls it without taking them.
+        PerlstoneProgram program = perlstone.compile("ABc032r:ABt032:-r:v0v1&r");
+        boolean[] outputs = run(program, perlstone.initState(), true, true, false);
+        assertTrue(outputs[0]);
+        assertFalse(outputs[1]);
+        assertFalse(outputs[2]);
+    }
+
+    @Test
+    public void testErrors() throws Exception {
+
+        try {
+            run(perlstone.compile("&r"), perlstone.initState(), false, false, false);
+            fail();
+        } catch (PlcException e) {
+            assertEquals("empty stack", e.getMessage());
+        }
+
+        try {
+            run(perlstone.compile("+[+]r"), perlstone.initState(), false, false, false);
+            fail();
+        } catch (PlcException e) {
+            assertEquals("ran too long", e.getMessage());
+        }
+
+        try {
+            run(perlstone.compile("c000r"), perlstone.initState(), false, false, false);
+            fail();
+        } catch (PlcException e) {
+            assertEquals("stack overflow", e.getMessage());
+        }
+    }
+
+    @Test
+    public void testCompileCache() throws Exception {
+
+        assertSame(perlstone.compile("AB|r"), new Perlstone().compile("AB|r"));
+    }
+
+    private boolean[] run(PerlstoneProgram program, boolean[] state, boolean a, boolean b, boolean c) throws PlcException {
+
+        TestChipState chip = new TestChipState(new boolean[] {a, b, c});
+        perlstone.execute(chip, state, program);
+        return chip.outputs;
+    }
+
+    private static class TestChipState implements ChipState {
+
+        private final boolean[] inputs;
+        private final boolean[] outputs = new boolean[3];
+
+        TestChipState(boolean[] inputs) {
+
+            this.inputs = inputs;
+        }
+
+        @Override
+        public boolean get(int pin) {
+
+            return pin < 3 ? inputs[pin] : outputs[pin - 3];
+        }
+
+        @Override
+        public boolean getInput(int inputIndex) {
+
+            return inputs[inputIndex];
+        }
+
+        @Override
+        public boolean getOutput(int outputIndex) {
+
+            return outputs[outputIndex];
+        }
+
+        @Override
+        public void set(int pin, boolean value) {
+
+            if (pin >= 3)
+                outputs[pin - 3] = value;
+        }
+
+        @Override
+        public void setOutput(int outputIndex, boolean value) {
+
+            outputs[outputIndex] = value;
+        }
+
+        @Override
+        public boolean isTriggered(int pin) {
+
+            return true;
+        }
+
+        @Override
+        public boolean isValid(int pin) {
+
+            return true;
+        }
+
+        @Override
+        public int getInputCount() {
+
+            return 3;
+        }
+
+        @Override
+        public int getOutputCount() {
+
+            return 3;
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package com.sk89q.craftbook.mechanics.variables;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.logging.Logger;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableList;
+import com.sk89q.squirrelid.Profile;
+import com.sk89q.squirrelid.resolver.ProfileService;
+
+public class ProfileResolverTest {
+
+    private static final UUID NOTCH = UUID.fromString("069a79f4-44e9-4726-a5be-fca90e38aaf5");
+
+    private ProfileService service;
+    private List<List<String>> lookups;
+    private boolean failing;
+
+    @Before
+    @SuppressWarnings("unchecked")
+    public void setUp() throws Exception {
+
+        lookups = new ArrayList<>();
+        failing = false;
+
+        service = mock(ProfileService.class);
+        when(service.getIdealRequestLimit()).thenReturn(2);
+        when(service.findAllByName(any(Iterable.class))).thenAnswer(invocation -> {
+            if(failing)
+                throw new IOException("Offline");
+            List<String> names = new ArrayList<>();
+            ImmutableList.Builder<Profile> profiles = ImmutableList.builder();
+            for(String name : (Iterable<String>) invocation.getArguments()[0]) {
+                names.add(name);
+                if(name.equals("notch"))
+                    profiles.add(new Profile(NOTCH, "Notch"));
+            }
+            lookups.add(names);
+            return profiles.build();
+        });
+    }
+
+    @Test
+    public void testBatchedLookup() {
+
+        ProfileResolver resolver = new ProfileResolver(service, Runnable::run, null, Logger.getAnonymousLogger());
+
+        List<UUID> results = new ArrayList<>();
+        resolver.request("Notch", results::add);
+        resolver.request("notch", results::add);
+        resolver.request("Nobody", results::add);
+        resolver.request("Somebody", null);
+
+        assertTrue(results.isEmpty());
+        assertEquals(3, resolver.getPendingCount());
+
+        assertTrue(resolver.resolvePending());
+        assertTrue(resolver.resolvePending());
+        assertFalse(resolver.resolvePending());
+        assertEquals(2, lookups.size());
+        assertEquals(2, lookups.get(0).size());
+
+        assertEquals(3, results.size());
+        assertEquals(NOTCH, results.get(0));
+        assertEquals(NOTCH, results.get(1));
+        assertNull(results.get(2));
+
+        assertTrue(resolver.isResolved("NOTCH"));
+        assertEquals(NOTCH, resolver.getCached("Notch"));
+        assertTrue(resolver.isResolved("nobody"));
+        assertNull(resolver.getCached("nobody"));
+    }
+
+    @Test
+    public void testCachedResultsSkipLookup() {
+
+        ProfileResolver resolver = new ProfileResolver(service, Runnable::run, null, Logger.getAnonymousLogger());
+        resolver.request("Notch", null);
+        resolver.resolvePending();
+
+        List<UUID> results = new ArrayList<>();
+        resolver.request("Notch", results::add);
+
+        assertEquals(1, results.size());
+        assertEquals(NOTCH, results.get(0));
+        assertEquals(0, resolver.getPendingCount());
+        assertEquals(1, lookups.size());
+    }
+
+    @Test
+    public void testFailedLookupIsRetried() {
+
+        ProfileResolver resolver = new ProfileResolver(service, Runnable::run, null, Logger.getAnonymousLogger());
+
+        List<UUID> results = new ArrayList<>();
+        resolver.request("Notch", results::add);
+
+        failing = true;
+        assertFalse(resolver.resolvePending());
+        assertFalse(resolver.isResolved("Notch"));
+        assertEquals(1, resolver.getPendingCount());
+
+        failing = false;
+        assertTrue(resolver.resolvePending());
+        assertEquals(1, results.size());
+        assertEquals(NOTCH, results.get(0));
+    }
+
+    @Test
+    public void testKeyedCallbacksAreDeduplicated() {
+
+        ProfileResolver resolver = new ProfileResolver(service, Runnable::run, null, Logger.getAnonymousLogger());
+
+        List<UUID> results = new ArrayList<>();
+        failing = true;
+        for(int i = 0; i < 10; i++) {
+            resolver.request("Notch", "sign", results::add);
+            resolver.resolvePending();
+        }
+        resolver.request("Notch", "namespace", results::add);
+
+        failing = false;
+        assertTrue(resolver.resolvePending());
+        assertEquals(2, results.size());
+    }
+}
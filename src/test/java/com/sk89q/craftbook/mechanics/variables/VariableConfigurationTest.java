@@ -0,0 +1,64 @@
+package com.sk89q.craftbook.mechanics.variables;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.logging.Logger;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.sk89q.util.yaml.YAMLFormat;
+import com.sk89q.util.yaml.YAMLProcessor;
+
+public class VariableConfigurationTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private VariableConfiguration createConfiguration(VariableStore store, String name, File logFile) throws IOException {
+
+        File file = folder.newFile(name);
+        return new VariableConfiguration(new YAMLProcessor(file, false, YAMLFormat.EXTENDED), file, store, logFile,
+                Logger.getAnonymousLogger());
+    }
+
+    @Test
+    public void testPartialRecordIsDiscarded() throws IOException {
+
+        File logFile = new File(folder.getRoot(), "variables.log");
+        Files.write(logFile.toPath(), "S\tglobal\tkept\t1\nS\tglobal\ttorn\t".getBytes(StandardCharsets.UTF_8));
+
+        VariableStore store = new VariableStore();
+        createConfiguration(store, "first.yml", logFile).load();
+        assertEquals("1", store.get("kept", "global"));
+        assertNull(store.get("torn", "global"));
+        assertEquals(0, logFile.length());
+    }
+
+    @Test
+    public void testRecordAfterPartialRecordIsRecovered() throws IOException {
+
+        File logFile = new File(folder.getRoot(), "variables.log");
+        Files.write(logFile.toPath(), "S\tglobal\ttorn".getBytes(StandardCharsets.UTF_8));
+
+        VariableStore store = new VariableStore();
+        VariableConfiguration configuration = createConfiguration(store, "first.yml", logFile);
+        configuration.load();
+        assertEquals(0, logFile.length());
+
+        store.setLogging(true);
+        store.set("next", "global", "2");
+        configuration.flushLog();
+        assertEquals("S\tglobal\tnext\t2\n", new String(Files.readAllBytes(logFile.toPath()), StandardCharsets.UTF_8));
+
+        VariableStore recovered = new VariableStore();
+        createConfiguration(recovered, "second.yml", logFile).load();
+        assertEquals("2", recovered.get("next", "global"));
+    }
+}
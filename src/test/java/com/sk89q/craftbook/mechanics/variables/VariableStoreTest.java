@@ -0,0 +1,66 @@
+package com.sk89q.craftbook.mechanics.variables;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+
+import org.junit.Test;
+
+public class VariableStoreTest {
+
+    @Test
+    public void testRecordRoundTrip() {
+
+        VariableStore store = new VariableStore();
+        store.setLogging(true);
+        store.set("plain", "global", "value");
+        store.set("tabbed", "global", "a\tb");
+        store.set("lines", "name\\space", "one\ntwo\r\nthree");
+        store.set("slashes", "global", "\\t is not a tab\\");
+        store.set("removed", "global", "gone");
+        store.remove("removed", "global");
+        store.set("plain", "global", "changed");
+
+        List<String> records = store.drainRecords();
+        assertEquals(7, records.size());
+        assertTrue(store.drainRecords().isEmpty());
+        for(String record : records)
+            assertFalse(record.contains("\n") || record.contains("\r"));
+
+        VariableStore replayed = new VariableStore();
+        for(String record : records)
+            assertTrue(replayed.replay(record));
+
+        assertEquals(store.getNamespaces(), replayed.getNamespaces());
+        for(String namespace : store.getNamespaces())
+            assertEquals(store.getVariables(namespace), replayed.getVariables(namespace));
+        assertEquals("changed", replayed.get("plain", "global"));
+        assertEquals("one\ntwo\r\nthree", replayed.get("lines", "name\\space"));
+        assertNull(replayed.get("removed", "global"));
+    }
+
+    @Test
+    public void testInvalidRecords() {
+
+        VariableStore store = new VariableStore();
+        assertFalse(store.replay(""));
+        assertFalse(store.replay("S\tglobal\tkey"));
+        assertFalse(store.replay("R\tglobal\tkey\tvalue"));
+        assertFalse(store.replay("X\tglobal\tkey\tvalue"));
+        assertFalse(store.replay("S\tglobal\tkey\tvalue\\"));
+        assertFalse(store.replay("S\tglobal\tkey\tval\\xue"));
+        assertTrue(store.isEmpty());
+    }
+
+    @Test
+    public void testReplayIsNotLoggedUntilEnabled() {
+
+        VariableStore store = new VariableStore();
+        assertTrue(store.replay("S\tglobal\tkey\tvalue"));
+        assertEquals("value", store.get("key", "global"));
+        assertTrue(store.drainRecords().isEmpty());
+    }
+}
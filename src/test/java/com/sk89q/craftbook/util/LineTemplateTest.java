@@ -0,0 +1,68 @@
+package com.sk89q.craftbook.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.UUID;
+
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.bukkit.entity.Player;
+import org.junit.Before;
+import org.junit.Test;
+
+public class LineTemplateTest {
+
+    private static final UUID PLAYER_UUID = UUID.fromString("069a79f4-44e9-4726-a5be-fca90e38aaf5");
+
+    private Player player;
+
+    @Before
+    public void setUp() {
+
+        World world = mock(World.class);
+        when(world.getName()).thenReturn("world_nether");
+
+        Location location = mock(Location.class);
+        when(location.getX()).thenReturn(-12.5);
+        when(location.getY()).thenReturn(64.0);
+        when(location.getZ()).thenReturn(3.25);
+        when(location.getBlockX()).thenReturn(-13);
+        when(location.getBlockY()).thenReturn(64);
+        when(location.getBlockZ()).thenReturn(3);
+        when(location.getWorld()).thenReturn(world);
+
+        player = mock(Player.class);
+        when(player.getName()).thenReturn("Notch");
+        when(player.getLocation()).thenReturn(location);
+        when(player.getUniqueId()).thenReturn(PLAYER_UUID);
+    }
+
+    @Test
+    public void testTags() {
+
+        assertEquals("tp Notch -13 64 3", LineTemplate.compile("tp @p @p.bx @p.by @p.bz").render(player));
+        assertEquals("-12.5:64.0:3.25 in world_nether", LineTemplate.compile("@p.l in @p.w").render(player));
+        assertEquals("-12.5,64.0,3.25", LineTemplate.compile("@p.x,@p.y,@p.z").render(player));
+        assertEquals("id " + PLAYER_UUID, LineTemplate.compile("id @p.u").render(player));
+    }
+
+    @Test
+    public void testPartialTags() {
+
+        assertEquals("Notch.b Notch.q Notch.", LineTemplate.compile("@p.b @p.q @p.").render(player));
+        assertEquals("-12.5yz Notch.Notch", LineTemplate.compile("@p.xyz @p.@p").render(player));
+        assertEquals("-13x", LineTemplate.compile("@p.bxx").render(player));
+    }
+
+    @Test
+    public void testNoTags() {
+
+        assertEquals("say hello %global|greeting%", LineTemplate.compile("say hello %global|greeting%").render(player));
+        assertEquals("", LineTemplate.compile("").render(player));
+        verify(player, never()).getLocation();
+    }
+}
@@ -0,0 +1,70 @@
+package com.sk89q.craftbook.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class LongHashMapTest {
+
+    @Test
+    public void testPackedKeys() {
+
+        long key = LongHashMap.toLong(-30000000, 29999999);
+        assertEquals(-30000000, LongHashMap.msw(key));
+        assertEquals(29999999, LongHashMap.lsw(key));
+        assertTrue(LongHashMap.toLong(1, 2) != LongHashMap.toLong(2, 1));
+
+        assertTrue(LongHashMap.toLong(-1, 64, 0) != LongHashMap.toLong(0, 64, -1));
+        assertTrue(LongHashMap.toLong(0, 0, 0) != LongHashMap.toLong(0, 255, 0));
+        assertTrue(LongHashMap.toLong(30000000, 1, -30000000) != LongHashMap.toLong(-30000000, 1, 30000000));
+    }
+
+    @Test
+    public void testPutGetRemove() {
+
+        LongHashMap<String> map = new LongHashMap<>();
+        assertTrue(map.isEmpty());
+        assertNull(map.put(5L, "five"));
+        assertEquals("five", map.put(5L, "FIVE"));
+        assertEquals("FIVE", map.get(5L));
+        assertTrue(map.containsKey(5L));
+        assertEquals(1, map.size());
+        assertEquals("FIVE", map.remove(5L));
+        assertNull(map.remove(5L));
+        assertFalse(map.containsKey(5L));
+        assertTrue(map.isEmpty());
+    }
+
+    @Test
+    public void testMatchesHashMap() {
+
+        Random random = new Random(4502);
+        LongHashMap<Integer> map = new LongHashMap<>();
+        Map<Long, Integer> expected = new HashMap<>();
+
+        for (int i = 0; i < 100000; i++) {
+            long key = LongHashMap.toLong(random.nextInt(64) - 32, random.nextInt(64) - 32);
+            if (random.nextInt(3) == 0)
+                assertEquals(expected.remove(key), map.remove(key));
+            else
+                assertEquals(expected.put(key, i), map.put(key, i));
+        }
+
+        assertEquals(expected.size(), map.size());
+        assertEquals(expected.size(), map.keys().length);
+        assertEquals(expected.size(), map.values().size());
+        for (long key : map.keys())
+            assertEquals(expected.get(key), map.get(key));
+
+        map.clear();
+        assertTrue(map.isEmpty());
+        assertEquals(0, map.keys().length);
+    }
+}